@@ -0,0 +1,327 @@
+package huskymaps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Prefix search over the location names of a {@link CompactGraph}, ranked by importance.
+ *
+ * Names are compared by their {@link #clean} key. The distinct keys are stored in a ternary
+ * search trie whose nodes are parallel int arrays, inserted in median order so the trie stays
+ * balanced. Each key maps to the contiguous range of distinct original names that clean to it,
+ * so a search touches only the trie nodes under the prefix and never scans the names. Every trie
+ * node also stores the highest importance in its subtrie, so a top-k search can skip the
+ * subtries that cannot contribute. Exact full-name lookups go through the graph's
+ * {@link LocationIndex} instead.
+ *
+ * Instances are immutable once built and are safe to share across threads.
+ */
+public class Autocomplete {
+    private static final int NONE = -1;
+
+    /** Trie nodes: the split character, the three children and the key ending here, if any. */
+    private char[] chars;
+    private int[] lo;
+    private int[] eq;
+    private int[] hi;
+    private int[] keys;
+    /** The highest importance of a name in the subtrie of each node, including lo and hi. */
+    private final int[] maxImportance;
+    private int numTrieNodes;
+    private final int root;
+
+    /** Names [keyStart[k], keyStart[k + 1]) clean to key k. */
+    private final int[] keyStart;
+    /** The distinct location names, sorted by key and then by name. */
+    private final String[] names;
+    /** The highest importance among the vertices named names[i]. */
+    private final int[] importance;
+
+    /**
+     * Return the cleaned version of the string: lower case, with everything but letters, digits
+     * and spaces removed.
+     * @param s Input string.
+     * @return Cleaned string.
+     */
+    public static String clean(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i += 1) {
+            char c = s.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == ' ') {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Builds the index of the named vertices of GRAPH. */
+    static Autocomplete build(CompactGraph graph) {
+        List<Integer> named = new ArrayList<>();
+        for (int v = 0; v < graph.size(); v += 1) {
+            String name = graph.name(v);
+            if (name != null && !clean(name).isEmpty()) {
+                named.add(v);
+            }
+        }
+        String[] cleaned = new String[graph.size()];
+        for (int v : named) {
+            cleaned[v] = clean(graph.name(v));
+        }
+        named.sort(Comparator.<Integer, String>comparing(v -> cleaned[v])
+                .thenComparing(graph::name)
+                .thenComparingInt(v -> v));
+
+        List<String> names = new ArrayList<>();
+        List<Integer> importance = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        List<Integer> keyStart = new ArrayList<>();
+        for (int v : named) {
+            String name = graph.name(v);
+            if (names.isEmpty() || !names.get(names.size() - 1).equals(name)) {
+                if (keys.isEmpty() || !keys.get(keys.size() - 1).equals(cleaned[v])) {
+                    keys.add(cleaned[v]);
+                    keyStart.add(names.size());
+                }
+                names.add(name);
+                importance.add(graph.importance(v));
+            } else {
+                int last = importance.size() - 1;
+                importance.set(last, Math.max(importance.get(last), graph.importance(v)));
+            }
+        }
+        keyStart.add(names.size());
+        return new Autocomplete(keys, toArray(keyStart), names.toArray(new String[0]),
+                toArray(importance));
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+
+    private Autocomplete(List<String> sortedKeys, int[] keyStart, String[] names, int[] importance) {
+        this.keyStart = keyStart;
+        this.names = names;
+        this.importance = importance;
+        int capacity = 16;
+        chars = new char[capacity];
+        lo = new int[capacity];
+        eq = new int[capacity];
+        hi = new int[capacity];
+        keys = new int[capacity];
+        int rootNode = NONE;
+        // Insert the medians of ever smaller ranges first, so the trie is balanced
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = sortedKeys.size();
+        while (top > 0) {
+            int end = stack[--top];
+            int start = stack[--top];
+            if (start >= end) {
+                continue;
+            }
+            int mid = (start + end) >>> 1;
+            rootNode = insert(rootNode, sortedKeys.get(mid), mid);
+            if (top + 4 > stack.length) {
+                stack = Arrays.copyOf(stack, 2 * stack.length);
+            }
+            stack[top++] = mid + 1;
+            stack[top++] = end;
+            stack[top++] = start;
+            stack[top++] = mid;
+        }
+        root = rootNode;
+        chars = Arrays.copyOf(chars, numTrieNodes);
+        lo = Arrays.copyOf(lo, numTrieNodes);
+        eq = Arrays.copyOf(eq, numTrieNodes);
+        hi = Arrays.copyOf(hi, numTrieNodes);
+        keys = Arrays.copyOf(keys, numTrieNodes);
+        // Children are always created after their parent, so a reverse sweep sees them first
+        maxImportance = new int[numTrieNodes];
+        for (int x = numTrieNodes - 1; x >= 0; x -= 1) {
+            int max = Integer.MIN_VALUE;
+            if (keys[x] != NONE) {
+                for (int i = keyStart[keys[x]]; i < keyStart[keys[x] + 1]; i += 1) {
+                    max = Math.max(max, importance[i]);
+                }
+            }
+            if (lo[x] != NONE) {
+                max = Math.max(max, maxImportance[lo[x]]);
+            }
+            if (eq[x] != NONE) {
+                max = Math.max(max, maxImportance[eq[x]]);
+            }
+            if (hi[x] != NONE) {
+                max = Math.max(max, maxImportance[hi[x]]);
+            }
+            maxImportance[x] = max;
+        }
+    }
+
+    /** Adds KEY with id K to the trie rooted at ROOTNODE, returning the possibly new root. */
+    private int insert(int rootNode, String key, int k) {
+        if (rootNode == NONE) {
+            rootNode = newTrieNode(key.charAt(0));
+        }
+        int x = rootNode;
+        int d = 0;
+        while (true) {
+            char c = key.charAt(d);
+            if (c < chars[x]) {
+                if (lo[x] == NONE) {
+                    int child = newTrieNode(c);
+                    lo[x] = child;
+                }
+                x = lo[x];
+            } else if (c > chars[x]) {
+                if (hi[x] == NONE) {
+                    int child = newTrieNode(c);
+                    hi[x] = child;
+                }
+                x = hi[x];
+            } else if (d < key.length() - 1) {
+                d += 1;
+                if (eq[x] == NONE) {
+                    int child = newTrieNode(key.charAt(d));
+                    eq[x] = child;
+                }
+                x = eq[x];
+            } else {
+                keys[x] = k;
+                return rootNode;
+            }
+        }
+    }
+
+    private int newTrieNode(char c) {
+        if (numTrieNodes == chars.length) {
+            int capacity = 2 * chars.length;
+            chars = Arrays.copyOf(chars, capacity);
+            lo = Arrays.copyOf(lo, capacity);
+            eq = Arrays.copyOf(eq, capacity);
+            hi = Arrays.copyOf(hi, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+        }
+        int x = numTrieNodes;
+        numTrieNodes += 1;
+        chars[x] = c;
+        lo[x] = NONE;
+        eq[x] = NONE;
+        hi[x] = NONE;
+        keys[x] = NONE;
+        return x;
+    }
+
+    /** Returns the trie node where KEY ends, or NONE if no key starts with KEY. */
+    private int find(String key) {
+        int x = root;
+        int d = 0;
+        while (x != NONE) {
+            char c = key.charAt(d);
+            if (c < chars[x]) {
+                x = lo[x];
+            } else if (c > chars[x]) {
+                x = hi[x];
+            } else if (d < key.length() - 1) {
+                d += 1;
+                x = eq[x];
+            } else {
+                return x;
+            }
+        }
+        return NONE;
+    }
+
+    /** Returns the number of distinct location names. */
+    public int size() {
+        return names.length;
+    }
+
+    /** Returns the number of trie nodes. */
+    public int trieSize() {
+        return chars.length;
+    }
+
+    /** Returns the distinct location name with index I, in key order. */
+    public String name(int i) {
+        return names[i];
+    }
+
+    /** Returns the highest importance among the locations named name(I). */
+    public int importance(int i) {
+        return importance[i];
+    }
+
+    /**
+     * Returns the K most important distinct location names whose cleaned name starts with the
+     * cleaned PREFIX, most important first and alphabetically among equals.
+     */
+    public List<String> topK(String prefix, int k) {
+        String key = clean(prefix);
+        if (key.isEmpty() || k <= 0) {
+            return new ArrayList<>();
+        }
+        int x = find(key);
+        if (x == NONE) {
+            return new ArrayList<>();
+        }
+        // A min-heap of the best K names so far, so its head is the one to drop
+        PriorityQueue<Integer> best = new PriorityQueue<>(Math.min(k, names.length) + 1, (a, b) -> rank(b, a));
+        offerNames(keys[x], best, k);
+        // Visit subtries in order of their most important name, and stop once none can beat
+        // the K names found, so a short prefix touches only a few nodes of a large subtrie
+        MinHeap fringe = new MinHeap(64);
+        if (eq[x] != NONE) {
+            fringe.push(-maxImportance[eq[x]], eq[x]);
+        }
+        while (!fringe.isEmpty()) {
+            if (best.size() == k && -fringe.peekPriority() < importance[best.peek()]) {
+                break;
+            }
+            int y = fringe.pop();
+            offerNames(keys[y], best, k);
+            if (lo[y] != NONE) {
+                fringe.push(-maxImportance[lo[y]], lo[y]);
+            }
+            if (eq[y] != NONE) {
+                fringe.push(-maxImportance[eq[y]], eq[y]);
+            }
+            if (hi[y] != NONE) {
+                fringe.push(-maxImportance[hi[y]], hi[y]);
+            }
+        }
+        List<String> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(names[best.poll()]);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /** Orders name indices from most to least important, then alphabetically. */
+    private int rank(int a, int b) {
+        int cmp = Integer.compare(importance[b], importance[a]);
+        return cmp != 0 ? cmp : names[a].compareTo(names[b]);
+    }
+
+    /** Offers the names of key K, if any, to the bounded heap BEST. */
+    private void offerNames(int k, PriorityQueue<Integer> best, int limit) {
+        if (k == NONE) {
+            return;
+        }
+        for (int i = keyStart[k]; i < keyStart[k + 1]; i += 1) {
+            best.offer(i);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package huskymaps;
+
+import astar.ShortestPathsSolver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Bidirectional A* search over the dense vertex indices of a {@link StreetMapGraph}. A forward
+ * search from the start follows {@link StreetMapGraph#forEachNeighbor} while a backward search
+ * from the end follows {@link StreetMapGraph#forEachIncoming}, and the side with the smaller key
+ * at the top of its fringe is expanded next.
+ *
+ * Both searches use the averaged potential p(v) = (h(v, end) - h(start, v)) / 2, forward, and
+ * -p(v), backward, where h is the graph's heuristic. It is consistent whenever h is, and it gives
+ * both searches the same reduced edge costs, so this is bidirectional Dijkstra on the reduced
+ * graph: once the two fringe keys add up to the length of the best path found where the searches
+ * met, no shorter path remains. A search may also run between several starts and several ends,
+ * each with a partial weight already covered or still to go; h(v, end) is then the least
+ * estimate to any end plus its weight, and h(start, v) likewise, which keeps p consistent.
+ *
+ * The two sides keep their distances, parents and decrease-key fringes in a forward and a
+ * backward {@link SearchContext}, taken from the graph's pools for the length of the search and
+ * reused by later ones.
+ */
+public class BidirectionalAStarSolver implements ShortestPathsSolver<Long> {
+    /** Number of expansions between checks of the clock. */
+    private static final int TIMEOUT_CHECK_MASK = 0xFF;
+
+    private final StreetMapGraph graph;
+    /** The dense indices of the starts and ends, or -1 for ids not in the graph. */
+    private final int[] sources;
+    private final double[] sourceWeights;
+    private final int[] goals;
+    private final double[] goalWeights;
+    private final Side forward;
+    private final Side backward;
+    /** The best path found so far runs through the edge between these vertices. */
+    private double best;
+    private int meetForward = -1;
+    private int meetBackward = -1;
+
+    private SolverOutcome outcome;
+    private List<Long> solution = List.of();
+    private double solutionWeight;
+    private int numStatesExplored;
+    private double explorationTime;
+
+    /** One direction of the search, relaxing the edges of the vertex it is expanding. */
+    private class Side implements EdgeConsumer {
+        final boolean isForward;
+        SearchContext search;
+        Side other;
+        int current;
+
+        Side(boolean isForward) {
+            this.isForward = isForward;
+        }
+
+        /** Returns this side's potential of V, which is consistent over its edges. */
+        double potential(int v) {
+            double toGoal = Double.POSITIVE_INFINITY;
+            for (int j = 0; j < goals.length; j += 1) {
+                if (goals[j] >= 0) {
+                    toGoal = Math.min(toGoal,
+                            graph.estimatedDistanceToGoal(v, goals[j]) + goalWeights[j]);
+                }
+            }
+            double fromSource = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < sources.length; i += 1) {
+                if (sources[i] >= 0) {
+                    fromSource = Math.min(fromSource,
+                            sourceWeights[i] + graph.estimatedDistanceToGoal(sources[i], v));
+                }
+            }
+            double p = (toGoal - fromSource) / 2;
+            return isForward ? p : -p;
+        }
+
+        /** Starts this side at V, WEIGHT into the route, unless it already reaches V sooner. */
+        void start(int v, double weight) {
+            if (v < 0 || weight >= search.distance(v)) {
+                return;
+            }
+            search.reach(v, weight, -1);
+            search.fringe.pushOrDecrease(weight + potential(v), v);
+            double through = weight + other.search.distance(v);
+            if (through < best) {
+                best = through;
+                meetForward = v;
+                meetBackward = v;
+            }
+        }
+
+        /** Pops and expands the next vertex. */
+        void expand() {
+            int v = search.fringe.pop();
+            numStatesExplored += 1;
+            current = v;
+            if (isForward) {
+                graph.forEachNeighbor(v, this);
+            } else {
+                graph.forEachIncoming(v, this);
+            }
+        }
+
+        /** Relaxes the edge between the vertex being expanded and W. */
+        @Override
+        public void accept(int w, double weight) {
+            double distance = search.distance(current) + weight;
+            if (distance < search.distance(w)) {
+                search.reach(w, distance, current);
+                search.fringe.pushOrDecrease(distance + potential(w), w);
+            }
+            double through = distance + other.search.distance(w);
+            if (through < best) {
+                best = through;
+                meetForward = isForward ? current : w;
+                meetBackward = isForward ? w : current;
+            }
+        }
+
+        double topKey() {
+            return search.fringe.isEmpty() ? Double.POSITIVE_INFINITY : search.fringe.peekPriority();
+        }
+    }
+
+    public BidirectionalAStarSolver(StreetMapGraph input, Long start, Long end, double timeout) {
+        this(input, new long[]{start}, new double[]{0}, new long[]{end}, new double[]{0},
+                Double.POSITIVE_INFINITY, timeout);
+    }
+
+    /**
+     * Finds the shortest route that leaves from one of STARTS, having already covered the
+     * matching entry of STARTWEIGHTS, and arrives at one of ENDS, with the matching entry of
+     * ENDWEIGHTS still to cover. Infinite weights rule their vertex out. The solution runs from
+     * the start to the end of the best route, and its weight includes both partial weights.
+     * @param maxWeight Only routes lighter than this are solutions, so the search gives up as
+     *                  soon as it cannot find one.
+     */
+    public BidirectionalAStarSolver(StreetMapGraph input, long[] starts, double[] startWeights,
+                                    long[] ends, double[] endWeights, double maxWeight,
+                                    double timeout) {
+        long startTime = System.nanoTime();
+        this.graph = input;
+        this.sources = input.indicesOf(starts);
+        this.sourceWeights = startWeights;
+        this.goals = input.indicesOf(ends);
+        this.goalWeights = endWeights;
+        this.best = maxWeight;
+        this.forward = new Side(true);
+        this.backward = new Side(false);
+        forward.other = backward;
+        backward.other = forward;
+
+        outcome = SolverOutcome.UNSOLVABLE;
+        // The backward state is always taken second, so two searches never wait on each other
+        forward.search = SearchContext.acquire(input.forwardSearches());
+        try {
+            backward.search = SearchContext.acquire(input.backwardSearches());
+            try {
+                search(startTime + (long) (timeout * 1e9));
+            } finally {
+                input.backwardSearches().release(backward.search);
+                backward.search = null;
+            }
+        } finally {
+            input.forwardSearches().release(forward.search);
+            forward.search = null;
+        }
+        explorationTime = (System.nanoTime() - startTime) / 1e9;
+    }
+
+    /** Expands the side with the smaller key until the best path is found or DEADLINE passes. */
+    private void search(long deadline) {
+        for (int i = 0; i < sources.length; i += 1) {
+            forward.start(sources[i], sourceWeights[i]);
+        }
+        for (int j = 0; j < goals.length; j += 1) {
+            backward.start(goals[j], goalWeights[j]);
+        }
+        while (true) {
+            double forwardKey = forward.topKey();
+            double backwardKey = backward.topKey();
+            // The forward and backward potentials cancel, so the keys add up to a reduced length
+            if (forwardKey + backwardKey >= best || forwardKey == Double.POSITIVE_INFINITY
+                    || backwardKey == Double.POSITIVE_INFINITY) {
+                break;
+            }
+            if ((numStatesExplored & TIMEOUT_CHECK_MASK) == 0 && System.nanoTime() > deadline) {
+                outcome = SolverOutcome.TIMEOUT;
+                break;
+            }
+            if (forwardKey <= backwardKey) {
+                forward.expand();
+            } else {
+                backward.expand();
+            }
+        }
+        if (outcome != SolverOutcome.TIMEOUT && meetForward != -1) {
+            outcome = SolverOutcome.SOLVED;
+            solutionWeight = best;
+            solution = path();
+        }
+    }
+
+    /** Joins the forward path to meetForward with the backward path from meetBackward. */
+    private List<Long> path() {
+        List<Long> path = new ArrayList<>();
+        for (int x = meetForward; x != -1; x = forward.search.parent(x)) {
+            path.add(graph.id(x));
+        }
+        Collections.reverse(path);
+        if (meetBackward != meetForward) {
+            for (int x = meetBackward; x != -1; x = backward.search.parent(x)) {
+                path.add(graph.id(x));
+            }
+        }
+        return path;
+    }
+
+    @Override
+    public SolverOutcome outcome() {
+        return outcome;
+    }
+
+    @Override
+    public List<Long> solution() {
+        return solution;
+    }
+
+    @Override
+    public double solutionWeight() {
+        return solutionWeight;
+    }
+
+    @Override
+    public int numStatesExplored() {
+        return numStatesExplored;
+    }
+
+    @Override
+    public double explorationTime() {
+        return explorationTime;
+    }
+}
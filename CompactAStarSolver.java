@@ -0,0 +1,163 @@
+package huskymaps;
+
+import astar.ShortestPathsSolver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A* search over the dense vertex indices of a {@link StreetMapGraph}. Vertices are expanded
+ * through {@link StreetMapGraph#forEachNeighbor} with this solver as the visitor, so settling a
+ * vertex allocates no edge lists, edge objects or boxed ids. The distances, parents and
+ * decrease-key fringe live in a {@link SearchContext} taken from the graph's pool for the length
+ * of the search and reused by later ones, so a search allocates little beyond the path it returns.
+ *
+ * A search may also run from several starts, each already some distance into the route, to the
+ * nearest of several ends, each with some distance still to go. The heuristic is then the least
+ * over the ends of the estimate to the end plus its remaining distance, which stays consistent,
+ * and the search stops once no fringe key is below the best complete route.
+ */
+public class CompactAStarSolver implements ShortestPathsSolver<Long>, EdgeConsumer {
+    /** Number of expansions between checks of the clock. */
+    private static final int TIMEOUT_CHECK_MASK = 0xFF;
+
+    private final StreetMapGraph graph;
+    /** The dense indices of the ends, or -1 for ids not in the graph, and their distances to go. */
+    private final int[] goals;
+    private final double[] goalWeights;
+    private SearchContext search;
+    /** The best complete route found so far ends at bestGoal and weighs best. */
+    private double best;
+    private int bestGoal = -1;
+
+    /** The vertex currently being expanded, read by {@link #accept}. */
+    private int current;
+
+    private SolverOutcome outcome;
+    private List<Long> solution = List.of();
+    private double solutionWeight;
+    private int numStatesExplored;
+    private double explorationTime;
+
+    public CompactAStarSolver(StreetMapGraph input, Long start, Long end, double timeout) {
+        this(input, new long[]{start}, new double[]{0}, new long[]{end}, new double[]{0},
+                Double.POSITIVE_INFINITY, timeout);
+    }
+
+    /**
+     * Finds the shortest route that leaves from one of STARTS, having already covered the
+     * matching entry of STARTWEIGHTS, and arrives at one of ENDS, with the matching entry of
+     * ENDWEIGHTS still to cover. Infinite weights rule their vertex out. The solution runs from
+     * the start to the end of the best route, and its weight includes both partial weights.
+     * @param maxWeight Only routes lighter than this are solutions, so the search gives up as
+     *                  soon as it cannot find one.
+     */
+    public CompactAStarSolver(StreetMapGraph input, long[] starts, double[] startWeights,
+                              long[] ends, double[] endWeights, double maxWeight, double timeout) {
+        long startTime = System.nanoTime();
+        this.graph = input;
+        this.goals = input.indicesOf(ends);
+        this.goalWeights = endWeights;
+        this.best = maxWeight;
+        int[] sources = input.indicesOf(starts);
+        outcome = SolverOutcome.UNSOLVABLE;
+        search = SearchContext.acquire(input.forwardSearches());
+        try {
+            for (int i = 0; i < sources.length; i += 1) {
+                if (sources[i] >= 0 && startWeights[i] < search.distance(sources[i])) {
+                    reach(sources[i], startWeights[i], -1);
+                }
+            }
+            search(startTime + (long) (timeout * 1e9));
+        } finally {
+            input.forwardSearches().release(search);
+            search = null;
+        }
+        explorationTime = (System.nanoTime() - startTime) / 1e9;
+    }
+
+    /** Expands vertices until no fringe key is below the best route or DEADLINE passes. */
+    private void search(long deadline) {
+        IndexedMinHeap fringe = search.fringe;
+        while (!fringe.isEmpty() && fringe.peekPriority() < best) {
+            int v = fringe.pop();
+            numStatesExplored += 1;
+            if ((numStatesExplored & TIMEOUT_CHECK_MASK) == 0 && System.nanoTime() > deadline) {
+                outcome = SolverOutcome.TIMEOUT;
+                return;
+            }
+            current = v;
+            graph.forEachNeighbor(v, this);
+        }
+        if (bestGoal != -1) {
+            outcome = SolverOutcome.SOLVED;
+            solutionWeight = best;
+            solution = pathTo(bestGoal);
+        }
+    }
+
+    /** Relaxes the edge from the vertex being expanded to TO. */
+    @Override
+    public void accept(int to, double weight) {
+        double distance = search.distance(current) + weight;
+        if (distance < search.distance(to)) {
+            reach(to, distance, current);
+        }
+    }
+
+    /** Records that V is reached at DISTANCE from PARENT, and any route that now ends at V. */
+    private void reach(int v, double distance, int parent) {
+        search.reach(v, distance, parent);
+        double estimate = Double.POSITIVE_INFINITY;
+        for (int j = 0; j < goals.length; j += 1) {
+            if (goals[j] < 0) {
+                continue;
+            }
+            double toGoal = graph.estimatedDistanceToGoal(v, goals[j]) + goalWeights[j];
+            estimate = Math.min(estimate, toGoal);
+            if (goals[j] == v && distance + goalWeights[j] < best) {
+                best = distance + goalWeights[j];
+                bestGoal = v;
+            }
+        }
+        // Vertices from which no end can be reached are never expanded
+        if (estimate < Double.POSITIVE_INFINITY) {
+            search.fringe.pushOrDecrease(distance + estimate, v);
+        }
+    }
+
+    private List<Long> pathTo(int v) {
+        List<Long> path = new ArrayList<>();
+        for (int x = v; x != -1; x = search.parent(x)) {
+            path.add(graph.id(x));
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    @Override
+    public SolverOutcome outcome() {
+        return outcome;
+    }
+
+    @Override
+    public List<Long> solution() {
+        return solution;
+    }
+
+    @Override
+    public double solutionWeight() {
+        return solutionWeight;
+    }
+
+    @Override
+    public int numStatesExplored() {
+        return numStatesExplored;
+    }
+
+    @Override
+    public double explorationTime() {
+        return explorationTime;
+    }
+}
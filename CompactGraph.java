@@ -0,0 +1,391 @@
+package huskymaps;
+
+import huskymaps.utils.LongIntHashMap;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static huskymaps.utils.Spatial.greatCircleDistance;
+
+/**
+ * Frozen, compressed-sparse-row (CSR) representation of the street graph.
+ *
+ * Vertices are numbered with dense int indices in the order they were added. All per-vertex
+ * data lives in parallel primitive arrays indexed by vertex, and the outgoing edges of vertex v
+ * are the edge indices in the half-open range [edgeStart(v), edgeEnd(v)). Way and location names
+ * are interned into a single string table and referenced by int id, so the whole graph is a
+ * handful of large arrays instead of one map entry, set and edge object per vertex.
+ *
+ * Instances are immutable once built and are safe to share across threads.
+ */
+public class CompactGraph {
+    /** Name id used for vertices and edges without a name. */
+    public static final int NO_NAME = -1;
+
+    private final long[] ids;
+    private final double[] lats;
+    private final double[] lons;
+    private final int[] nodeNames;
+    private final int[] importance;
+    private final int[] offsets;
+    private final int[] targets;
+    private final float[] weights;
+    private final int[] edgeNames;
+    private final String[] names;
+    private final LongIntHashMap index;
+    private final LocationIndex locationIndex;
+    /** The edges into vertex v are [reverseOffsets[v], reverseOffsets[v + 1]) of these arrays. */
+    private final int[] reverseOffsets;
+    private final int[] reverseSources;
+    private final float[] reverseWeights;
+
+    private CompactGraph(long[] ids, double[] lats, double[] lons, int[] nodeNames, int[] importance,
+                         int[] offsets, int[] targets, float[] weights, int[] edgeNames,
+                         String[] names, LongIntHashMap index) {
+        this.ids = ids;
+        this.lats = lats;
+        this.lons = lons;
+        this.nodeNames = nodeNames;
+        this.importance = importance;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.edgeNames = edgeNames;
+        this.names = names;
+        this.index = index;
+        this.locationIndex = new LocationIndex(nodeNames, names);
+        // Transpose the edges by counting sort on their targets
+        int n = ids.length;
+        reverseOffsets = new int[n + 1];
+        for (int target : targets) {
+            reverseOffsets[target + 1] += 1;
+        }
+        for (int v = 0; v < n; v += 1) {
+            reverseOffsets[v + 1] += reverseOffsets[v];
+        }
+        reverseSources = new int[targets.length];
+        reverseWeights = new float[targets.length];
+        int[] next = Arrays.copyOf(reverseOffsets, n);
+        for (int v = 0; v < n; v += 1) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e += 1) {
+                int slot = next[targets[e]];
+                reverseSources[slot] = v;
+                reverseWeights[slot] = weights[e];
+                next[targets[e]] += 1;
+            }
+        }
+    }
+
+    /** Rebuilds the id index of a graph whose arrays were read back from a snapshot. */
+    private static LongIntHashMap indexIds(long[] ids) {
+        LongIntHashMap index = new LongIntHashMap(ids.length);
+        for (int v = 0; v < ids.length; v += 1) {
+            index.put(ids[v], v);
+        }
+        return index;
+    }
+
+    /** Returns the number of vertices. */
+    public int size() {
+        return ids.length;
+    }
+
+    /** Returns the number of directed edges. */
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    /** Returns the dense index of the vertex with the given OSM id, or -1 if there is none. */
+    public int indexOf(long id) {
+        return index.get(id);
+    }
+
+    /** Returns the OSM id of vertex V. */
+    public long id(int v) {
+        return ids[v];
+    }
+
+    public double lat(int v) {
+        return lats[v];
+    }
+
+    public double lon(int v) {
+        return lons[v];
+    }
+
+    /** Returns the location name of vertex V, or null if it has none. */
+    public String name(int v) {
+        return nodeNames[v] == NO_NAME ? null : names[nodeNames[v]];
+    }
+
+    public int importance(int v) {
+        return importance[v];
+    }
+
+    /** Returns the vertices whose cleaned location name equals the cleaned NAME. */
+    public int[] locations(String name) {
+        return locationIndex.get(name);
+    }
+
+    /** Returns the out-degree of vertex V. */
+    public int degree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    /** Returns the first outgoing edge index of vertex V. */
+    public int edgeStart(int v) {
+        return offsets[v];
+    }
+
+    /** Returns one past the last outgoing edge index of vertex V. */
+    public int edgeEnd(int v) {
+        return offsets[v + 1];
+    }
+
+    /** Returns the vertex that edge E points to. */
+    public int target(int e) {
+        return targets[e];
+    }
+
+    public double weight(int e) {
+        return weights[e];
+    }
+
+    /** Calls CONSUMER once for every outgoing edge of vertex V, without allocating. */
+    public void forEachNeighbor(int v, EdgeConsumer consumer) {
+        for (int e = offsets[v], end = offsets[v + 1]; e < end; e += 1) {
+            consumer.accept(targets[e], weights[e]);
+        }
+    }
+
+    /**
+     * Calls CONSUMER once for every incoming edge of vertex V with the vertex the edge comes
+     * from, without allocating.
+     */
+    public void forEachIncoming(int v, EdgeConsumer consumer) {
+        for (int e = reverseOffsets[v], end = reverseOffsets[v + 1]; e < end; e += 1) {
+            consumer.accept(reverseSources[e], reverseWeights[e]);
+        }
+    }
+
+    /** Returns the way name of edge E, or null if the way is unnamed. */
+    public String edgeName(int e) {
+        return edgeNames[e] == NO_NAME ? null : names[edgeNames[e]];
+    }
+
+    /**
+     * Returns a hash of the vertex ids and edges. Derived indexes that are saved to disk record
+     * it so they can detect that they were built for different map data.
+     */
+    public long fingerprint() {
+        long hash = 1125899906842597L;
+        hash = 31 * hash + ids.length;
+        for (long id : ids) {
+            hash = 31 * hash + id;
+        }
+        for (int offset : offsets) {
+            hash = 31 * hash + offset;
+        }
+        for (int e = 0; e < targets.length; e += 1) {
+            hash = 31 * hash + targets[e];
+            hash = 31 * hash + Float.floatToIntBits(weights[e]);
+        }
+        return hash;
+    }
+
+    /** Returns the number of bytes {@link #writeTo} will write. */
+    int serializedSize() {
+        // The lengths of the nine arrays and of the names
+        long size = 10 * Integer.BYTES;
+        size += (long) ids.length * (Long.BYTES + 2 * Double.BYTES + 2 * Integer.BYTES);
+        size += (long) offsets.length * Integer.BYTES;
+        size += (long) targets.length * (2 * Integer.BYTES + Float.BYTES);
+        for (String name : names) {
+            size += Integer.BYTES + name.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return Math.toIntExact(size);
+    }
+
+    /** Writes the arrays of this graph to BUFFER, each prefixed by its length. */
+    void writeTo(ByteBuffer buffer) {
+        GraphSnapshot.putLongs(buffer, ids);
+        GraphSnapshot.putDoubles(buffer, lats);
+        GraphSnapshot.putDoubles(buffer, lons);
+        GraphSnapshot.putInts(buffer, nodeNames);
+        GraphSnapshot.putInts(buffer, importance);
+        GraphSnapshot.putInts(buffer, offsets);
+        GraphSnapshot.putInts(buffer, targets);
+        GraphSnapshot.putFloats(buffer, weights);
+        GraphSnapshot.putInts(buffer, edgeNames);
+        buffer.putInt(names.length);
+        for (String name : names) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    /** Reads a graph written by {@link #writeTo} from BUFFER. */
+    static CompactGraph readFrom(ByteBuffer buffer) {
+        long[] ids = GraphSnapshot.getLongs(buffer);
+        double[] lats = GraphSnapshot.getDoubles(buffer);
+        double[] lons = GraphSnapshot.getDoubles(buffer);
+        int[] nodeNames = GraphSnapshot.getInts(buffer);
+        int[] importance = GraphSnapshot.getInts(buffer);
+        int[] offsets = GraphSnapshot.getInts(buffer);
+        int[] targets = GraphSnapshot.getInts(buffer);
+        float[] weights = GraphSnapshot.getFloats(buffer);
+        int[] edgeNames = GraphSnapshot.getInts(buffer);
+        String[] names = new String[buffer.getInt()];
+        for (int i = 0; i < names.length; i += 1) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            names[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new CompactGraph(ids, lats, lons, nodeNames, importance, offsets, targets, weights,
+                edgeNames, names, indexIds(ids));
+    }
+
+    /**
+     * Accumulates vertices and edges while the OSM file is being read, then freezes them into a
+     * CompactGraph. Edges may only be added between vertices that were already added.
+     */
+    static class Builder {
+        private final LongIntHashMap index = new LongIntHashMap();
+        private final Map<String, Integer> nameIds = new HashMap<>();
+        private String[] names = new String[16];
+        private int numNames;
+
+        private long[] ids = new long[1024];
+        private double[] lats = new double[1024];
+        private double[] lons = new double[1024];
+        private int[] nodeNames = new int[1024];
+        private int[] importance = new int[1024];
+        private int numVertices;
+
+        private int[] froms = new int[1024];
+        private int[] tos = new int[1024];
+        private float[] weights = new float[1024];
+        private int[] edgeNames = new int[1024];
+        private int numEdges;
+
+        /**
+         * Adds a vertex if no vertex with the same id exists yet.
+         * @return The dense index of the new vertex, or -1 if the id was already present.
+         */
+        int addNode(long id, double lat, double lon, String name, int importance) {
+            if (index.containsKey(id)) {
+                return -1;
+            }
+            if (numVertices == ids.length) {
+                int capacity = ids.length * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                lats = Arrays.copyOf(lats, capacity);
+                lons = Arrays.copyOf(lons, capacity);
+                nodeNames = Arrays.copyOf(nodeNames, capacity);
+                this.importance = Arrays.copyOf(this.importance, capacity);
+            }
+            int v = numVertices;
+            ids[v] = id;
+            lats[v] = lat;
+            lons[v] = lon;
+            nodeNames[v] = intern(name);
+            this.importance[v] = importance;
+            index.put(id, v);
+            numVertices += 1;
+            return v;
+        }
+
+        /** Adds a directed edge between the existing vertices FROM and TO. */
+        void addEdge(int from, int to, double weight, String name) {
+            if (numEdges == froms.length) {
+                int capacity = froms.length * 2;
+                froms = Arrays.copyOf(froms, capacity);
+                tos = Arrays.copyOf(tos, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+                edgeNames = Arrays.copyOf(edgeNames, capacity);
+            }
+            froms[numEdges] = from;
+            tos[numEdges] = to;
+            weights[numEdges] = (float) weight;
+            edgeNames[numEdges] = intern(name);
+            numEdges += 1;
+        }
+
+        /**
+         * Adds a directed edge between the existing vertices FROM and TO whose weight is the
+         * great-circle distance between them. The distances are computed in bulk by
+         * {@link #build}, once every vertex is known.
+         */
+        void addEdge(int from, int to, String name) {
+            addEdge(from, to, Double.NaN, name);
+        }
+
+        /** Returns the dense index of the vertex with the given id, or -1 if there is none. */
+        int indexOf(long id) {
+            return index.get(id);
+        }
+
+        private int intern(String name) {
+            if (name == null || name.isEmpty()) {
+                return NO_NAME;
+            }
+            Integer id = nameIds.get(name);
+            if (id == null) {
+                if (numNames == names.length) {
+                    names = Arrays.copyOf(names, numNames * 2);
+                }
+                id = numNames;
+                names[numNames] = name;
+                numNames += 1;
+                nameIds.put(name, id);
+            }
+            return id;
+        }
+
+        /**
+         * Freezes the accumulated vertices and edges. Edges are grouped by source vertex with a
+         * counting sort, which keeps each vertex's edges in insertion order.
+         */
+        CompactGraph build() {
+            IntStream.range(0, numEdges).parallel().forEach(e -> {
+                if (Float.isNaN(weights[e])) {
+                    weights[e] = (float) greatCircleDistance(lons[froms[e]], lons[tos[e]],
+                            lats[froms[e]], lats[tos[e]]);
+                }
+            });
+            int[] offsets = new int[numVertices + 1];
+            for (int e = 0; e < numEdges; e += 1) {
+                offsets[froms[e] + 1] += 1;
+            }
+            for (int v = 0; v < numVertices; v += 1) {
+                offsets[v + 1] += offsets[v];
+            }
+            int[] next = Arrays.copyOf(offsets, numVertices);
+            int[] sortedTargets = new int[numEdges];
+            float[] sortedWeights = new float[numEdges];
+            int[] sortedNames = new int[numEdges];
+            for (int e = 0; e < numEdges; e += 1) {
+                int slot = next[froms[e]];
+                next[froms[e]] += 1;
+                sortedTargets[slot] = tos[e];
+                sortedWeights[slot] = weights[e];
+                sortedNames[slot] = edgeNames[e];
+            }
+            return new CompactGraph(
+                    Arrays.copyOf(ids, numVertices),
+                    Arrays.copyOf(lats, numVertices),
+                    Arrays.copyOf(lons, numVertices),
+                    Arrays.copyOf(nodeNames, numVertices),
+                    Arrays.copyOf(importance, numVertices),
+                    offsets, sortedTargets, sortedWeights, sortedNames,
+                    Arrays.copyOf(names, numNames),
+                    index
+            );
+        }
+    }
+}
@@ -0,0 +1,815 @@
+package huskymaps;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import huskymaps.utils.LongIntHashMap;
+
+import static huskymaps.utils.Constants.CH_PATH;
+import static huskymaps.utils.Constants.OSM_DB_PATH;
+import static huskymaps.utils.Constants.SEARCH_STATES;
+
+/**
+ * A Contraction Hierarchies (CH) index over a {@link StreetMapGraph}.
+ *
+ * Preprocessing contracts the vertices one at a time in order of importance. Contracting v adds
+ * a shortcut edge u -> w for every pair of remaining neighbors whose only shortest path runs
+ * through v, so distances between the remaining vertices are preserved. A vertex's rank is the
+ * position at which it was contracted.
+ *
+ * A query runs two Dijkstra searches that only ever move to higher-ranked vertices: forward
+ * from the source over the upward edges, and backward from the destination over the downward
+ * edges. The searches meet at the highest-ranked vertex on the shortest path and touch only a
+ * few hundred vertices even for routes across the whole map. Shortcuts on the resulting path are
+ * then unpacked back into the original street vertices.
+ *
+ * Distance tables between many sources and targets use the same two searches without a meeting
+ * test: the backward search space of every target is stored in buckets at the vertices it
+ * settles, and each source's forward search scans the buckets it meets.
+ *
+ * The index is built offline by {@link #main} and written to disk; see {@link #read}.
+ */
+public class ContractionHierarchy {
+    private static final int MAGIC = 0x48554348;
+    private static final int VERSION = 1;
+    /** Marks an edge that is an original street segment rather than a shortcut. */
+    private static final int NO_MIDDLE = -1;
+
+    private final CompactGraph graph;
+    private final int[] rank;
+    /** Upward edges v -> upTargets[e] for e in [upOffsets[v], upOffsets[v + 1]). */
+    private final int[] upOffsets;
+    private final int[] upTargets;
+    private final double[] upWeights;
+    private final int[] upMiddles;
+    /** Downward edges downSources[e] -> v for e in [downOffsets[v], downOffsets[v + 1]). */
+    private final int[] downOffsets;
+    private final int[] downSources;
+    private final double[] downWeights;
+    private final int[] downMiddles;
+    private final SearchPool<Query> queries;
+
+    private ContractionHierarchy(CompactGraph graph, int[] rank,
+                                 int[] upOffsets, int[] upTargets, double[] upWeights, int[] upMiddles,
+                                 int[] downOffsets, int[] downSources, double[] downWeights,
+                                 int[] downMiddles) {
+        this.graph = graph;
+        this.rank = rank;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upMiddles = upMiddles;
+        this.downOffsets = downOffsets;
+        this.downSources = downSources;
+        this.downWeights = downWeights;
+        this.downMiddles = downMiddles;
+        this.queries = new SearchPool<>(SEARCH_STATES, () -> new Query(graph.size()));
+    }
+
+    /** Contracts every vertex of G. This takes a while and is meant to run offline. */
+    public static ContractionHierarchy build(StreetMapGraph g) {
+        return new Contractor(g.compactGraph()).contract();
+    }
+
+    /**
+     * Returns the shortest path between the vertices with OSM ids START and END, or an empty
+     * list if there is none.
+     */
+    public List<Long> shortestPath(long start, long end) {
+        return shortestPath(new long[]{start}, new double[]{0}, new long[]{end}, new double[]{0},
+                Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Returns the shortest route that leaves from one of STARTS, having already covered the
+     * matching entry of STARTWEIGHTS, and arrives at one of ENDS, with the matching entry of
+     * ENDWEIGHTS still to cover, from its start to its end. Infinite weights rule their vertex
+     * out. Returns an empty list if no such route weighs less than MAXWEIGHT.
+     */
+    public List<Long> shortestPath(long[] starts, double[] startWeights, long[] ends,
+                                   double[] endWeights, double maxWeight) {
+        Query query = queries.acquire();
+        try {
+            int meeting = query.run(indicesOf(starts), startWeights, indicesOf(ends), endWeights,
+                    maxWeight);
+            return meeting < 0 ? List.of() : path(query, meeting);
+        } finally {
+            queries.release(query);
+        }
+    }
+
+    /** Returns the dense index of the vertex with each of IDS, or -1 for ids with none. */
+    private int[] indicesOf(long[] ids) {
+        int[] indices = new int[ids.length];
+        for (int i = 0; i < ids.length; i += 1) {
+            indices[i] = graph.indexOf(ids[i]);
+        }
+        return indices;
+    }
+
+    /** Unpacks the path QUERY found through MEETING into original vertices, while QUERY is held. */
+    private List<Long> path(Query query, int meeting) {
+        List<Integer> upEdges = new ArrayList<>();
+        int source = meeting;
+        for (; query.upParent[source] != -1; source = query.upParent[source]) {
+            upEdges.add(query.upEdge[source]);
+        }
+        Collections.reverse(upEdges);
+        List<Long> path = new ArrayList<>();
+        path.add(graph.id(source));
+        int from = source;
+        for (int e : upEdges) {
+            unpack(from, upTargets[e], upMiddles[e], path);
+            from = upTargets[e];
+        }
+        for (int v = meeting; query.downParent[v] != -1; v = query.downParent[v]) {
+            int e = query.downEdge[v];
+            unpack(v, query.downParent[v], downMiddles[e], path);
+        }
+        return path;
+    }
+
+    /** Appends the original vertices on the edge FROM -> TO, excluding FROM, to PATH. */
+    private void unpack(int from, int to, int middle, List<Long> path) {
+        if (middle == NO_MIDDLE) {
+            path.add(graph.id(to));
+            return;
+        }
+        // The middle vertex was contracted before both endpoints, so the edge into it is one of
+        // its downward edges and the edge out of it is one of its upward edges.
+        int in = findEdge(downOffsets, downSources, middle, from);
+        int out = findEdge(upOffsets, upTargets, middle, to);
+        unpack(from, middle, downMiddles[in], path);
+        unpack(middle, to, upMiddles[out], path);
+    }
+
+    private static int findEdge(int[] offsets, int[] endpoints, int v, int endpoint) {
+        for (int e = offsets[v]; e < offsets[v + 1]; e += 1) {
+            if (endpoints[e] == endpoint) {
+                return e;
+            }
+        }
+        throw new IllegalStateException("Missing shortcut half at vertex " + v);
+    }
+
+    /** Returns the contraction rank of the vertex with dense index V. */
+    int rank(int v) {
+        return rank[v];
+    }
+
+    /**
+     * The backward searches from a set of targets, kept as a bucket per vertex listing the
+     * targets that reached it and their distances. A forward search from a source that meets a
+     * bucket at v gets an upper bound on the distance to each of its targets, and the minimum
+     * over all the vertices it settles is the exact distance.
+     */
+    static class TargetBuckets {
+        final int numTargets;
+        /** Maps a vertex to its bucket, entries [bucketStart[b], bucketStart[b + 1]). */
+        final LongIntHashMap buckets;
+        final int[] bucketStart;
+        final int[] entryTargets;
+        final double[] entryDistances;
+
+        TargetBuckets(int numTargets, LongIntHashMap buckets, int[] bucketStart, int[] entryTargets,
+                      double[] entryDistances) {
+            this.numTargets = numTargets;
+            this.buckets = buckets;
+            this.bucketStart = bucketStart;
+            this.entryTargets = entryTargets;
+            this.entryDistances = entryDistances;
+        }
+    }
+
+    /**
+     * Runs the backward search of each of TARGETS, given as dense indices, in parallel on the
+     * calling thread's pool and collects them into buckets.
+     */
+    TargetBuckets targetBuckets(int[] targets) {
+        List<double[]> searches = IntStream.range(0, targets.length).parallel()
+                .mapToObj(j -> searchSpace(targets[j], false))
+                .collect(Collectors.toList());
+        int numEntries = 0;
+        for (double[] search : searches) {
+            numEntries += search.length / 2;
+        }
+        // Sort the (vertex, target) entries by vertex, so each bucket is contiguous
+        long[] order = new long[numEntries];
+        double[] distances = new double[numEntries];
+        int[] targetOf = new int[numEntries];
+        int i = 0;
+        for (int j = 0; j < searches.size(); j += 1) {
+            double[] search = searches.get(j);
+            for (int k = 0; k < search.length; k += 2) {
+                order[i] = ((long) search[k] << 32) | i;
+                distances[i] = search[k + 1];
+                targetOf[i] = j;
+                i += 1;
+            }
+        }
+        Arrays.sort(order);
+        LongIntHashMap buckets = new LongIntHashMap();
+        int[] bucketStart = new int[numEntries + 1];
+        int[] entryTargets = new int[numEntries];
+        double[] entryDistances = new double[numEntries];
+        int numBuckets = 0;
+        long previous = -1;
+        for (int k = 0; k < numEntries; k += 1) {
+            long vertex = order[k] >>> 32;
+            int entry = (int) order[k];
+            if (vertex != previous) {
+                buckets.put(vertex, numBuckets);
+                bucketStart[numBuckets] = k;
+                numBuckets += 1;
+                previous = vertex;
+            }
+            entryTargets[k] = targetOf[entry];
+            entryDistances[k] = distances[entry];
+        }
+        bucketStart[numBuckets] = numEntries;
+        return new TargetBuckets(targets.length, buckets, Arrays.copyOf(bucketStart, numBuckets + 1),
+                entryTargets, entryDistances);
+    }
+
+    /**
+     * Returns the distance from the vertex with dense index SOURCE to each target of BUCKETS, or
+     * infinity for the targets it cannot reach.
+     */
+    double[] distances(int source, TargetBuckets buckets) {
+        double[] row = new double[buckets.numTargets];
+        Arrays.fill(row, Double.POSITIVE_INFINITY);
+        double[] search = searchSpace(source, true);
+        for (int k = 0; k < search.length; k += 2) {
+            int b = buckets.buckets.get((long) search[k]);
+            if (b < 0) {
+                continue;
+            }
+            double d = search[k + 1];
+            for (int e = buckets.bucketStart[b]; e < buckets.bucketStart[b + 1]; e += 1) {
+                int j = buckets.entryTargets[e];
+                row[j] = Math.min(row[j], d + buckets.entryDistances[e]);
+            }
+        }
+        return row;
+    }
+
+    /** Runs {@link Query#searchSpace} on a query taken from the pool while it searches. */
+    private double[] searchSpace(int start, boolean upward) {
+        Query query = queries.acquire();
+        try {
+            return query.searchSpace(start, upward);
+        } finally {
+            queries.release(query);
+        }
+    }
+
+    /**
+     * Bidirectional search state, kept in a {@link SearchPool} between queries and cleared in
+     * O(1) by advancing the epoch.
+     */
+    private class Query {
+        final double[] upDist;
+        final double[] downDist;
+        final int[] upStamp;
+        final int[] downStamp;
+        final int[] upParent;
+        final int[] downParent;
+        final int[] upEdge;
+        final int[] downEdge;
+        final MinHeap upFringe = new MinHeap();
+        final MinHeap downFringe = new MinHeap();
+        int epoch;
+
+        Query(int n) {
+            upDist = new double[n];
+            downDist = new double[n];
+            upStamp = new int[n];
+            downStamp = new int[n];
+            upParent = new int[n];
+            downParent = new int[n];
+            upEdge = new int[n];
+            downEdge = new int[n];
+        }
+
+        /**
+         * Runs a query from SOURCES to TARGETS, each starting at its weight, and returns the
+         * vertex where the searches met on a path lighter than MAXWEIGHT, or -1 if there is none.
+         * Sources and targets that are -1 or have infinite weights are skipped.
+         */
+        int run(int[] sources, double[] sourceWeights, int[] targets, double[] targetWeights,
+                double maxWeight) {
+            nextEpoch();
+            upFringe.clear();
+            downFringe.clear();
+            for (int i = 0; i < sources.length; i += 1) {
+                int v = sources[i];
+                double d = sourceWeights[i];
+                if (v < 0 || d == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+                if (upStamp[v] != epoch || d < upDist[v]) {
+                    reachUp(v, d, -1, -1);
+                    upFringe.push(d, v);
+                }
+            }
+            for (int j = 0; j < targets.length; j += 1) {
+                int v = targets[j];
+                double d = targetWeights[j];
+                if (v < 0 || d == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+                if (downStamp[v] != epoch || d < downDist[v]) {
+                    reachDown(v, d, -1, -1);
+                    downFringe.push(d, v);
+                }
+            }
+            double best = maxWeight;
+            int meeting = -1;
+            while (true) {
+                boolean upDone = upFringe.isEmpty() || upFringe.peekPriority() >= best;
+                boolean downDone = downFringe.isEmpty() || downFringe.peekPriority() >= best;
+                if (upDone && downDone) {
+                    return meeting;
+                }
+                if (!upDone && (downDone || upFringe.peekPriority() <= downFringe.peekPriority())) {
+                    double d = upFringe.peekPriority();
+                    int v = upFringe.pop();
+                    if (d > upDist[v]) {
+                        continue;
+                    }
+                    if (downStamp[v] == epoch && d + downDist[v] < best) {
+                        best = d + downDist[v];
+                        meeting = v;
+                    }
+                    for (int e = upOffsets[v]; e < upOffsets[v + 1]; e += 1) {
+                        int w = upTargets[e];
+                        double distance = d + upWeights[e];
+                        if (upStamp[w] != epoch || distance < upDist[w]) {
+                            reachUp(w, distance, v, e);
+                            upFringe.push(distance, w);
+                        }
+                    }
+                } else {
+                    double d = downFringe.peekPriority();
+                    int v = downFringe.pop();
+                    if (d > downDist[v]) {
+                        continue;
+                    }
+                    if (upStamp[v] == epoch && d + upDist[v] < best) {
+                        best = d + upDist[v];
+                        meeting = v;
+                    }
+                    for (int e = downOffsets[v]; e < downOffsets[v + 1]; e += 1) {
+                        int u = downSources[e];
+                        double distance = d + downWeights[e];
+                        if (downStamp[u] != epoch || distance < downDist[u]) {
+                            reachDown(u, distance, v, e);
+                            downFringe.push(distance, u);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Runs the whole upward search from START, over the upward edges if UPWARD and over the
+         * reversed downward edges otherwise, without a target to stop at.
+         * @return The settled vertices and their distances, as pairs in one array.
+         */
+        double[] searchSpace(int start, boolean upward) {
+            nextEpoch();
+            MinHeap fringe = upward ? upFringe : downFringe;
+            int[] offsets = upward ? upOffsets : downOffsets;
+            int[] ends = upward ? upTargets : downSources;
+            double[] weights = upward ? upWeights : downWeights;
+            double[] dist = upward ? upDist : downDist;
+            int[] stamp = upward ? upStamp : downStamp;
+            fringe.clear();
+            stamp[start] = epoch;
+            dist[start] = 0;
+            fringe.push(0, start);
+            double[] settled = new double[64];
+            int numSettled = 0;
+            while (!fringe.isEmpty()) {
+                double d = fringe.peekPriority();
+                int v = fringe.pop();
+                if (d > dist[v]) {
+                    continue;
+                }
+                if (2 * numSettled + 2 > settled.length) {
+                    settled = Arrays.copyOf(settled, 2 * settled.length);
+                }
+                settled[2 * numSettled] = v;
+                settled[2 * numSettled + 1] = d;
+                numSettled += 1;
+                for (int e = offsets[v]; e < offsets[v + 1]; e += 1) {
+                    int w = ends[e];
+                    double distance = d + weights[e];
+                    if (stamp[w] != epoch || distance < dist[w]) {
+                        stamp[w] = epoch;
+                        dist[w] = distance;
+                        fringe.push(distance, w);
+                    }
+                }
+            }
+            return Arrays.copyOf(settled, 2 * numSettled);
+        }
+
+        private void reachUp(int v, double distance, int parent, int edge) {
+            upStamp[v] = epoch;
+            upDist[v] = distance;
+            upParent[v] = parent;
+            upEdge[v] = edge;
+        }
+
+        private void reachDown(int v, double distance, int parent, int edge) {
+            downStamp[v] = epoch;
+            downDist[v] = distance;
+            downParent[v] = parent;
+            downEdge[v] = edge;
+        }
+
+        private void nextEpoch() {
+            if (epoch == Integer.MAX_VALUE) {
+                Arrays.fill(upStamp, 0);
+                Arrays.fill(downStamp, 0);
+                epoch = 0;
+            }
+            epoch += 1;
+        }
+    }
+
+    /**
+     * Writes this index to FILENAME. The file records a fingerprint of the graph it was built
+     * for so that {@link #read} can reject it after the map data changes.
+     */
+    public void write(String filename) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(filename), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(graph.fingerprint());
+            writeInts(out, rank);
+            writeInts(out, upOffsets);
+            writeInts(out, upTargets);
+            writeDoubles(out, upWeights);
+            writeInts(out, upMiddles);
+            writeInts(out, downOffsets);
+            writeInts(out, downSources);
+            writeDoubles(out, downWeights);
+            writeInts(out, downMiddles);
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #write} for the graph G.
+     * @return The index, or null if the file is missing or was built for different map data.
+     */
+    public static ContractionHierarchy read(StreetMapGraph g, String filename) {
+        CompactGraph graph = g.compactGraph();
+        if (!new File(filename).isFile()) {
+            System.out.println("Missing contraction hierarchy: " + filename);
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(filename), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readLong() != graph.fingerprint()) {
+                System.out.println("Stale contraction hierarchy: " + filename);
+                return null;
+            }
+            return new ContractionHierarchy(graph, readInts(in),
+                    readInts(in), readInts(in), readDoubles(in), readInts(in),
+                    readInts(in), readInts(in), readDoubles(in), readInts(in));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double value : values) {
+            out.writeDouble(value);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i += 1) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static double[] readDoubles(DataInputStream in) throws IOException {
+        double[] values = new double[in.readInt()];
+        for (int i = 0; i < values.length; i += 1) {
+            values[i] = in.readDouble();
+        }
+        return values;
+    }
+
+    /**
+     * Contracts the vertices of a graph, keeping mutable adjacency lists of the original edges and
+     * shortcuts between uncontracted vertices. Parallel edges are merged, keeping the lightest.
+     */
+    private static class Contractor {
+        /** Witness searches give up after settling this many vertices, which may add a few
+         *  unnecessary shortcuts but keeps preprocessing roughly linear. */
+        private static final int WITNESS_SETTLE_LIMIT = 64;
+
+        private final CompactGraph graph;
+        private final int n;
+        /** The active graph of uncontracted vertices, in both directions. */
+        private final Adjacency out;
+        private final Adjacency in;
+        /** The upward and downward edges of the contracted vertices. */
+        private final Adjacency up;
+        private final Adjacency down;
+        private final int[] contractedNeighbors;
+        private final int[] level;
+        private final int[] rank;
+
+        private final double[] witnessDist;
+        private final int[] witnessStamp;
+        private final MinHeap witnessFringe = new MinHeap();
+        private int witnessEpoch;
+
+        Contractor(CompactGraph graph) {
+            this.graph = graph;
+            this.n = graph.size();
+            out = new Adjacency(n);
+            in = new Adjacency(n);
+            up = new Adjacency(n);
+            down = new Adjacency(n);
+            contractedNeighbors = new int[n];
+            level = new int[n];
+            rank = new int[n];
+            witnessDist = new double[n];
+            witnessStamp = new int[n];
+            for (int v = 0; v < n; v += 1) {
+                for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                    if (graph.target(e) != v) {
+                        addEdge(v, graph.target(e), graph.weight(e), NO_MIDDLE);
+                    }
+                }
+            }
+        }
+
+        ContractionHierarchy contract() {
+            MinHeap order = new MinHeap(n);
+            for (int v = 0; v < n; v += 1) {
+                order.push(priority(v), v);
+            }
+            int nextRank = 0;
+            while (!order.isEmpty()) {
+                int v = order.pop();
+                // Priorities go stale as neighbors are contracted, so recompute lazily and put
+                // the vertex back if it is no longer the cheapest to contract.
+                double priority = priority(v);
+                if (!order.isEmpty() && priority > order.peekPriority()) {
+                    order.push(priority, v);
+                    continue;
+                }
+                shortcuts(v, true);
+                rank[v] = nextRank;
+                nextRank += 1;
+                retire(v, out, in, up);
+                retire(v, in, out, down);
+            }
+            return freeze();
+        }
+
+        /**
+         * Moves the remaining edges of the just-contracted vertex V from the active graph to its
+         * final upward or downward edges. Every remaining neighbor is contracted later, so it
+         * ranks higher than V. Dropping V from the neighbors' lists keeps the active graph, and
+         * therefore the witness searches, small.
+         */
+        private void retire(int v, Adjacency edges, Adjacency reverse, Adjacency result) {
+            for (int i = 0; i < edges.size[v]; i += 1) {
+                int w = edges.vertex[v][i];
+                result.add(v, w, edges.weight[v][i], edges.middle[v][i]);
+                reverse.remove(w, reverse.indexOf(w, v));
+                contractedNeighbors[w] += 1;
+                level[w] = Math.max(level[w], level[v] + 1);
+            }
+            edges.clear(v);
+        }
+
+        /** Lower is contracted earlier: prefer vertices that add few shortcuts for the edges
+         *  they remove, spread contraction evenly, and keep the hierarchy shallow. */
+        private double priority(int v) {
+            int removed = out.size[v] + in.size[v];
+            int added = shortcuts(v, false);
+            return (added - removed) + contractedNeighbors[v] + level[v];
+        }
+
+        /**
+         * Finds the shortcuts needed to contract V, adding them if ADD is true.
+         * @return The number of shortcuts needed.
+         */
+        private int shortcuts(int v, boolean add) {
+            int count = 0;
+            double maxOut = 0;
+            for (int j = 0; j < out.size[v]; j += 1) {
+                maxOut = Math.max(maxOut, out.weight[v][j]);
+            }
+            for (int i = 0; i < in.size[v]; i += 1) {
+                int u = in.vertex[v][i];
+                double toV = in.weight[v][i];
+                witnessSearch(u, v, toV + maxOut);
+                for (int j = 0; j < out.size[v]; j += 1) {
+                    int w = out.vertex[v][j];
+                    if (w == u) {
+                        continue;
+                    }
+                    double viaV = toV + out.weight[v][j];
+                    if (witnessStamp[w] != witnessEpoch || witnessDist[w] > viaV) {
+                        count += 1;
+                        if (add) {
+                            addEdge(u, w, viaV, v);
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+
+        /** Runs a bounded Dijkstra search from SOURCE that avoids the vertex being contracted. */
+        private void witnessSearch(int source, int avoid, double maxDistance) {
+            if (witnessEpoch == Integer.MAX_VALUE) {
+                Arrays.fill(witnessStamp, 0);
+                witnessEpoch = 0;
+            }
+            witnessEpoch += 1;
+            witnessFringe.clear();
+            witnessStamp[source] = witnessEpoch;
+            witnessDist[source] = 0;
+            witnessFringe.push(0, source);
+            int settled = 0;
+            while (!witnessFringe.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+                double d = witnessFringe.peekPriority();
+                int v = witnessFringe.pop();
+                if (d > witnessDist[v]) {
+                    continue;
+                }
+                if (d > maxDistance) {
+                    break;
+                }
+                settled += 1;
+                for (int i = 0; i < out.size[v]; i += 1) {
+                    int w = out.vertex[v][i];
+                    if (w == avoid) {
+                        continue;
+                    }
+                    double distance = d + out.weight[v][i];
+                    if (witnessStamp[w] != witnessEpoch || distance < witnessDist[w]) {
+                        witnessStamp[w] = witnessEpoch;
+                        witnessDist[w] = distance;
+                        witnessFringe.push(distance, w);
+                    }
+                }
+            }
+        }
+
+        private void addEdge(int u, int w, double weight, int middle) {
+            int i = out.indexOf(u, w);
+            if (i < 0) {
+                out.add(u, w, weight, middle);
+                in.add(w, u, weight, middle);
+            } else if (weight < out.weight[u][i]) {
+                out.set(u, i, weight, middle);
+                in.set(w, in.indexOf(w, u), weight, middle);
+            }
+        }
+
+        /** Packs the upward and downward edges into CSR arrays. */
+        private ContractionHierarchy freeze() {
+            int[] upOffsets = new int[n + 1];
+            int[] downOffsets = new int[n + 1];
+            for (int v = 0; v < n; v += 1) {
+                upOffsets[v + 1] = upOffsets[v] + up.size[v];
+                downOffsets[v + 1] = downOffsets[v] + down.size[v];
+            }
+            int[] upTargets = new int[upOffsets[n]];
+            double[] upWeights = new double[upOffsets[n]];
+            int[] upMiddles = new int[upOffsets[n]];
+            int[] downSources = new int[downOffsets[n]];
+            double[] downWeights = new double[downOffsets[n]];
+            int[] downMiddles = new int[downOffsets[n]];
+            for (int v = 0; v < n; v += 1) {
+                for (int i = 0; i < up.size[v]; i += 1) {
+                    upTargets[upOffsets[v] + i] = up.vertex[v][i];
+                    upWeights[upOffsets[v] + i] = up.weight[v][i];
+                    upMiddles[upOffsets[v] + i] = up.middle[v][i];
+                }
+                for (int i = 0; i < down.size[v]; i += 1) {
+                    downSources[downOffsets[v] + i] = down.vertex[v][i];
+                    downWeights[downOffsets[v] + i] = down.weight[v][i];
+                    downMiddles[downOffsets[v] + i] = down.middle[v][i];
+                }
+            }
+            return new ContractionHierarchy(graph, rank,
+                    upOffsets, upTargets, upWeights, upMiddles,
+                    downOffsets, downSources, downWeights, downMiddles);
+        }
+    }
+
+    /** Growable per-vertex lists of (vertex, weight, middle) used while contracting. */
+    private static class Adjacency {
+        final int[][] vertex;
+        final double[][] weight;
+        final int[][] middle;
+        final int[] size;
+
+        Adjacency(int n) {
+            vertex = new int[n][];
+            weight = new double[n][];
+            middle = new int[n][];
+            size = new int[n];
+        }
+
+        int indexOf(int v, int w) {
+            for (int i = 0; i < size[v]; i += 1) {
+                if (vertex[v][i] == w) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void add(int v, int w, double edgeWeight, int edgeMiddle) {
+            if (vertex[v] == null) {
+                vertex[v] = new int[4];
+                weight[v] = new double[4];
+                middle[v] = new int[4];
+            } else if (size[v] == vertex[v].length) {
+                vertex[v] = Arrays.copyOf(vertex[v], size[v] * 2);
+                weight[v] = Arrays.copyOf(weight[v], size[v] * 2);
+                middle[v] = Arrays.copyOf(middle[v], size[v] * 2);
+            }
+            set(v, size[v], edgeWeight, edgeMiddle);
+            vertex[v][size[v]] = w;
+            size[v] += 1;
+        }
+
+        void set(int v, int i, double edgeWeight, int edgeMiddle) {
+            weight[v][i] = edgeWeight;
+            middle[v][i] = edgeMiddle;
+        }
+
+        /** Removes the I-th edge of V by moving the last edge into its place. */
+        void remove(int v, int i) {
+            size[v] -= 1;
+            vertex[v][i] = vertex[v][size[v]];
+            weight[v][i] = weight[v][size[v]];
+            middle[v][i] = middle[v][size[v]];
+        }
+
+        /** Removes all edges of V and releases their storage. */
+        void clear(int v) {
+            vertex[v] = null;
+            weight[v] = null;
+            middle[v] = null;
+            size[v] = 0;
+        }
+    }
+
+    /**
+     * Builds the contraction hierarchy for an OSM file offline and writes it to disk.
+     * Usage: <code>ContractionHierarchy [osm file] [output file]</code>, defaulting to
+     * {@link huskymaps.utils.Constants#OSM_DB_PATH} and {@link huskymaps.utils.Constants#CH_PATH}.
+     */
+    public static void main(String[] args) throws IOException {
+        String osmPath = args.length > 0 ? args[0] : OSM_DB_PATH;
+        String chPath = args.length > 1 ? args[1] : CH_PATH;
+        StreetMapGraph g = new StreetMapGraph(osmPath);
+        long start = System.nanoTime();
+        ContractionHierarchy ch = build(g);
+        System.out.printf("Contracted %d vertices in %.1f s (%d upward, %d downward edges).%n",
+                g.size(), (System.nanoTime() - start) / 1e9,
+                ch.upTargets.length, ch.downSources.length);
+        ch.write(chPath);
+    }
+}
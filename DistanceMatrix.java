@@ -0,0 +1,165 @@
+package huskymaps;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static huskymaps.utils.Constants.MATRIX_THREADS;
+
+/**
+ * Many-to-many shortest-path distances between sets of vertices of a {@link StreetMapGraph}.
+ *
+ * If the graph has a contraction hierarchy, the backward search space of every target is stored
+ * in buckets once, and each row costs a single upward search from its source; see
+ * {@link ContractionHierarchy#targetBuckets}. Otherwise each row is a one-to-many Dijkstra search
+ * from its source that stops as soon as every target is settled. The rows are computed in
+ * parallel on a shared pool and handed to the caller as each one finishes.
+ */
+public class DistanceMatrix {
+    /** Shared by all requests, so concurrent matrices cannot oversubscribe the machine. */
+    private static final ForkJoinPool POOL = new ForkJoinPool(MATRIX_THREADS);
+
+    /** Receives the rows of a matrix, possibly from several threads at once. */
+    public interface RowConsumer {
+        /**
+         * Called once per source as soon as its row is known.
+         * @param source The index of the source in the sources array.
+         * @param distances The distance to each target, or infinity if it is unreachable.
+         */
+        void accept(int source, double[] distances);
+    }
+
+    /** The per-thread state of the Dijkstra searches, reset in O(1) by bumping the epoch. */
+    private static class Search implements EdgeConsumer {
+        final double[] dist;
+        final int[] stamp;
+        /** The epoch in which each vertex was settled. */
+        final int[] settled;
+        final MinHeap fringe = new MinHeap();
+        int epoch;
+        int current;
+
+        Search(int n) {
+            dist = new double[n];
+            stamp = new int[n];
+            settled = new int[n];
+        }
+
+        void nextEpoch() {
+            epoch += 1;
+            if (epoch == Integer.MAX_VALUE) {
+                Arrays.fill(stamp, 0);
+                Arrays.fill(settled, 0);
+                epoch = 1;
+            }
+        }
+
+        /** Relaxes the edge from the vertex being expanded to TO. */
+        @Override
+        public void accept(int to, double weight) {
+            double distance = dist[current] + weight;
+            if (stamp[to] != epoch || distance < dist[to]) {
+                stamp[to] = epoch;
+                dist[to] = distance;
+                fringe.push(distance, to);
+            }
+        }
+    }
+
+    private static final ThreadLocal<Search> SEARCHES = new ThreadLocal<>();
+
+    private DistanceMatrix() {
+    }
+
+    /**
+     * Computes the distance from every source to every target and passes each row to ROWS.
+     * Returns once every row has been passed on.
+     * @param g The graph to search.
+     * @param sources The OSM ids of the sources.
+     * @param targets The OSM ids of the targets.
+     * @param rows Receives the row of each source, in no particular order.
+     */
+    public static void compute(StreetMapGraph g, long[] sources, long[] targets, RowConsumer rows) {
+        int[] sourceIndices = indicesOf(g, sources);
+        int[] targetIndices = indicesOf(g, targets);
+        ContractionHierarchy ch = g.contractionHierarchy();
+        try {
+            POOL.submit(() -> {
+                if (ch != null) {
+                    ContractionHierarchy.TargetBuckets buckets = ch.targetBuckets(targetIndices);
+                    IntStream.range(0, sourceIndices.length).parallel().forEach(i ->
+                            rows.accept(i, ch.distances(sourceIndices[i], buckets)));
+                } else {
+                    IntStream.range(0, sourceIndices.length).parallel().forEach(i ->
+                            rows.accept(i, dijkstra(g, sourceIndices[i], targetIndices)));
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while computing a distance matrix.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Unable to compute a distance matrix.", e.getCause());
+        }
+    }
+
+    /** Computes the full matrix, with one row per source. */
+    public static double[][] compute(StreetMapGraph g, long[] sources, long[] targets) {
+        double[][] matrix = new double[sources.length][];
+        compute(g, sources, targets, (i, row) -> matrix[i] = row);
+        return matrix;
+    }
+
+    private static int[] indicesOf(StreetMapGraph g, long[] ids) {
+        int[] indices = new int[ids.length];
+        for (int i = 0; i < ids.length; i += 1) {
+            indices[i] = g.indexOf(ids[i]);
+            if (indices[i] < 0) {
+                throw new IllegalArgumentException("No vertex with id " + ids[i] + ".");
+            }
+        }
+        return indices;
+    }
+
+    /** Returns the distances from SOURCE to each of TARGETS with a one-to-many Dijkstra search. */
+    private static double[] dijkstra(StreetMapGraph g, int source, int[] targets) {
+        Search search = SEARCHES.get();
+        if (search == null || search.dist.length != g.size()) {
+            search = new Search(g.size());
+            SEARCHES.set(search);
+        }
+        search.nextEpoch();
+        int epoch = search.epoch;
+        // Targets are marked with -epoch until they are settled, so duplicates count once
+        int remaining = 0;
+        for (int t : targets) {
+            if (search.settled[t] != -epoch) {
+                search.settled[t] = -epoch;
+                remaining += 1;
+            }
+        }
+        search.fringe.clear();
+        search.stamp[source] = epoch;
+        search.dist[source] = 0;
+        search.fringe.push(0, source);
+        while (remaining > 0 && !search.fringe.isEmpty()) {
+            double d = search.fringe.peekPriority();
+            int v = search.fringe.pop();
+            if (search.settled[v] == epoch || d > search.dist[v]) {
+                continue;
+            }
+            if (search.settled[v] == -epoch) {
+                remaining -= 1;
+            }
+            search.settled[v] = epoch;
+            search.current = v;
+            g.forEachNeighbor(v, search);
+        }
+        double[] row = new double[targets.length];
+        for (int j = 0; j < targets.length; j += 1) {
+            int t = targets[j];
+            row[j] = search.settled[t] == epoch ? search.dist[t] : Double.POSITIVE_INFINITY;
+        }
+        return row;
+    }
+}
@@ -0,0 +1,15 @@
+package huskymaps;
+
+/**
+ * Visitor for the outgoing edges of a vertex in a {@link CompactGraph}. Implemented by search
+ * algorithms so that expanding a vertex allocates neither an edge list nor boxed ids.
+ */
+@FunctionalInterface
+public interface EdgeConsumer {
+    /**
+     * Called once per outgoing edge.
+     * @param to The dense index of the vertex the edge points to.
+     * @param weight The weight of the edge.
+     */
+    void accept(int to, double weight);
+}
@@ -0,0 +1,46 @@
+package huskymaps;
+
+/**
+ * The point on a street closest to a query location, as found by
+ * {@link StreetMapGraph#closestEdge}. The street runs between the vertices FROM and TO, and the
+ * point lies FRACTION of the way from FROM to TO, so a route can start or end partway along it.
+ */
+public class EdgeSnap {
+    /** The ids of the vertices at either end of the street. */
+    public final long from;
+    public final long to;
+    /** How far along the street the point lies, from 0 at FROM to 1 at TO. */
+    public final double fraction;
+    /** The point itself, on the map projection and as latitude and longitude. */
+    public final double x;
+    public final double y;
+    public final double lat;
+    public final double lon;
+    /** The length of the edge from FROM to TO. */
+    public final double weight;
+    /** The length of the edge from TO back to FROM, or infinity if the street is one-way. */
+    public final double reverseWeight;
+
+    EdgeSnap(long from, long to, double fraction, double x, double y, double lat, double lon,
+             double weight, double reverseWeight) {
+        this.from = from;
+        this.to = to;
+        this.fraction = fraction;
+        this.x = x;
+        this.y = y;
+        this.lat = lat;
+        this.lon = lon;
+        this.weight = weight;
+        this.reverseWeight = reverseWeight;
+    }
+
+    /** Returns whether OTHER lies on the same street as this point. */
+    public boolean isSameStreet(EdgeSnap other) {
+        return (from == other.from && to == other.to) || (from == other.to && to == other.from);
+    }
+
+    @Override
+    public String toString() {
+        return "EdgeSnap{from=" + from + ", to=" + to + ", fraction=" + fraction + "}";
+    }
+}
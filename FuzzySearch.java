@@ -0,0 +1,257 @@
+package huskymaps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import static huskymaps.utils.Constants.FUZZY_SEARCH_BUDGET_NANOS;
+
+/**
+ * Typo-tolerant search over the location names of an {@link Autocomplete} index.
+ *
+ * The distinct words of the cleaned names are stored in a BK-tree: each child hangs off its
+ * parent by its Levenshtein distance to the parent, so by the triangle inequality a search for
+ * words within distance D of a query only descends into the children whose distance to a visited
+ * word w is within D of the query's distance to w. Each word keeps the names it occurs in, and a
+ * query matches the names in which every query word is close to some word of the name.
+ *
+ * Instances are immutable once built and are safe to share across threads.
+ */
+public class FuzzySearch {
+    private static final int NONE = -1;
+    /** How many tree nodes to visit between checks of the latency budget. */
+    private static final int BUDGET_CHECK_INTERVAL = 64;
+
+    private final Autocomplete names;
+    private final String[] words;
+    /** BK-tree children of each word, as a linked list with the distance to the parent. */
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final int[] parentDistance;
+    /** Names postings[postingStart[w]], ..., postings[postingStart[w + 1] - 1] contain word w. */
+    private final int[] postingStart;
+    private final int[] postings;
+
+    /** Builds the index of the words of the names in NAMES. */
+    static FuzzySearch build(Autocomplete names) {
+        Map<String, Integer> wordIds = new HashMap<>();
+        List<String> words = new ArrayList<>();
+        List<int[]> occurrences = new ArrayList<>();
+        for (int i = 0; i < names.size(); i += 1) {
+            // A name that repeats a word is listed once for it
+            Set<String> nameWords = new LinkedHashSet<>(Arrays.asList(
+                    Autocomplete.clean(names.name(i)).split(" ")));
+            for (String word : nameWords) {
+                if (word.isEmpty()) {
+                    continue;
+                }
+                Integer w = wordIds.get(word);
+                if (w == null) {
+                    w = words.size();
+                    wordIds.put(word, w);
+                    words.add(word);
+                }
+                occurrences.add(new int[]{w, i});
+            }
+        }
+        int[] postingStart = new int[words.size() + 1];
+        for (int[] occurrence : occurrences) {
+            postingStart[occurrence[0] + 1] += 1;
+        }
+        for (int w = 0; w < words.size(); w += 1) {
+            postingStart[w + 1] += postingStart[w];
+        }
+        int[] postings = new int[occurrences.size()];
+        int[] next = Arrays.copyOf(postingStart, words.size());
+        for (int[] occurrence : occurrences) {
+            postings[next[occurrence[0]]] = occurrence[1];
+            next[occurrence[0]] += 1;
+        }
+        return new FuzzySearch(names, words.toArray(new String[0]), postingStart, postings);
+    }
+
+    private FuzzySearch(Autocomplete names, String[] words, int[] postingStart, int[] postings) {
+        this.names = names;
+        this.words = words;
+        this.postingStart = postingStart;
+        this.postings = postings;
+        firstChild = new int[words.length];
+        nextSibling = new int[words.length];
+        parentDistance = new int[words.length];
+        Arrays.fill(firstChild, NONE);
+        Arrays.fill(nextSibling, NONE);
+        for (int w = 1; w < words.length; w += 1) {
+            insert(w);
+        }
+    }
+
+    /** Adds word W below the root, word 0. */
+    private void insert(int w) {
+        int x = 0;
+        while (true) {
+            int d = distance(words[w], words[x]);
+            int child = firstChild[x];
+            while (child != NONE && parentDistance[child] != d) {
+                child = nextSibling[child];
+            }
+            if (child == NONE) {
+                parentDistance[w] = d;
+                nextSibling[w] = firstChild[x];
+                firstChild[x] = w;
+                return;
+            }
+            x = child;
+        }
+    }
+
+    /** Returns the Levenshtein distance between A and B. */
+    public static int distance(String a, String b) {
+        return distance(a, b, new int[b.length() + 1], new int[b.length() + 1]);
+    }
+
+    /** Returns the Levenshtein distance between A and B, using two rows longer than B. */
+    private static int distance(String a, String b, int[] previous, int[] current) {
+        for (int j = 0; j <= b.length(); j += 1) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i += 1) {
+            current[0] = i;
+            char c = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j += 1) {
+                int substitute = previous[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitute, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    /** Returns the number of distinct words. */
+    public int wordCount() {
+        return words.length;
+    }
+
+    public String word(int w) {
+        return words[w];
+    }
+
+    /** Returns the largest edit distance tolerated for a query word of length LENGTH. */
+    public static int maxDistance(int length) {
+        if (length <= 3) {
+            return 0;
+        } else if (length <= 6) {
+            return 1;
+        }
+        return 2;
+    }
+
+    /**
+     * Returns the words within distance MAXDISTANCE of WORD, as pairs of word and distance,
+     * stopping early once BUDGETNANOS have passed since the System.nanoTime value START.
+     */
+    List<int[]> similarWords(String word, int maxDistance, long start, long budgetNanos) {
+        List<int[]> result = new ArrayList<>();
+        if (words.length == 0) {
+            return result;
+        }
+        int[] previous = new int[word.length() + 1];
+        int[] current = new int[word.length() + 1];
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        int visited = 0;
+        while (top > 0) {
+            visited += 1;
+            if (visited % BUDGET_CHECK_INTERVAL == 0 && System.nanoTime() - start > budgetNanos) {
+                break;
+            }
+            int x = stack[--top];
+            int d = distance(words[x], word, previous, current);
+            if (d <= maxDistance) {
+                result.add(new int[]{x, d});
+            }
+            for (int child = firstChild[x]; child != NONE; child = nextSibling[child]) {
+                if (Math.abs(parentDistance[child] - d) <= maxDistance) {
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, 2 * stack.length);
+                    }
+                    stack[top++] = child;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the distinct words within distance MAXDISTANCE of WORD. */
+    public List<String> similarWords(String word, int maxDistance) {
+        List<String> result = new ArrayList<>();
+        for (int[] match : similarWords(Autocomplete.clean(word), maxDistance, System.nanoTime(), Long.MAX_VALUE)) {
+            result.add(words[match[0]]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the K best location names for TERM, tolerating maxDistance typos in each word.
+     * A name matches if every word of the cleaned TERM is that close to one of its words. Names
+     * with fewer typos in total come first, then the more important, then alphabetically. The
+     * search gives up after FUZZY_SEARCH_BUDGET_NANOS and ranks the matches found by then.
+     */
+    public List<String> topK(String term, int k) {
+        long start = System.nanoTime();
+        Map<Integer, Integer> candidates = null;
+        for (String token : Autocomplete.clean(term).split(" ")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            Map<Integer, Integer> matches = new HashMap<>();
+            for (int[] match : similarWords(token, maxDistance(token.length()), start,
+                    FUZZY_SEARCH_BUDGET_NANOS)) {
+                for (int p = postingStart[match[0]]; p < postingStart[match[0] + 1]; p += 1) {
+                    matches.merge(postings[p], match[1], Math::min);
+                }
+            }
+            if (candidates == null) {
+                candidates = matches;
+            } else {
+                candidates.keySet().retainAll(matches.keySet());
+                candidates.replaceAll((name, typos) -> typos + matches.get(name));
+            }
+            if (candidates.isEmpty()) {
+                break;
+            }
+        }
+        if (candidates == null || k <= 0) {
+            return new ArrayList<>();
+        }
+        Map<Integer, Integer> typos = candidates;
+        // A min-heap of the best K names so far, so its head is the one to drop
+        PriorityQueue<Integer> best = new PriorityQueue<>(Math.min(k, typos.size()) + 1, (a, b) -> {
+            int cmp = Integer.compare(typos.get(b), typos.get(a));
+            if (cmp == 0) {
+                cmp = Integer.compare(names.importance(a), names.importance(b));
+            }
+            return cmp != 0 ? cmp : names.name(b).compareTo(names.name(a));
+        });
+        for (int name : typos.keySet()) {
+            best.offer(name);
+            if (best.size() > k) {
+                best.poll();
+            }
+        }
+        List<String> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(names.name(best.poll()));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+}
@@ -0,0 +1,197 @@
+package huskymaps;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary snapshot of a parsed street graph: the {@link CompactGraph} arrays followed
+ * by the arrays of its {@link SpatialIndex}.
+ *
+ * Parsing the gzipped OSM XML dominates server startup, so the first startup writes a snapshot
+ * next to the OSM file and later ones map it into memory with a {@link FileChannel} and copy the
+ * arrays out in bulk. The header records the size and modification time of every source file
+ * along with a CRC-32 of the payload; a snapshot whose sources changed, whose format version
+ * differs, or which fails the checksum is ignored and the graph is parsed from XML again.
+ */
+class GraphSnapshot {
+    private static final int MAGIC = 0x48554753;
+    private static final int VERSION = 2;
+    private static final String SUFFIX = ".snapshot";
+
+    final CompactGraph graph;
+    final SpatialIndex spatialIndex;
+
+    GraphSnapshot(CompactGraph graph, SpatialIndex spatialIndex) {
+        this.graph = graph;
+        this.spatialIndex = spatialIndex;
+    }
+
+    /** Returns the path of the snapshot kept for the OSM file OSMPATH. */
+    static String pathFor(String osmPath) {
+        return osmPath + SUFFIX;
+    }
+
+    /**
+     * Writes this snapshot to FILENAME, stamped with the current size and modification time of
+     * SOURCES. The file is written under a temporary name and then moved into place, so readers
+     * never observe a partially written snapshot.
+     */
+    void write(String filename, String... sources) throws IOException {
+        int headerSize = 4 * Integer.BYTES + sources.length * 2 * Long.BYTES + 2 * Long.BYTES;
+        long payloadSize = (long) graph.serializedSize() + spatialIndex.serializedSize();
+        Path target = Paths.get(filename);
+        Path temp = Paths.get(filename + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, headerSize + payloadSize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.position(headerSize);
+            graph.writeTo(buffer);
+            spatialIndex.writeTo(buffer);
+            if (buffer.position() != headerSize + payloadSize) {
+                throw new IllegalStateException("Wrote " + (buffer.position() - headerSize)
+                        + " payload bytes to a snapshot sized for " + payloadSize + ".");
+            }
+
+            buffer.position(0);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(headerSize);
+            buffer.putInt(sources.length);
+            for (String source : sources) {
+                File file = new File(source);
+                buffer.putLong(file.length());
+                buffer.putLong(file.lastModified());
+            }
+            buffer.putLong(payloadSize);
+            buffer.putLong(checksum(buffer, headerSize, payloadSize));
+            buffer.force();
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the snapshot in FILENAME.
+     * @return The snapshot, or null if it is missing, corrupt, in an older format, or older than
+     *         any of SOURCES.
+     */
+    static GraphSnapshot read(String filename, String... sources) {
+        File file = new File(filename);
+        if (!file.isFile()) {
+            System.out.println("Missing graph snapshot: " + filename);
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < 4 * Integer.BYTES
+                    || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                System.out.println("Stale graph snapshot: " + filename);
+                return null;
+            }
+            int headerSize = buffer.getInt();
+            if (buffer.getInt() != sources.length) {
+                System.out.println("Stale graph snapshot: " + filename);
+                return null;
+            }
+            for (String source : sources) {
+                File sourceFile = new File(source);
+                if (buffer.getLong() != sourceFile.length()
+                        || buffer.getLong() != sourceFile.lastModified()) {
+                    System.out.println("Stale graph snapshot: " + filename);
+                    return null;
+                }
+            }
+            long payloadSize = buffer.getLong();
+            long expected = buffer.getLong();
+            if (headerSize + payloadSize != channel.size()
+                    || checksum(buffer, headerSize, payloadSize) != expected) {
+                System.out.println("Corrupt graph snapshot: " + filename);
+                return null;
+            }
+            buffer.position(headerSize);
+            CompactGraph graph = CompactGraph.readFrom(buffer);
+            return new GraphSnapshot(graph, SpatialIndex.readFrom(buffer));
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /** Returns the CRC-32 of the SIZE bytes of BUFFER starting at OFFSET. */
+    private static long checksum(ByteBuffer buffer, int offset, long size) {
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(offset);
+        payload.limit(Math.toIntExact(offset + size));
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return crc.getValue();
+    }
+
+    /*
+     * Bulk array transfers. Each array is written as its length followed by its elements; the
+     * typed views copy the whole run at once rather than element by element.
+     */
+
+    static void putInts(ByteBuffer buffer, int[] values) {
+        buffer.putInt(values.length);
+        buffer.asIntBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Integer.BYTES);
+    }
+
+    static void putLongs(ByteBuffer buffer, long[] values) {
+        buffer.putInt(values.length);
+        buffer.asLongBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Long.BYTES);
+    }
+
+    static void putFloats(ByteBuffer buffer, float[] values) {
+        buffer.putInt(values.length);
+        buffer.asFloatBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Float.BYTES);
+    }
+
+    static void putDoubles(ByteBuffer buffer, double[] values) {
+        buffer.putInt(values.length);
+        buffer.asDoubleBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Double.BYTES);
+    }
+
+    static int[] getInts(ByteBuffer buffer) {
+        int[] values = new int[buffer.getInt()];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Integer.BYTES);
+        return values;
+    }
+
+    static long[] getLongs(ByteBuffer buffer) {
+        long[] values = new long[buffer.getInt()];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Long.BYTES);
+        return values;
+    }
+
+    static float[] getFloats(ByteBuffer buffer) {
+        float[] values = new float[buffer.getInt()];
+        buffer.asFloatBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Float.BYTES);
+        return values;
+    }
+
+    static double[] getDoubles(ByteBuffer buffer) {
+        double[] values = new double[buffer.getInt()];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Double.BYTES);
+        return values;
+    }
+}
@@ -0,0 +1,18 @@
+package huskymaps;
+
+/** The estimates of remaining distance that a {@link StreetMapGraph} can give to A* search. */
+public enum Heuristic {
+    /** The great-circle distance to the goal. Needs no preprocessing. */
+    GREAT_CIRCLE,
+    /**
+     * A flat-earth distance to the goal that scales longitude by the smallest latitude cosine
+     * on the map. Weaker than GREAT_CIRCLE by a fraction of a percent over a city, but costs a
+     * single square root.
+     */
+    EQUIRECTANGULAR,
+    /**
+     * The larger of the equirectangular distance and the ALT landmark bound. Requires landmarks,
+     * see {@link StreetMapGraph#loadLandmarks}.
+     */
+    LANDMARKS
+}
@@ -0,0 +1,123 @@
+package huskymaps;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of the vertices of a graph with n vertices, keyed by a double priority,
+ * that supports decreasing the priority of a vertex already in the heap. Each vertex is in the
+ * heap at most once, so searches never pop stale copies, and the heap never grows past n.
+ *
+ * The position of every vertex in the heap is kept in an array indexed by vertex, so a heap
+ * is meant to be allocated once per thread and reused; {@link #clear} costs time proportional
+ * to the vertices left in the heap rather than to n.
+ */
+public class IndexedMinHeap {
+    private static final int ABSENT = -1;
+
+    private final double[] priorities;
+    private final int[] vertices;
+    /** The index in the heap arrays of each vertex, or ABSENT. */
+    private final int[] positions;
+    private int size;
+
+    public IndexedMinHeap(int n) {
+        priorities = new double[n];
+        vertices = new int[n];
+        positions = new int[n];
+        Arrays.fill(positions, ABSENT);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Returns true if V is in the heap. */
+    public boolean contains(int v) {
+        return positions[v] != ABSENT;
+    }
+
+    /** Removes every vertex from the heap. */
+    public void clear() {
+        for (int i = 0; i < size; i += 1) {
+            positions[vertices[i]] = ABSENT;
+        }
+        size = 0;
+    }
+
+    /** Returns the smallest priority in the heap. Assumes the heap is not empty. */
+    public double peekPriority() {
+        return priorities[0];
+    }
+
+    /**
+     * Adds V with the given PRIORITY, or lowers its priority to PRIORITY if it is already in the
+     * heap with a larger one.
+     */
+    public void pushOrDecrease(double priority, int v) {
+        int i = positions[v];
+        if (i == ABSENT) {
+            i = size;
+            size += 1;
+        } else if (priorities[i] <= priority) {
+            return;
+        }
+        siftUp(i, priority, v);
+    }
+
+    /** Removes and returns the vertex with the smallest priority. Assumes the heap is not empty. */
+    public int pop() {
+        int min = vertices[0];
+        positions[min] = ABSENT;
+        size -= 1;
+        if (size > 0) {
+            siftDown(0, priorities[size], vertices[size]);
+        }
+        return min;
+    }
+
+    /** Places V with PRIORITY at index I or above it, moving larger parents down. */
+    private void siftUp(int i, double priority, int v) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (priorities[parent] <= priority) {
+                break;
+            }
+            move(parent, i);
+            i = parent;
+        }
+        set(i, priority, v);
+    }
+
+    /** Places V with PRIORITY at index I or below it, moving smaller children up. */
+    private void siftDown(int i, double priority, int v) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && priorities[child + 1] < priorities[child]) {
+                child += 1;
+            }
+            if (priority <= priorities[child]) {
+                break;
+            }
+            move(child, i);
+            i = child;
+        }
+        set(i, priority, v);
+    }
+
+    private void move(int from, int to) {
+        set(to, priorities[from], vertices[from]);
+    }
+
+    private void set(int i, double priority, int v) {
+        priorities[i] = priority;
+        vertices[i] = v;
+        positions[v] = i;
+    }
+}
@@ -0,0 +1,289 @@
+package huskymaps;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static huskymaps.utils.Constants.LANDMARKS_PATH;
+import static huskymaps.utils.Constants.NUM_LANDMARKS;
+import static huskymaps.utils.Constants.OSM_DB_PATH;
+import static huskymaps.utils.Spatial.bearing;
+import static huskymaps.utils.Spatial.greatCircleDistance;
+
+/**
+ * Landmark distances for the ALT (A*, landmarks, triangle inequality) heuristic.
+ *
+ * For a landmark L, the triangle inequality gives |d(L, goal) - d(L, v)| <= d(v, goal), so the
+ * largest such difference over all landmarks is an admissible and consistent estimate of the
+ * remaining road distance. Unlike the great-circle distance it accounts for detours around
+ * water such as Lake Washington and Puget Sound, so A* settles far fewer vertices. Street
+ * edges are added in both directions, so the distance from a landmark equals the distance to it.
+ *
+ * Landmarks are chosen on the edge of the map, one per angular sector around its center, which
+ * puts them "behind" most origins and destinations. Distances are stored vertex-major in a single
+ * float array, so a heuristic evaluation reads one contiguous run of K values per vertex.
+ */
+public class Landmarks {
+    private static final int MAGIC = 0x48554c4d;
+    private static final int VERSION = 1;
+
+    private final CompactGraph graph;
+    private final int[] landmarks;
+    /** distances[v * k + i] is the road distance between landmark i and vertex v. */
+    private final float[] distances;
+    private final int k;
+    /** Subtracted from every bound to absorb float rounding, keeping it admissible. */
+    private final double slack;
+
+    private Landmarks(CompactGraph graph, int[] landmarks, float[] distances) {
+        this.graph = graph;
+        this.landmarks = landmarks;
+        this.distances = distances;
+        this.k = landmarks.length;
+        float max = 0;
+        for (float distance : distances) {
+            if (distance != Float.POSITIVE_INFINITY) {
+                max = Math.max(max, distance);
+            }
+        }
+        this.slack = 2 * Math.ulp(max);
+    }
+
+    /**
+     * Picks K landmarks in G and computes their distances to every vertex, running one
+     * Dijkstra search per landmark in parallel.
+     */
+    public static Landmarks build(StreetMapGraph g, int k) {
+        CompactGraph graph = g.compactGraph();
+        int[] landmarks = select(graph, k);
+        int n = graph.size();
+        float[] distances = new float[n * landmarks.length];
+        IntStream.range(0, landmarks.length).parallel().forEach(i -> {
+            double[] distTo = new Dijkstra(graph).run(landmarks[i]);
+            for (int v = 0; v < n; v += 1) {
+                distances[v * landmarks.length + i] = (float) distTo[v];
+            }
+        });
+        return new Landmarks(graph, landmarks, distances);
+    }
+
+    /**
+     * Returns a lower bound on the road distance between the vertices with dense indices V and
+     * GOAL.
+     */
+    public double lowerBound(int v, int goal) {
+        int vBase = v * k;
+        int goalBase = goal * k;
+        double best = 0;
+        for (int i = 0; i < k; i += 1) {
+            float fromV = distances[vBase + i];
+            float fromGoal = distances[goalBase + i];
+            if (fromV != Float.POSITIVE_INFINITY && fromGoal != Float.POSITIVE_INFINITY) {
+                best = Math.max(best, Math.abs(fromGoal - fromV));
+            }
+        }
+        return Math.max(0, best - slack);
+    }
+
+    /** Returns the number of landmarks. */
+    public int size() {
+        return k;
+    }
+
+    /** Returns the OSM id of landmark I. */
+    public long landmark(int i) {
+        return graph.id(landmarks[i]);
+    }
+
+    /**
+     * Picks one landmark per angular sector around the center of the largest connected
+     * component: the vertex in the sector farthest from the center.
+     */
+    private static int[] select(CompactGraph graph, int k) {
+        boolean[] candidate = largestComponent(graph);
+        double lat = 0;
+        double lon = 0;
+        int count = 0;
+        for (int v = 0; v < graph.size(); v += 1) {
+            if (candidate[v]) {
+                lat += graph.lat(v);
+                lon += graph.lon(v);
+                count += 1;
+            }
+        }
+        lat /= count;
+        lon /= count;
+        int[] best = new int[k];
+        double[] bestDistance = new double[k];
+        Arrays.fill(best, -1);
+        for (int v = 0; v < graph.size(); v += 1) {
+            if (!candidate[v]) {
+                continue;
+            }
+            double angle = bearing(lon, graph.lon(v), lat, graph.lat(v)) + 180;
+            int sector = Math.min(k - 1, (int) (angle / 360 * k));
+            double distance = greatCircleDistance(lon, graph.lon(v), lat, graph.lat(v));
+            if (best[sector] < 0 || distance > bestDistance[sector]) {
+                best[sector] = v;
+                bestDistance[sector] = distance;
+            }
+        }
+        return Arrays.stream(best).filter(v -> v >= 0).toArray();
+    }
+
+    /** Marks the vertices of the largest connected component that has at least one edge. */
+    private static boolean[] largestComponent(CompactGraph graph) {
+        int n = graph.size();
+        int[] component = new int[n];
+        int[] stack = new int[n];
+        int numComponents = 0;
+        int largest = 0;
+        int largestSize = 0;
+        for (int s = 0; s < n; s += 1) {
+            if (component[s] != 0 || graph.degree(s) == 0) {
+                continue;
+            }
+            numComponents += 1;
+            int size = 0;
+            int top = 0;
+            stack[top++] = s;
+            component[s] = numComponents;
+            while (top > 0) {
+                int v = stack[--top];
+                size += 1;
+                for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e += 1) {
+                    int w = graph.target(e);
+                    if (component[w] == 0) {
+                        component[w] = numComponents;
+                        stack[top++] = w;
+                    }
+                }
+            }
+            if (size > largestSize) {
+                largestSize = size;
+                largest = numComponents;
+            }
+        }
+        boolean[] result = new boolean[n];
+        for (int v = 0; v < n; v += 1) {
+            result[v] = largest != 0 && component[v] == largest;
+        }
+        return result;
+    }
+
+    /** Single-source Dijkstra over the whole graph. */
+    private static class Dijkstra implements EdgeConsumer {
+        private final CompactGraph graph;
+        private final double[] distTo;
+        private final MinHeap fringe = new MinHeap();
+        private int current;
+
+        Dijkstra(CompactGraph graph) {
+            this.graph = graph;
+            this.distTo = new double[graph.size()];
+        }
+
+        double[] run(int source) {
+            Arrays.fill(distTo, Double.POSITIVE_INFINITY);
+            distTo[source] = 0;
+            fringe.push(0, source);
+            while (!fringe.isEmpty()) {
+                double d = fringe.peekPriority();
+                int v = fringe.pop();
+                if (d > distTo[v]) {
+                    continue;
+                }
+                current = v;
+                graph.forEachNeighbor(v, this);
+            }
+            return distTo;
+        }
+
+        @Override
+        public void accept(int to, double weight) {
+            double distance = distTo[current] + weight;
+            if (distance < distTo[to]) {
+                distTo[to] = distance;
+                fringe.push(distance, to);
+            }
+        }
+    }
+
+    /**
+     * Writes the landmark distances to FILENAME, along with a fingerprint of the graph so that
+     * {@link #read} can reject them after the map data changes.
+     */
+    public void write(String filename) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(filename), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(graph.fingerprint());
+            out.writeInt(k);
+            for (int landmark : landmarks) {
+                out.writeInt(landmark);
+            }
+            out.writeInt(distances.length);
+            for (float distance : distances) {
+                out.writeFloat(distance);
+            }
+        }
+    }
+
+    /**
+     * Reads landmark distances written by {@link #write} for the graph G.
+     * @return The landmarks, or null if the file is missing or was built for different map data.
+     */
+    public static Landmarks read(StreetMapGraph g, String filename) {
+        CompactGraph graph = g.compactGraph();
+        if (!new File(filename).isFile()) {
+            System.out.println("Missing landmarks: " + filename);
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(filename), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readLong() != graph.fingerprint()) {
+                System.out.println("Stale landmarks: " + filename);
+                return null;
+            }
+            int[] landmarks = new int[in.readInt()];
+            for (int i = 0; i < landmarks.length; i += 1) {
+                landmarks[i] = in.readInt();
+            }
+            float[] distances = new float[in.readInt()];
+            for (int i = 0; i < distances.length; i += 1) {
+                distances[i] = in.readFloat();
+            }
+            return new Landmarks(graph, landmarks, distances);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Computes the landmark distances for an OSM file offline and writes them to disk.
+     * Usage: <code>Landmarks [osm file] [output file] [number of landmarks]</code>, defaulting to
+     * {@link huskymaps.utils.Constants#OSM_DB_PATH}, {@link huskymaps.utils.Constants#LANDMARKS_PATH}
+     * and {@link huskymaps.utils.Constants#NUM_LANDMARKS}.
+     */
+    public static void main(String[] args) throws IOException {
+        String osmPath = args.length > 0 ? args[0] : OSM_DB_PATH;
+        String landmarksPath = args.length > 1 ? args[1] : LANDMARKS_PATH;
+        int k = args.length > 2 ? Integer.parseInt(args[2]) : NUM_LANDMARKS;
+        StreetMapGraph g = new StreetMapGraph(osmPath);
+        long start = System.nanoTime();
+        Landmarks landmarks = build(g, k);
+        System.out.printf("Computed distances for %d landmarks in %.1f s.%n",
+                landmarks.size(), (System.nanoTime() - start) / 1e9);
+        landmarks.write(landmarksPath);
+    }
+}
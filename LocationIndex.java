@@ -0,0 +1,98 @@
+package huskymaps;
+
+import java.util.Arrays;
+
+/**
+ * An inverted index from cleaned location name to the vertices that carry it, used for exact
+ * full-name searches.
+ *
+ * The cleaned names are the keys of an open-addressing hash table, and the vertices of each key
+ * are packed together into one int array, so a lookup hashes the name once and copies out a
+ * contiguous range no matter how many vertices the map has. Names are cleaned once per
+ * distinct name in the graph's string table rather than once per vertex.
+ *
+ * Instances are immutable once built and are safe to share across threads.
+ */
+class LocationIndex {
+    /** The cleaned name of each slot, or null for an empty slot. */
+    private final String[] slotKeys;
+    /** Vertices vertices[starts[slot]], ..., vertices[starts[slot + 1] - 1] carry slotKeys[slot]. */
+    private final int[] starts;
+    private final int[] vertices;
+
+    /**
+     * Indexes the vertices by name.
+     * @param nodeNames The name id of each vertex, or CompactGraph.NO_NAME.
+     * @param names The string table the name ids refer to.
+     */
+    LocationIndex(int[] nodeNames, String[] names) {
+        // Clean each name used by a vertex once, and count its vertices
+        String[] cleaned = new String[names.length];
+        int[] counts = new int[names.length];
+        int numKeys = 0;
+        for (int nameId : nodeNames) {
+            if (nameId == CompactGraph.NO_NAME) {
+                continue;
+            }
+            if (cleaned[nameId] == null) {
+                cleaned[nameId] = Autocomplete.clean(names[nameId]);
+                if (!cleaned[nameId].isEmpty()) {
+                    numKeys += 1;
+                }
+            }
+            counts[nameId] += 1;
+        }
+        int capacity = Integer.highestOneBit(Math.max(16, 2 * numKeys) - 1) << 1;
+        slotKeys = new String[capacity];
+        // Names that clean to the same key share its slot
+        int[] slotOfName = new int[names.length];
+        int[] slotCounts = new int[capacity + 1];
+        for (int nameId = 0; nameId < names.length; nameId += 1) {
+            if (cleaned[nameId] == null || cleaned[nameId].isEmpty()) {
+                continue;
+            }
+            int slot = find(cleaned[nameId]);
+            slotKeys[slot] = cleaned[nameId];
+            slotOfName[nameId] = slot;
+            slotCounts[slot + 1] += counts[nameId];
+        }
+        starts = new int[capacity + 1];
+        for (int slot = 0; slot < capacity; slot += 1) {
+            starts[slot + 1] = starts[slot] + slotCounts[slot + 1];
+        }
+        vertices = new int[starts[capacity]];
+        int[] next = Arrays.copyOf(starts, capacity);
+        for (int v = 0; v < nodeNames.length; v += 1) {
+            int nameId = nodeNames[v];
+            if (nameId != CompactGraph.NO_NAME && !cleaned[nameId].isEmpty()) {
+                int slot = slotOfName[nameId];
+                vertices[next[slot]] = v;
+                next[slot] += 1;
+            }
+        }
+    }
+
+    /** Returns the slot holding KEY, or the empty slot where it belongs. */
+    private int find(String key) {
+        int mask = slotKeys.length - 1;
+        int h = key.hashCode();
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (slotKeys[slot] != null && !slotKeys[slot].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /** Returns the vertices whose cleaned name equals the cleaned NAME, in index order. */
+    int[] get(String name) {
+        String key = Autocomplete.clean(name);
+        if (key.isEmpty()) {
+            return new int[0];
+        }
+        int slot = find(key);
+        if (slotKeys[slot] == null) {
+            return new int[0];
+        }
+        return Arrays.copyOfRange(vertices, starts[slot], starts[slot + 1]);
+    }
+}
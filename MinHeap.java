@@ -0,0 +1,87 @@
+package huskymaps;
+
+import java.util.Arrays;
+
+/**
+ * A growable binary min-heap of primitive (priority, vertex) pairs used as the fringe of the
+ * graph searches. A vertex may be pushed more than once; callers skip the stale copies when
+ * they are popped, which is cheaper than locating and decreasing the old entry.
+ */
+class MinHeap {
+    private double[] priorities;
+    private int[] vertices;
+    private int size;
+
+    MinHeap() {
+        this(1024);
+    }
+
+    MinHeap(int capacity) {
+        priorities = new double[capacity];
+        vertices = new int[capacity];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /** Returns the smallest priority in the heap. Assumes the heap is not empty. */
+    double peekPriority() {
+        return priorities[0];
+    }
+
+    void push(double priority, int v) {
+        if (size == vertices.length) {
+            priorities = Arrays.copyOf(priorities, size * 2);
+            vertices = Arrays.copyOf(vertices, size * 2);
+        }
+        int i = size;
+        size += 1;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (priorities[parent] <= priority) {
+                break;
+            }
+            priorities[i] = priorities[parent];
+            vertices[i] = vertices[parent];
+            i = parent;
+        }
+        priorities[i] = priority;
+        vertices[i] = v;
+    }
+
+    /** Removes and returns the vertex with the smallest priority. Assumes the heap is not empty. */
+    int pop() {
+        int min = vertices[0];
+        size -= 1;
+        double priority = priorities[size];
+        int v = vertices[size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && priorities[child + 1] < priorities[child]) {
+                child += 1;
+            }
+            if (priority <= priorities[child]) {
+                break;
+            }
+            priorities[i] = priorities[child];
+            vertices[i] = vertices[child];
+            i = child;
+        }
+        priorities[i] = priority;
+        vertices[i] = v;
+        return min;
+    }
+}
@@ -0,0 +1,117 @@
+package huskymaps;
+
+import java.util.Arrays;
+
+/**
+ * The nodes and navigable ways parsed from one contiguous piece of an OSM file, in file order.
+ * Batches are filled independently by worker threads and then merged into the graph in order by
+ * {@link OSMIngestion}, so the result does not depend on which worker parsed which batch.
+ */
+class OSMBatch {
+    private long[] nodeIds = new long[256];
+    private double[] lats = new double[256];
+    private double[] lons = new double[256];
+    private String[] nodeNames = new String[256];
+    private int[] importance = new int[256];
+    private int numNodes;
+
+    /** The node refs of every way, concatenated; way i ends at wayEnds[i]. */
+    private long[] refs = new long[256];
+    private int numRefs;
+    private int[] wayEnds = new int[16];
+    private String[] wayNames = new String[16];
+    private int numWays;
+    /** Number of way elements read, including ways that are not navigable. */
+    private int waysRead;
+
+    void addNode(long id, double lat, double lon, String name, int importance) {
+        if (numNodes == nodeIds.length) {
+            int capacity = numNodes * 2;
+            nodeIds = Arrays.copyOf(nodeIds, capacity);
+            lats = Arrays.copyOf(lats, capacity);
+            lons = Arrays.copyOf(lons, capacity);
+            nodeNames = Arrays.copyOf(nodeNames, capacity);
+            this.importance = Arrays.copyOf(this.importance, capacity);
+        }
+        nodeIds[numNodes] = id;
+        lats[numNodes] = lat;
+        lons[numNodes] = lon;
+        nodeNames[numNodes] = name;
+        this.importance[numNodes] = importance;
+        numNodes += 1;
+    }
+
+    /** Adds a navigable way through the first COUNT node ids of WAYREFS. */
+    void addWay(long[] wayRefs, int count, String name) {
+        if (numRefs + count > refs.length) {
+            refs = Arrays.copyOf(refs, Math.max(refs.length * 2, numRefs + count));
+        }
+        System.arraycopy(wayRefs, 0, refs, numRefs, count);
+        numRefs += count;
+        if (numWays == wayEnds.length) {
+            wayEnds = Arrays.copyOf(wayEnds, numWays * 2);
+            wayNames = Arrays.copyOf(wayNames, numWays * 2);
+        }
+        wayEnds[numWays] = numRefs;
+        wayNames[numWays] = name;
+        numWays += 1;
+    }
+
+    /** Records that a way element was read, whether or not it was navigable. */
+    void countWay() {
+        waysRead += 1;
+    }
+
+    int numNodes() {
+        return numNodes;
+    }
+
+    int waysRead() {
+        return waysRead;
+    }
+
+    /** Adds the nodes of this batch to BUILDER and then releases them. */
+    void addNodesTo(CompactGraph.Builder builder) {
+        for (int i = 0; i < numNodes; i += 1) {
+            builder.addNode(nodeIds[i], lats[i], lons[i], nodeNames[i], importance[i]);
+        }
+        nodeIds = null;
+        lats = null;
+        lons = null;
+        nodeNames = null;
+        importance = null;
+    }
+
+    /**
+     * Looks up the dense index of every way node in BUILDER, or -1 for nodes missing from the
+     * file. Only reads from BUILDER, so batches can be resolved concurrently once every node
+     * has been added.
+     */
+    int[] resolve(CompactGraph.Builder builder) {
+        int[] indices = new int[numRefs];
+        for (int i = 0; i < numRefs; i += 1) {
+            indices[i] = builder.indexOf(refs[i]);
+        }
+        return indices;
+    }
+
+    /**
+     * Adds an edge in each direction between consecutive nodes of every way, given the INDICES
+     * returned by {@link #resolve}. Segments touching a missing node are skipped. Weights are
+     * left for {@link CompactGraph.Builder#build} to compute.
+     */
+    void addEdgesTo(CompactGraph.Builder builder, int[] indices) {
+        int start = 0;
+        for (int w = 0; w < numWays; w += 1) {
+            for (int i = start + 1; i < wayEnds[w]; i += 1) {
+                int from = indices[i - 1];
+                int to = indices[i];
+                if (from >= 0 && to >= 0) {
+                    builder.addEdge(from, to, wayNames[w]);
+                    builder.addEdge(to, from, wayNames[w]);
+                }
+            }
+            start = wayEnds[w];
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package huskymaps;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static huskymaps.utils.Constants.HEROKU_DEPLOYMENT;
+import static huskymaps.utils.Constants.PLACES_PATH;
+
+/**
+ * Loads OSM XML or PBF files into a {@link CompactGraph.Builder} with a multi-stage pipeline:
+ * <ol>
+ *     <li>A reader thread cuts the file into batches: {@link OSMXMLReader} decompresses it and
+ *     splits the text at element boundaries, and {@link OSMPBFReader} reads one blob per
+ *     batch.</li>
+ *     <li>A pool of workers parses the batches into {@link OSMBatch}es of nodes and navigable
+ *     ways.</li>
+ *     <li>The calling thread adds the nodes of each batch in file order, so vertex indices are
+ *     the same as with a sequential parse.</li>
+ *     <li>Once every node is known, way node ids are resolved to vertex indices in parallel, the
+ *     edges are added in file order, and {@link CompactGraph.Builder#build} computes all edge
+ *     weights in one parallel pass.</li>
+ * </ol>
+ * At most two batches per worker are in flight, which bounds the memory held by the pipeline.
+ *
+ * See OSM documentation on
+ * <a href="http://wiki.openstreetmap.org/wiki/Key:highway">the highway tag</a>,
+ * <a href="http://wiki.openstreetmap.org/wiki/Way">the way XML element</a> and
+ * <a href="http://wiki.openstreetmap.org/wiki/Node">the node XML element</a>.
+ */
+public class OSMIngestion {
+    /** Only allow for non-service roads; this prevents going on pedestrian streets. */
+    static final Set<String> ALLOWED_HIGHWAY_TYPES = Set.of(
+            "motorway", "trunk", "primary", "secondary", "tertiary", "unclassified", "residential",
+            "living_street", "motorway_link", "trunk_link", "primary_link", "secondary_link",
+            "tertiary_link"
+    );
+
+    /** File extension of OSM PBF files. */
+    public static final String PBF_EXTENSION = ".pbf";
+
+    /** Number of parsing workers; the reader thread and the calling thread come on top. */
+    public static final int DEFAULT_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+    /** Produces the parsing tasks for consecutive batches of a file. */
+    interface BatchSource {
+        /** Returns the task that parses the next batch, or null at the end of the file. */
+        Callable<OSMBatch> next() throws IOException;
+    }
+
+    /** The graph read from an OSM file, with the number of elements read. */
+    public static class Result {
+        public final CompactGraph graph;
+        public final int nodes;
+        public final int ways;
+
+        Result(CompactGraph graph, int nodes, int ways) {
+            this.graph = graph;
+            this.nodes = nodes;
+            this.ways = ways;
+        }
+    }
+
+    /** Reads the OSM file FILENAME into a new graph, parsing with THREADS workers. */
+    public static Result read(String filename, int threads) {
+        CompactGraph.Builder builder = new CompactGraph.Builder();
+        int[] counts = load(builder, filename, threads);
+        return new Result(builder.build(), counts[0], counts[1]);
+    }
+
+    /**
+     * Adds the nodes and navigable ways of the OSM file FILENAME to BUILDER. Files ending in
+     * {@value #PBF_EXTENSION} are read as OSM PBF and all others as gzipped OSM XML. Assumes the
+     * file is correctly formatted; on an I/O or parse error, the error is printed and BUILDER
+     * keeps what was read before it.
+     * @return The number of nodes and the number of ways read.
+     */
+    static int[] load(CompactGraph.Builder builder, String filename, int threads) {
+        Map<String, Integer> places = loadPlaces();
+        try (InputStream in = open(filename)) {
+            BatchSource source = filename.endsWith(PBF_EXTENSION)
+                    ? new OSMPBFReader(in, places)
+                    : new OSMXMLReader(in, places);
+            return load(builder, source, threads);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new int[2];
+        }
+    }
+
+    /** Runs the pipeline over the batches of SOURCE. */
+    static int[] load(CompactGraph.Builder builder, BatchSource source, int threads) {
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "osm-parser");
+            thread.setDaemon(true);
+            return thread;
+        });
+        BlockingQueue<Future<OSMBatch>> pending = new ArrayBlockingQueue<>(2 * threads);
+        Thread reader = new Thread(() -> {
+            try {
+                Future<OSMBatch> end = CompletableFuture.completedFuture(null);
+                try {
+                    for (Callable<OSMBatch> task = source.next(); task != null; task = source.next()) {
+                        pending.put(workers.submit(task));
+                    }
+                } catch (IOException | RuntimeException e) {
+                    end = CompletableFuture.failedFuture(e);
+                }
+                pending.put(end);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "osm-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        int nodes = 0;
+        int ways = 0;
+        try {
+            List<OSMBatch> batches = new ArrayList<>();
+            for (OSMBatch batch = pending.take().get(); batch != null; batch = pending.take().get()) {
+                batch.addNodesTo(builder);
+                nodes += batch.numNodes();
+                ways += batch.waysRead();
+                batches.add(batch);
+            }
+            List<Callable<int[]>> resolutions = new ArrayList<>(batches.size());
+            for (OSMBatch batch : batches) {
+                resolutions.add(() -> batch.resolve(builder));
+            }
+            List<Future<int[]>> indices = workers.invokeAll(resolutions);
+            for (int i = 0; i < batches.size(); i += 1) {
+                batches.get(i).addEdgesTo(builder, indices.get(i).get());
+            }
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            reader.interrupt();
+            workers.shutdownNow();
+        }
+        return new int[]{nodes, ways};
+    }
+
+    /** Opens the file FILENAME, from the classpath when deployed. */
+    static InputStream open(String filename) throws IOException {
+        if (!HEROKU_DEPLOYMENT) {
+            return new FileInputStream(new File(filename));
+        }
+        InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(filename);
+        if (in == null) {
+            throw new IOException("Missing resource: " + filename);
+        }
+        return in;
+    }
+
+    /** Reads the importance of well-known places, or returns no places if the file is missing. */
+    static Map<String, Integer> loadPlaces() {
+        try (Reader fileReader = new InputStreamReader(open(PLACES_PATH))) {
+            return new Gson().fromJson(fileReader, new TypeToken<HashMap<String, Integer>>() {}.getType());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Map.of();
+        }
+    }
+
+    /**
+     * Return the cleaned, normalized version of the string.
+     * @param s Input string.
+     * @return Cleaned string.
+     */
+    static String normalize(String s) {
+        return s.strip()
+                .replace('“', '"')
+                .replace('”', '"')
+                .replace('‘', '\'')
+                .replace('’', '\'');
+    }
+}
@@ -0,0 +1,521 @@
+package huskymaps;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Splits an OSM PBF file into its blobs and decodes them.
+ *
+ * A PBF file is a sequence of length-prefixed BlobHeader and Blob messages, each blob holding
+ * one zlib-compressed block of up to 8000 entities with its own string table. The reader thread
+ * only reads the raw blobs; inflating and decoding happen in the workers, one batch per blob.
+ * The protobuf messages are decoded by hand with {@link Message}, which walks the wire format
+ * in place, so no generated classes or protobuf runtime are needed.
+ *
+ * Nodes may be plain or dense (delta-coded ids, coordinates and interleaved key/value string
+ * ids); ways carry delta-coded node refs. Relations are ignored. Coordinates are computed as
+ * an exact integer number of nanodegrees divided by 1e9, which rounds the same way as parsing
+ * the decimal text of an XML extract.
+ *
+ * See the <a href="https://wiki.openstreetmap.org/wiki/PBF_Format">PBF format</a> documentation.
+ */
+class OSMPBFReader implements OSMIngestion.BatchSource {
+    /** Largest BlobHeader and Blob the format allows. */
+    private static final int MAX_HEADER_SIZE = 64 * 1024;
+    private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+
+    private static final byte[] NAME = "name".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HIGHWAY = "highway".getBytes(StandardCharsets.US_ASCII);
+
+    private final DataInputStream in;
+    private final Map<String, Integer> places;
+
+    OSMPBFReader(InputStream in, Map<String, Integer> places) {
+        this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        this.places = places;
+    }
+
+    @Override
+    public Callable<OSMBatch> next() throws IOException {
+        int headerSize;
+        try {
+            headerSize = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (headerSize < 0 || headerSize > MAX_HEADER_SIZE) {
+            throw new IOException("Invalid PBF blob header size: " + headerSize);
+        }
+        byte[] header = new byte[headerSize];
+        in.readFully(header);
+        String type = null;
+        int blobSize = 0;
+        Message blobHeader = new Message(header, 0, header.length);
+        while (blobHeader.hasNext()) {
+            int field = blobHeader.nextField();
+            if (field == 1) {
+                type = blobHeader.string();
+            } else if (field == 3) {
+                blobSize = (int) blobHeader.varint();
+            } else {
+                blobHeader.skip();
+            }
+        }
+        if (blobSize < 0 || blobSize > MAX_BLOB_SIZE) {
+            throw new IOException("Invalid PBF blob size: " + blobSize);
+        }
+        byte[] blob = new byte[blobSize];
+        in.readFully(blob);
+        if ("OSMHeader".equals(type)) {
+            return () -> checkHeader(inflate(blob));
+        } else if ("OSMData".equals(type)) {
+            return () -> new Block(inflate(blob), places).decode();
+        }
+        /* Unknown blob types are skipped, as the format requires. */
+        return OSMBatch::new;
+    }
+
+    /** Returns the uncompressed contents of a Blob message. */
+    private static byte[] inflate(byte[] blob) throws IOException, DataFormatException {
+        Message message = new Message(blob, 0, blob.length);
+        byte[] raw = null;
+        int rawSize = -1;
+        int zlibStart = -1;
+        int zlibEnd = -1;
+        while (message.hasNext()) {
+            int field = message.nextField();
+            if (field == 1) {
+                int end = message.lengthDelimited();
+                raw = Arrays.copyOfRange(blob, message.position(), end);
+                message.seek(end);
+            } else if (field == 2) {
+                rawSize = (int) message.varint();
+            } else if (field == 3) {
+                zlibEnd = message.lengthDelimited();
+                zlibStart = message.position();
+                message.seek(zlibEnd);
+            } else if (field >= 4 && field <= 7) {
+                throw new IOException("Unsupported PBF compression (blob field " + field + ")");
+            } else {
+                message.skip();
+            }
+        }
+        if (raw != null) {
+            return raw;
+        }
+        if (zlibStart < 0 || rawSize < 0) {
+            throw new IOException("PBF blob has no data");
+        }
+        if (rawSize > MAX_BLOB_SIZE) {
+            throw new IOException("Invalid PBF raw blob size: " + rawSize);
+        }
+        byte[] data = new byte[rawSize];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(blob, zlibStart, zlibEnd - zlibStart);
+            int n = 0;
+            while (n < rawSize && !inflater.finished()) {
+                int read = inflater.inflate(data, n, rawSize - n);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += read;
+            }
+            if (n != rawSize) {
+                throw new IOException("Truncated PBF blob");
+            }
+        } finally {
+            inflater.end();
+        }
+        return data;
+    }
+
+    /** Rejects files that need features this reader does not implement. */
+    private static OSMBatch checkHeader(byte[] headerBlock) throws IOException {
+        Message message = new Message(headerBlock, 0, headerBlock.length);
+        while (message.hasNext()) {
+            if (message.nextField() == 4) {
+                String feature = message.string();
+                if (!feature.equals("OsmSchema-V0.6") && !feature.equals("DenseNodes")) {
+                    throw new IOException("Unsupported PBF feature: " + feature);
+                }
+            } else {
+                message.skip();
+            }
+        }
+        return new OSMBatch();
+    }
+
+    /** Decodes one PrimitiveBlock into a batch. */
+    private static class Block {
+        private final byte[] data;
+        private final Map<String, Integer> places;
+        private final OSMBatch batch = new OSMBatch();
+
+        /* The string table, as offsets into data. */
+        private int[] stringStarts = new int[256];
+        private int[] stringEnds = new int[256];
+        private int numStrings;
+        private int nameString = -1;
+        private int highwayString = -1;
+
+        private long granularity = 100;
+        private long latOffset;
+        private long lonOffset;
+
+        private long[] wayRefs = new long[64];
+
+        Block(byte[] data, Map<String, Integer> places) {
+            this.data = data;
+            this.places = places;
+        }
+
+        OSMBatch decode() throws IOException {
+            /* The string table and coordinate scaling may follow the groups, so read them first. */
+            Message block = new Message(data, 0, data.length);
+            while (block.hasNext()) {
+                int field = block.nextField();
+                if (field == 1) {
+                    int end = block.lengthDelimited();
+                    readStringTable(new Message(data, block.position(), end));
+                    block.seek(end);
+                } else if (field == 17) {
+                    granularity = block.varint();
+                } else if (field == 19) {
+                    latOffset = block.varint();
+                } else if (field == 20) {
+                    lonOffset = block.varint();
+                } else {
+                    block.skip();
+                }
+            }
+            block = new Message(data, 0, data.length);
+            while (block.hasNext()) {
+                if (block.nextField() == 2) {
+                    int end = block.lengthDelimited();
+                    readGroup(new Message(data, block.position(), end));
+                    block.seek(end);
+                } else {
+                    block.skip();
+                }
+            }
+            return batch;
+        }
+
+        private void readStringTable(Message table) throws IOException {
+            while (table.hasNext()) {
+                if (table.nextField() == 1) {
+                    int end = table.lengthDelimited();
+                    if (numStrings == stringStarts.length) {
+                        stringStarts = Arrays.copyOf(stringStarts, numStrings * 2);
+                        stringEnds = Arrays.copyOf(stringEnds, numStrings * 2);
+                    }
+                    stringStarts[numStrings] = table.position();
+                    stringEnds[numStrings] = end;
+                    if (stringEquals(numStrings, NAME)) {
+                        nameString = numStrings;
+                    } else if (stringEquals(numStrings, HIGHWAY)) {
+                        highwayString = numStrings;
+                    }
+                    numStrings += 1;
+                    table.seek(end);
+                } else {
+                    table.skip();
+                }
+            }
+        }
+
+        private void readGroup(Message group) throws IOException {
+            while (group.hasNext()) {
+                int field = group.nextField();
+                if (field >= 1 && field <= 3) {
+                    int end = group.lengthDelimited();
+                    Message element = new Message(data, group.position(), end);
+                    if (field == 1) {
+                        readNode(element);
+                    } else if (field == 2) {
+                        readDenseNodes(element);
+                    } else {
+                        readWay(element);
+                    }
+                    group.seek(end);
+                } else {
+                    group.skip();
+                }
+            }
+        }
+
+        private void readNode(Message node) throws IOException {
+            long id = 0;
+            long lat = 0;
+            long lon = 0;
+            int keysStart = -1;
+            int keysEnd = -1;
+            int valsStart = -1;
+            int valsEnd = -1;
+            while (node.hasNext()) {
+                int field = node.nextField();
+                if (field == 1) {
+                    id = node.sint64();
+                } else if (field == 2) {
+                    keysEnd = node.lengthDelimited();
+                    keysStart = node.position();
+                    node.seek(keysEnd);
+                } else if (field == 3) {
+                    valsEnd = node.lengthDelimited();
+                    valsStart = node.position();
+                    node.seek(valsEnd);
+                } else if (field == 8) {
+                    lat = node.sint64();
+                } else if (field == 9) {
+                    lon = node.sint64();
+                } else {
+                    node.skip();
+                }
+            }
+            String name = null;
+            if (keysStart >= 0 && valsStart >= 0) {
+                Message keys = new Message(data, keysStart, keysEnd);
+                Message vals = new Message(data, valsStart, valsEnd);
+                while (keys.hasNext() && vals.hasNext()) {
+                    int key = (int) keys.varint();
+                    int val = (int) vals.varint();
+                    if (key == nameString) {
+                        name = OSMIngestion.normalize(string(val));
+                    }
+                }
+            }
+            addNode(id, lat, lon, name);
+        }
+
+        private void readDenseNodes(Message dense) throws IOException {
+            Message ids = null;
+            Message lats = null;
+            Message lons = null;
+            Message keysVals = null;
+            while (dense.hasNext()) {
+                int field = dense.nextField();
+                if (field == 1 || field == 8 || field == 9 || field == 10) {
+                    int end = dense.lengthDelimited();
+                    Message packed = new Message(data, dense.position(), end);
+                    if (field == 1) {
+                        ids = packed;
+                    } else if (field == 8) {
+                        lats = packed;
+                    } else if (field == 9) {
+                        lons = packed;
+                    } else {
+                        keysVals = packed;
+                    }
+                    dense.seek(end);
+                } else {
+                    dense.skip();
+                }
+            }
+            if (ids == null || lats == null || lons == null) {
+                return;
+            }
+            long id = 0;
+            long lat = 0;
+            long lon = 0;
+            while (ids.hasNext()) {
+                id += ids.sint64();
+                lat += lats.sint64();
+                lon += lons.sint64();
+                String name = null;
+                if (keysVals != null) {
+                    for (int key = (int) keysVals.varint(); key != 0; key = (int) keysVals.varint()) {
+                        int val = (int) keysVals.varint();
+                        if (key == nameString) {
+                            name = OSMIngestion.normalize(string(val));
+                        }
+                    }
+                }
+                addNode(id, lat, lon, name);
+            }
+        }
+
+        private void addNode(long id, long lat, long lon, String name) {
+            int importance = name == null ? 0 : places.getOrDefault(name, 0);
+            batch.addNode(id, (latOffset + granularity * lat) / 1e9,
+                    (lonOffset + granularity * lon) / 1e9, name, importance);
+        }
+
+        private void readWay(Message way) throws IOException {
+            batch.countWay();
+            Message keys = null;
+            Message vals = null;
+            Message refs = null;
+            while (way.hasNext()) {
+                int field = way.nextField();
+                if (field == 2 || field == 3 || field == 8) {
+                    int end = way.lengthDelimited();
+                    Message packed = new Message(data, way.position(), end);
+                    if (field == 2) {
+                        keys = packed;
+                    } else if (field == 3) {
+                        vals = packed;
+                    } else {
+                        refs = packed;
+                    }
+                    way.seek(end);
+                } else {
+                    way.skip();
+                }
+            }
+            boolean validWay = false;
+            String wayName = "";
+            while (keys != null && vals != null && keys.hasNext() && vals.hasNext()) {
+                int key = (int) keys.varint();
+                int val = (int) vals.varint();
+                if (key == highwayString) {
+                    validWay = OSMIngestion.ALLOWED_HIGHWAY_TYPES.contains(string(val));
+                } else if (key == nameString) {
+                    wayName = string(val);
+                }
+            }
+            if (!validWay || refs == null) {
+                return;
+            }
+            int count = 0;
+            long ref = 0;
+            while (refs.hasNext()) {
+                ref += refs.sint64();
+                if (count == wayRefs.length) {
+                    wayRefs = Arrays.copyOf(wayRefs, count * 2);
+                }
+                wayRefs[count] = ref;
+                count += 1;
+            }
+            if (count > 0) {
+                batch.addWay(wayRefs, count, wayName);
+            }
+        }
+
+        private boolean stringEquals(int s, byte[] expected) {
+            if (stringEnds[s] - stringStarts[s] != expected.length) {
+                return false;
+            }
+            for (int i = 0; i < expected.length; i += 1) {
+                if (data[stringStarts[s] + i] != expected[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String string(int s) throws IOException {
+            if (s < 0 || s >= numStrings) {
+                throw new IOException("PBF string index " + s + " out of range");
+            }
+            return new String(data, stringStarts[s], stringEnds[s] - stringStarts[s], StandardCharsets.UTF_8);
+        }
+    }
+
+    /** A cursor over the fields of one protobuf message in [position, limit) of a byte array. */
+    private static class Message {
+        private final byte[] data;
+        private final int limit;
+        private int position;
+        private int wireType;
+
+        Message(byte[] data, int position, int limit) {
+            this.data = data;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        boolean hasNext() {
+            return position < limit;
+        }
+
+        int position() {
+            return position;
+        }
+
+        void seek(int position) {
+            this.position = position;
+        }
+
+        /** Reads a field key and returns the field number. */
+        int nextField() throws IOException {
+            long key = varint();
+            wireType = (int) (key & 7);
+            return (int) (key >>> 3);
+        }
+
+        long varint() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= limit) {
+                    throw new IOException("Truncated PBF varint");
+                }
+                byte b = data[position];
+                position += 1;
+                result |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return result;
+                }
+            }
+            throw new IOException("PBF varint longer than 10 bytes");
+        }
+
+        /** Reads a zigzag-encoded signed varint. */
+        long sint64() throws IOException {
+            long n = varint();
+            return (n >>> 1) ^ -(n & 1);
+        }
+
+        /** Reads the length of a length-delimited field and returns the position it ends at. */
+        int lengthDelimited() throws IOException {
+            long length = varint();
+            if (length < 0 || length > limit - position) {
+                throw new IOException("Truncated PBF length-delimited field");
+            }
+            return position + (int) length;
+        }
+
+        String string() throws IOException {
+            int end = lengthDelimited();
+            String s = new String(data, position, end - position, StandardCharsets.UTF_8);
+            position = end;
+            return s;
+        }
+
+        /** Skips the value of the field whose key was just read. */
+        void skip() throws IOException {
+            switch (wireType) {
+                case 0:
+                    varint();
+                    break;
+                case 1:
+                    skipFixed(8);
+                    break;
+                case 2:
+                    position = lengthDelimited();
+                    break;
+                case 5:
+                    skipFixed(4);
+                    break;
+                default:
+                    throw new IOException("Unsupported PBF wire type " + wireType);
+            }
+        }
+
+        private void skipFixed(int size) throws IOException {
+            if (size > limit - position) {
+                throw new IOException("Truncated PBF fixed-width field");
+            }
+            position += size;
+        }
+    }
+}
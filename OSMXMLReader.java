@@ -0,0 +1,480 @@
+package huskymaps;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Splits a gzipped OSM XML file into batches and parses them.
+ *
+ * The reader thread only decompresses and looks for batch boundaries: it cuts the text just
+ * before a top-level <code>&lt;node</code>, <code>&lt;way</code> or <code>&lt;relation</code>
+ * tag, which cannot appear anywhere else because XML escapes '&lt;' inside attribute values and
+ * OSM files keep no markup in comments or CDATA sections. Every batch therefore holds whole
+ * elements and is parsed on its own by a worker with a small tokenizer over the raw UTF-8 bytes.
+ * Element and attribute names are compared as bytes and numbers are parsed in place, so only the
+ * names and highway types that are kept become Strings.
+ *
+ * The tokenizer handles what OSM files contain: elements, attributes in single or double quotes,
+ * the predefined and numeric character references, comments, CDATA sections, declarations and
+ * processing instructions. It applies the same rules as the SAX parser it replaced: node names
+ * are normalized and ranked by the places file, and ways become edges in both directions when
+ * their highway type is allowed.
+ */
+class OSMXMLReader implements OSMIngestion.BatchSource {
+    /** Batch size in bytes of uncompressed XML. */
+    private static final int BATCH_SIZE = 1 << 20;
+
+    private static final byte[] NODE = ascii("node");
+    private static final byte[] WAY = ascii("way");
+    private static final byte[] RELATION = ascii("relation");
+    private static final byte[] ND = ascii("nd");
+    private static final byte[] TAG = ascii("tag");
+    private static final byte[] ID = ascii("id");
+    private static final byte[] LAT = ascii("lat");
+    private static final byte[] LON = ascii("lon");
+    private static final byte[] REF = ascii("ref");
+    private static final byte[] K = ascii("k");
+    private static final byte[] V = ascii("v");
+    private static final byte[] NAME = ascii("name");
+    private static final byte[] HIGHWAY = ascii("highway");
+    private static final byte[] TAG_END = ascii(">");
+    private static final byte[] COMMENT_END = ascii("-->");
+    private static final byte[] CDATA_START = ascii("<![CDATA[");
+    private static final byte[] CDATA_END = ascii("]]>");
+    private static final byte[] INSTRUCTION_END = ascii("?>");
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final InputStream in;
+    private final Map<String, Integer> places;
+    private byte[] buffer = new byte[BATCH_SIZE];
+    private int length;
+    private boolean eof;
+
+    OSMXMLReader(InputStream in, Map<String, Integer> places) throws IOException {
+        this.in = new GZIPInputStream(in, 1 << 16);
+        this.places = places;
+    }
+
+    @Override
+    public Callable<OSMBatch> next() throws IOException {
+        while (true) {
+            while (!eof && length < buffer.length) {
+                int n = in.read(buffer, length, buffer.length - length);
+                if (n < 0) {
+                    eof = true;
+                } else {
+                    length += n;
+                }
+            }
+            if (eof) {
+                if (length == 0) {
+                    return null;
+                }
+                byte[] batch = buffer;
+                int batchLength = length;
+                length = 0;
+                return () -> new Parser(batch, batchLength, places).parse();
+            }
+            int cut = lastBoundary(buffer, length);
+            if (cut > 0) {
+                byte[] batch = buffer;
+                buffer = new byte[BATCH_SIZE];
+                length -= cut;
+                System.arraycopy(batch, cut, buffer, 0, length);
+                return () -> new Parser(batch, cut, places).parse();
+            }
+            /* A single element fills the whole buffer; read more of it. */
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+    }
+
+    /** Returns the position of the last top-level start tag in the first LENGTH bytes, or -1. */
+    private static int lastBoundary(byte[] bytes, int length) {
+        for (int i = length - 1; i > 0; i -= 1) {
+            if (bytes[i] == '<' && (startsTag(bytes, i + 1, length, NODE)
+                    || startsTag(bytes, i + 1, length, WAY) || startsTag(bytes, i + 1, length, RELATION))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns whether the tag name NAME, followed by a delimiter, starts at position START. */
+    private static boolean startsTag(byte[] bytes, int start, int length, byte[] name) {
+        int end = start + name.length;
+        return end < length && matches(bytes, start, end, name) && isNameEnd(bytes[end]);
+    }
+
+    private static boolean isNameEnd(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '/' || b == '>';
+    }
+
+    private static boolean matches(byte[] bytes, int start, int end, byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i += 1) {
+            if (bytes[start + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** Parses one batch. Attribute positions are kept as offsets into the batch. */
+    private static class Parser {
+        private static final int MAX_ATTRIBUTES = 16;
+
+        private final byte[] bytes;
+        private final int length;
+        private final Map<String, Integer> places;
+        private final OSMBatch batch = new OSMBatch();
+
+        /* The attributes of the current tag: [nameStart, nameEnd) and [valueStart, valueEnd). */
+        private int[] nameStarts = new int[MAX_ATTRIBUTES];
+        private int[] nameEnds = new int[MAX_ATTRIBUTES];
+        private int[] valueStarts = new int[MAX_ATTRIBUTES];
+        private int[] valueEnds = new int[MAX_ATTRIBUTES];
+        private int numAttributes;
+
+        /* The element being read: a node, a way, or neither. */
+        private boolean inNode;
+        private boolean inWay;
+        private long nodeId;
+        private double nodeLat;
+        private double nodeLon;
+        private String nodeName;
+        private long[] wayRefs = new long[64];
+        private int numWayRefs;
+        private boolean validWay;
+        private String wayName;
+
+        Parser(byte[] bytes, int length, Map<String, Integer> places) {
+            this.bytes = bytes;
+            this.length = length;
+            this.places = places;
+        }
+
+        OSMBatch parse() {
+            int i = 0;
+            while (i < length) {
+                if (bytes[i] != '<') {
+                    i += 1;
+                } else if (i + 1 < length && bytes[i + 1] == '?') {
+                    i = skipPast(i + 2, INSTRUCTION_END);
+                } else if (i + 3 < length && bytes[i + 1] == '!' && bytes[i + 2] == '-' && bytes[i + 3] == '-') {
+                    i = skipPast(i + 4, COMMENT_END);
+                } else if (i + CDATA_START.length <= length
+                        && matches(bytes, i, i + CDATA_START.length, CDATA_START)) {
+                    i = skipPast(i + CDATA_START.length, CDATA_END);
+                } else if (i + 1 < length && bytes[i + 1] == '!') {
+                    i = skipPast(i + 2, TAG_END);
+                } else if (i + 1 < length && bytes[i + 1] == '/') {
+                    int nameEnd = nameEnd(i + 2);
+                    endElement(i + 2, nameEnd);
+                    i = skipPast(nameEnd, TAG_END);
+                } else {
+                    i = startElement(i + 1);
+                }
+            }
+            return batch;
+        }
+
+        /** Reads the start tag whose name begins at START and returns the position after it. */
+        private int startElement(int start) {
+            int nameEnd = nameEnd(start);
+            numAttributes = 0;
+            int i = nameEnd;
+            boolean selfClosing = false;
+            while (i < length) {
+                byte b = bytes[i];
+                if (b == '>') {
+                    i += 1;
+                    break;
+                } else if (b == '/') {
+                    selfClosing = true;
+                    i += 1;
+                } else if (isWhitespace(b)) {
+                    i += 1;
+                } else {
+                    i = attribute(i);
+                }
+            }
+
+            if (matches(bytes, start, nameEnd, NODE)) {
+                clearStates();
+                inNode = true;
+                nodeId = parseLong(attribute(ID));
+                nodeLat = parseDouble(attribute(LAT));
+                nodeLon = parseDouble(attribute(LON));
+                if (selfClosing) {
+                    endNode();
+                }
+            } else if (matches(bytes, start, nameEnd, WAY)) {
+                clearStates();
+                inWay = true;
+                batch.countWay();
+                if (selfClosing) {
+                    clearStates();
+                }
+            } else if (inWay && matches(bytes, start, nameEnd, ND)) {
+                int ref = attribute(REF);
+                if (ref >= 0) {
+                    if (numWayRefs == wayRefs.length) {
+                        wayRefs = Arrays.copyOf(wayRefs, numWayRefs * 2);
+                    }
+                    wayRefs[numWayRefs] = parseLong(ref);
+                    numWayRefs += 1;
+                }
+            } else if ((inWay || inNode) && matches(bytes, start, nameEnd, TAG)) {
+                int k = attribute(K);
+                int v = attribute(V);
+                if (k < 0 || v < 0) {
+                    return i;
+                }
+                if (inWay && matchesValue(k, HIGHWAY)) {
+                    validWay = OSMIngestion.ALLOWED_HIGHWAY_TYPES.contains(value(v));
+                } else if (inWay && matchesValue(k, NAME)) {
+                    wayName = value(v);
+                } else if (inNode && matchesValue(k, NAME)) {
+                    nodeName = OSMIngestion.normalize(value(v));
+                }
+            }
+            return i;
+        }
+
+        private void endElement(int start, int end) {
+            if (inWay && matches(bytes, start, end, WAY)) {
+                if (validWay && numWayRefs > 0) {
+                    batch.addWay(wayRefs, numWayRefs, wayName);
+                }
+                clearStates();
+            } else if (inNode && matches(bytes, start, end, NODE)) {
+                endNode();
+            }
+        }
+
+        private void endNode() {
+            int importance = nodeName == null ? 0 : places.getOrDefault(nodeName, 0);
+            batch.addNode(nodeId, nodeLat, nodeLon, nodeName, importance);
+            clearStates();
+        }
+
+        private void clearStates() {
+            inNode = false;
+            inWay = false;
+            nodeName = null;
+            numWayRefs = 0;
+            validWay = false;
+            wayName = "";
+        }
+
+        /** Reads the attribute starting at START and returns the position after it. */
+        private int attribute(int start) {
+            int i = start;
+            while (i < length && bytes[i] != '=' && !isWhitespace(bytes[i])) {
+                i += 1;
+            }
+            int nameEnd = i;
+            while (i < length && bytes[i] != '\'' && bytes[i] != '"') {
+                i += 1;
+            }
+            if (i == length) {
+                return length;
+            }
+            byte quote = bytes[i];
+            int valueStart = i + 1;
+            int valueEnd = valueStart;
+            while (valueEnd < length && bytes[valueEnd] != quote) {
+                valueEnd += 1;
+            }
+            if (numAttributes == nameStarts.length) {
+                nameStarts = Arrays.copyOf(nameStarts, numAttributes * 2);
+                nameEnds = Arrays.copyOf(nameEnds, numAttributes * 2);
+                valueStarts = Arrays.copyOf(valueStarts, numAttributes * 2);
+                valueEnds = Arrays.copyOf(valueEnds, numAttributes * 2);
+            }
+            nameStarts[numAttributes] = start;
+            nameEnds[numAttributes] = nameEnd;
+            valueStarts[numAttributes] = valueStart;
+            valueEnds[numAttributes] = valueEnd;
+            numAttributes += 1;
+            return valueEnd + 1;
+        }
+
+        /** Returns the index of the attribute of the current tag called NAME, or -1. */
+        private int attribute(byte[] name) {
+            for (int a = 0; a < numAttributes; a += 1) {
+                if (matches(bytes, nameStarts[a], nameEnds[a], name)) {
+                    return a;
+                }
+            }
+            return -1;
+        }
+
+        private boolean matchesValue(int attribute, byte[] expected) {
+            return matches(bytes, valueStarts[attribute], valueEnds[attribute], expected);
+        }
+
+        /** Decodes the value of ATTRIBUTE the way an XML parser reports it. */
+        private String value(int attribute) {
+            int start = valueStarts[attribute];
+            int end = valueEnds[attribute];
+            String raw = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+            for (int i = start; i < end; i += 1) {
+                byte b = bytes[i];
+                if (b == '&' || b == '\t' || b == '\n' || b == '\r') {
+                    return unescape(raw);
+                }
+            }
+            return raw;
+        }
+
+        private long parseLong(int attribute) {
+            if (attribute < 0) {
+                return 0;
+            }
+            int i = valueStarts[attribute];
+            int end = valueEnds[attribute];
+            boolean negative = i < end && bytes[i] == '-';
+            if (negative) {
+                i += 1;
+            }
+            if (i == end || end - i > 18) {
+                return Long.parseLong(raw(attribute).strip());
+            }
+            long result = 0;
+            for (; i < end; i += 1) {
+                int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return Long.parseLong(raw(attribute).strip());
+                }
+                result = result * 10 + digit;
+            }
+            return negative ? -result : result;
+        }
+
+        /**
+         * Parses a decimal such as a coordinate. When the digits fit in 15 decimal places and
+         * there are at most 22 after the point, both the digits and the power of ten are exact
+         * doubles, so one division gives the same correctly rounded result as
+         * {@link Double#parseDouble}, which handles every other form.
+         */
+        private double parseDouble(int attribute) {
+            if (attribute < 0) {
+                return 0;
+            }
+            int i = valueStarts[attribute];
+            int end = valueEnds[attribute];
+            boolean negative = i < end && bytes[i] == '-';
+            if (negative) {
+                i += 1;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int fractionDigits = -1;
+            for (; i < end; i += 1) {
+                byte b = bytes[i];
+                if (b == '.' && fractionDigits < 0) {
+                    fractionDigits = 0;
+                } else if (b >= '0' && b <= '9' && digits < 15) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (mantissa != 0) {
+                        digits += 1;
+                    }
+                    if (fractionDigits >= 0) {
+                        fractionDigits += 1;
+                    }
+                } else {
+                    return Double.parseDouble(raw(attribute));
+                }
+            }
+            if (fractionDigits > 22 || i == valueStarts[attribute] + (negative ? 1 : 0)) {
+                return Double.parseDouble(raw(attribute));
+            }
+            double result = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+            return negative ? -result : result;
+        }
+
+        private String raw(int attribute) {
+            return new String(bytes, valueStarts[attribute],
+                    valueEnds[attribute] - valueStarts[attribute], StandardCharsets.UTF_8);
+        }
+
+        private int nameEnd(int start) {
+            int i = start;
+            while (i < length && !isNameEnd(bytes[i])) {
+                i += 1;
+            }
+            return i;
+        }
+
+        /** Returns the position just after the next occurrence of T at or after START. */
+        private int skipPast(int start, byte[] t) {
+            for (int i = start; i + t.length <= length; i += 1) {
+                if (matches(bytes, i, i + t.length, t)) {
+                    return i + t.length;
+                }
+            }
+            return length;
+        }
+
+        private static boolean isWhitespace(byte b) {
+            return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+        }
+
+        /**
+         * Applies XML attribute-value normalization to S: line breaks and tabs become spaces,
+         * then character and entity references are replaced.
+         */
+        private static String unescape(String s) {
+            s = s.replace("\r\n", " ").replace('\r', ' ').replace('\n', ' ').replace('\t', ' ');
+            StringBuilder result = new StringBuilder(s.length());
+            int i = 0;
+            while (i < s.length()) {
+                char c = s.charAt(i);
+                int semicolon = c == '&' ? s.indexOf(';', i) : -1;
+                if (semicolon < 0) {
+                    result.append(c);
+                    i += 1;
+                    continue;
+                }
+                String entity = s.substring(i + 1, semicolon);
+                if (entity.equals("amp")) {
+                    result.append('&');
+                } else if (entity.equals("lt")) {
+                    result.append('<');
+                } else if (entity.equals("gt")) {
+                    result.append('>');
+                } else if (entity.equals("quot")) {
+                    result.append('"');
+                } else if (entity.equals("apos")) {
+                    result.append('\'');
+                } else if (entity.startsWith("#x") || entity.startsWith("#X")) {
+                    result.appendCodePoint(Integer.parseInt(entity.substring(2), 16));
+                } else if (entity.startsWith("#")) {
+                    result.appendCodePoint(Integer.parseInt(entity.substring(1)));
+                } else {
+                    result.append(c);
+                    i += 1;
+                    continue;
+                }
+                i = semicolon + 1;
+            }
+            return result.toString();
+        }
+    }
+}
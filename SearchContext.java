@@ -0,0 +1,72 @@
+package huskymaps;
+
+import java.util.Arrays;
+
+/**
+ * The state of one shortest-path search over the dense vertex indices of a graph: the distance
+ * to and parent of every reached vertex, and an {@link IndexedMinHeap} fringe.
+ *
+ * Contexts are kept in the graph's {@link SearchPool}s and reused by every search that takes
+ * one. A vertex counts as reached only if its stamp equals the current epoch, so starting a new
+ * search bumps the epoch instead of clearing the arrays, and a search allocates nothing beyond
+ * the path it returns. A reached vertex that is no longer in the fringe is settled.
+ */
+class SearchContext {
+    private final double[] dist;
+    private final int[] parent;
+    private final int[] stamp;
+    final IndexedMinHeap fringe;
+    private int epoch;
+
+    SearchContext(int n) {
+        dist = new double[n];
+        parent = new int[n];
+        stamp = new int[n];
+        fringe = new IndexedMinHeap(n);
+    }
+
+    /**
+     * Takes a context from POOL, started afresh. Give it back with {@link SearchPool#release}
+     * once the search is done.
+     */
+    static SearchContext acquire(SearchPool<SearchContext> pool) {
+        SearchContext context = pool.acquire();
+        context.reset();
+        return context;
+    }
+
+    /** Forgets every vertex reached by the previous search. */
+    private void reset() {
+        epoch += 1;
+        if (epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+        fringe.clear();
+    }
+
+    boolean isReached(int v) {
+        return stamp[v] == epoch;
+    }
+
+    boolean isSettled(int v) {
+        return stamp[v] == epoch && !fringe.contains(v);
+    }
+
+    /** Returns the best known distance to V, or infinity if it has not been reached. */
+    double distance(int v) {
+        return stamp[v] == epoch ? dist[v] : Double.POSITIVE_INFINITY;
+    }
+
+    /** Returns the vertex V was reached from, or -1 for the start. Assumes V has been reached. */
+    int parent(int v) {
+        return parent[v];
+    }
+
+    /** Records that V is reached at DISTANCE from PARENT, or -1 for the start. */
+    void reach(int v, double distance, int parent) {
+        stamp[v] = epoch;
+        dist[v] = distance;
+        this.parent[v] = parent;
+    }
+}
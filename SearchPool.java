@@ -0,0 +1,48 @@
+package huskymaps;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * A bounded set of reusable search states shared by every thread. A search takes a state, runs
+ * and gives it back, so the states are reused from one search to the next like per-thread state
+ * would be, but at most SIZE of them ever exist however many request threads there are; a search
+ * that finds every state in use waits for one. States are created on first use.
+ */
+final class SearchPool<T> {
+    private final Semaphore permits;
+    private final Queue<T> idle = new ConcurrentLinkedQueue<>();
+    private final Supplier<T> factory;
+
+    /**
+     * @param size The most states to hand out at once.
+     * @param factory Creates a state when none is idle.
+     */
+    SearchPool(int size, Supplier<T> factory) {
+        this.permits = new Semaphore(size);
+        this.factory = factory;
+    }
+
+    /** Takes an idle state, or creates one, waiting while SIZE states are in use. */
+    T acquire() {
+        permits.acquireUninterruptibly();
+        T state = idle.poll();
+        if (state != null) {
+            return state;
+        }
+        try {
+            return factory.get();
+        } catch (RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /** Gives back STATE, taken by {@link #acquire}, for the next search to reuse. */
+    void release(T state) {
+        idle.offer(state);
+        permits.release();
+    }
+}
@@ -0,0 +1,338 @@
+package huskymaps;
+
+import java.util.Arrays;
+
+/**
+ * An R-tree over the road segments of a {@link CompactGraph} in projected coordinates, answering
+ * which segment passes closest to a point.
+ *
+ * Each street is indexed once even though the graph holds an edge in each direction. The tree is
+ * bulk-loaded with Sort-Tile-Recursive (STR) packing: the entries of a level are sorted into
+ * vertical slices by the x of their centers, each slice is sorted by y, and runs of NODE_SIZE
+ * entries become the nodes of the next level up, until one root remains. The packed nodes are
+ * nearly full and overlap little, and the whole tree is a handful of primitive arrays.
+ *
+ * Instances are immutable once built and are safe to share across threads without locking.
+ */
+class SegmentIndex {
+    private static final int NODE_SIZE = 16;
+
+    /** The vertex each segment starts from and the graph edge it follows. */
+    private final int[] segmentFrom;
+    private final int[] segmentEdge;
+    /** The endpoints of segment s are (ends[4s], ends[4s + 1]) and (ends[4s + 2], ends[4s + 3]). */
+    private final double[] ends;
+
+    /**
+     * Nodes [0, numLeaves) are leaves whose children are segments; the others are internal nodes
+     * whose children are nodes. Node n's children are [childStart[n], childEnd[n]), and its
+     * bounding box is minXs[n], minYs[n], maxXs[n], maxYs[n]. The root is the last node.
+     */
+    private final int numLeaves;
+    private final int[] childStart;
+    private final int[] childEnd;
+    private final double[] minXs;
+    private final double[] minYs;
+    private final double[] maxXs;
+    private final double[] maxYs;
+
+    /** Returned by {@link #closest}: a segment and the point on it closest to the query. */
+    static class Match {
+        /** The vertex the segment starts from and the graph edge it follows. */
+        final int from;
+        final int edge;
+        /** How far along the segment the closest point lies, from 0 at FROM to 1 at its end. */
+        final double fraction;
+        /** The projected coordinates of the closest point. */
+        final double x;
+        final double y;
+
+        Match(int from, int edge, double fraction, double x, double y) {
+            this.from = from;
+            this.edge = edge;
+            this.fraction = fraction;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    /**
+     * Bulk-loads the tree over the streets of GRAPH.
+     * @param xs The projected x coordinate of each vertex.
+     * @param ys The projected y coordinate of each vertex.
+     */
+    static SegmentIndex build(CompactGraph graph, double[] xs, double[] ys) {
+        int n = graph.size();
+        // Keep one direction of each two-way street, and every one-way edge
+        int[] from = new int[graph.edgeCount()];
+        int[] edges = new int[graph.edgeCount()];
+        int m = 0;
+        for (int u = 0; u < n; u += 1) {
+            for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e += 1) {
+                int w = graph.target(e);
+                if (u < w || !hasEdge(graph, w, u)) {
+                    from[m] = u;
+                    edges[m] = e;
+                    m += 1;
+                }
+            }
+        }
+        int[] order = new int[m];
+        for (int s = 0; s < m; s += 1) {
+            order[s] = s;
+        }
+        double[] centerXs = new double[m];
+        double[] centerYs = new double[m];
+        for (int s = 0; s < m; s += 1) {
+            int w = graph.target(edges[s]);
+            centerXs[s] = (xs[from[s]] + xs[w]) / 2;
+            centerYs[s] = (ys[from[s]] + ys[w]) / 2;
+        }
+        sortTileRecursive(order, centerXs, centerYs);
+        int[] segmentFrom = new int[m];
+        int[] segmentEdge = new int[m];
+        double[] ends = new double[4 * m];
+        for (int s = 0; s < m; s += 1) {
+            int original = order[s];
+            int u = from[original];
+            int w = graph.target(edges[original]);
+            segmentFrom[s] = u;
+            segmentEdge[s] = edges[original];
+            ends[4 * s] = xs[u];
+            ends[4 * s + 1] = ys[u];
+            ends[4 * s + 2] = xs[w];
+            ends[4 * s + 3] = ys[w];
+        }
+        return new SegmentIndex(segmentFrom, segmentEdge, ends);
+    }
+
+    private static boolean hasEdge(CompactGraph graph, int u, int w) {
+        for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e += 1) {
+            if (graph.target(e) == w) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reorders ORDER, a permutation of entries with the given centers, so that every run of
+     * NODE_SIZE entries is one tile of the STR packing.
+     */
+    private static void sortTileRecursive(int[] order, double[] centerXs, double[] centerYs) {
+        int count = order.length;
+        int numNodes = (count + NODE_SIZE - 1) / NODE_SIZE;
+        int numSlices = (int) Math.ceil(Math.sqrt(numNodes));
+        int sliceSize = numSlices * NODE_SIZE;
+        sortByKey(order, 0, count, centerXs);
+        for (int start = 0; start < count; start += sliceSize) {
+            sortByKey(order, start, Math.min(count, start + sliceSize), centerYs);
+        }
+    }
+
+    /**
+     * Sorts ORDER[lo, hi) by KEYS. Each entry is packed with its key, rounded to a float, into
+     * one long so that a primitive sort does the work; ties from the rounding only shuffle
+     * entries within a tile.
+     */
+    private static void sortByKey(int[] order, int lo, int hi, double[] keys) {
+        long[] packed = new long[hi - lo];
+        for (int i = lo; i < hi; i += 1) {
+            int bits = Float.floatToIntBits((float) keys[order[i]]);
+            // Flip the magnitude bits of negative floats so that the ints order like the floats
+            int sortable = bits ^ ((bits >> 31) & Integer.MAX_VALUE);
+            packed[i - lo] = ((long) sortable << 32) | (order[i] & 0xFFFFFFFFL);
+        }
+        Arrays.sort(packed);
+        for (int i = lo; i < hi; i += 1) {
+            order[i] = (int) packed[i - lo];
+        }
+    }
+
+    private SegmentIndex(int[] segmentFrom, int[] segmentEdge, double[] ends) {
+        this.segmentFrom = segmentFrom;
+        this.segmentEdge = segmentEdge;
+        this.ends = ends;
+        int m = segmentFrom.length;
+        // Every level has at most 1/NODE_SIZE of the entries of the level below, rounded up
+        int capacity = 1;
+        for (int count = m; count > 1; count = (count + NODE_SIZE - 1) / NODE_SIZE) {
+            capacity += (count + NODE_SIZE - 1) / NODE_SIZE;
+        }
+        int[] starts = new int[capacity];
+        int[] endsOfChildren = new int[capacity];
+        double[] minX = new double[capacity];
+        double[] minY = new double[capacity];
+        double[] maxX = new double[capacity];
+        double[] maxY = new double[capacity];
+
+        // The leaves cover runs of segments, which are already in STR order
+        int numNodes = 0;
+        for (int start = 0; start < m; start += NODE_SIZE) {
+            int end = Math.min(m, start + NODE_SIZE);
+            starts[numNodes] = start;
+            endsOfChildren[numNodes] = end;
+            minX[numNodes] = Double.POSITIVE_INFINITY;
+            minY[numNodes] = Double.POSITIVE_INFINITY;
+            maxX[numNodes] = Double.NEGATIVE_INFINITY;
+            maxY[numNodes] = Double.NEGATIVE_INFINITY;
+            for (int s = start; s < end; s += 1) {
+                minX[numNodes] = Math.min(minX[numNodes], Math.min(ends[4 * s], ends[4 * s + 2]));
+                minY[numNodes] = Math.min(minY[numNodes], Math.min(ends[4 * s + 1], ends[4 * s + 3]));
+                maxX[numNodes] = Math.max(maxX[numNodes], Math.max(ends[4 * s], ends[4 * s + 2]));
+                maxY[numNodes] = Math.max(maxY[numNodes], Math.max(ends[4 * s + 1], ends[4 * s + 3]));
+            }
+            numNodes += 1;
+        }
+        numLeaves = numNodes;
+
+        // Pack each level into the next until a single root remains
+        int levelStart = 0;
+        while (numNodes - levelStart > 1 || numNodes == 0) {
+            if (numNodes == 0) {
+                // An empty graph gets a single empty leaf as its root
+                starts[0] = 0;
+                endsOfChildren[0] = 0;
+                minX[0] = Double.POSITIVE_INFINITY;
+                minY[0] = Double.POSITIVE_INFINITY;
+                maxX[0] = Double.NEGATIVE_INFINITY;
+                maxY[0] = Double.NEGATIVE_INFINITY;
+                numNodes = 1;
+                break;
+            }
+            int levelEnd = numNodes;
+            int count = levelEnd - levelStart;
+            double[] centerXs = new double[count];
+            double[] centerYs = new double[count];
+            int[] order = new int[count];
+            for (int i = 0; i < count; i += 1) {
+                order[i] = i;
+                centerXs[i] = (minX[levelStart + i] + maxX[levelStart + i]) / 2;
+                centerYs[i] = (minY[levelStart + i] + maxY[levelStart + i]) / 2;
+            }
+            sortTileRecursive(order, centerXs, centerYs);
+            permute(order, levelStart, starts, endsOfChildren, minX, minY, maxX, maxY);
+            for (int start = levelStart; start < levelEnd; start += NODE_SIZE) {
+                int end = Math.min(levelEnd, start + NODE_SIZE);
+                starts[numNodes] = start;
+                endsOfChildren[numNodes] = end;
+                minX[numNodes] = Double.POSITIVE_INFINITY;
+                minY[numNodes] = Double.POSITIVE_INFINITY;
+                maxX[numNodes] = Double.NEGATIVE_INFINITY;
+                maxY[numNodes] = Double.NEGATIVE_INFINITY;
+                for (int child = start; child < end; child += 1) {
+                    minX[numNodes] = Math.min(minX[numNodes], minX[child]);
+                    minY[numNodes] = Math.min(minY[numNodes], minY[child]);
+                    maxX[numNodes] = Math.max(maxX[numNodes], maxX[child]);
+                    maxY[numNodes] = Math.max(maxY[numNodes], maxY[child]);
+                }
+                numNodes += 1;
+            }
+            levelStart = levelEnd;
+        }
+        childStart = Arrays.copyOf(starts, numNodes);
+        childEnd = Arrays.copyOf(endsOfChildren, numNodes);
+        minXs = Arrays.copyOf(minX, numNodes);
+        minYs = Arrays.copyOf(minY, numNodes);
+        maxXs = Arrays.copyOf(maxX, numNodes);
+        maxYs = Arrays.copyOf(maxY, numNodes);
+    }
+
+    /** Moves the node records from OFFSET + ORDER[i] to OFFSET + i. */
+    private static void permute(int[] order, int offset, int[] starts, int[] ends,
+                                double[] minX, double[] minY, double[] maxX, double[] maxY) {
+        int count = order.length;
+        int[] oldStarts = Arrays.copyOfRange(starts, offset, offset + count);
+        int[] oldEnds = Arrays.copyOfRange(ends, offset, offset + count);
+        double[] oldMinX = Arrays.copyOfRange(minX, offset, offset + count);
+        double[] oldMinY = Arrays.copyOfRange(minY, offset, offset + count);
+        double[] oldMaxX = Arrays.copyOfRange(maxX, offset, offset + count);
+        double[] oldMaxY = Arrays.copyOfRange(maxY, offset, offset + count);
+        for (int i = 0; i < count; i += 1) {
+            int from = order[i];
+            starts[offset + i] = oldStarts[from];
+            ends[offset + i] = oldEnds[from];
+            minX[offset + i] = oldMinX[from];
+            minY[offset + i] = oldMinY[from];
+            maxX[offset + i] = oldMaxX[from];
+            maxY[offset + i] = oldMaxY[from];
+        }
+    }
+
+    /** Returns the number of indexed segments. */
+    int size() {
+        return segmentFrom.length;
+    }
+
+    /**
+     * Returns the segment passing closest to (X, Y) and the point on it closest to (X, Y), or
+     * null if there are no segments. Nodes are visited nearest first, and the search stops once
+     * the nearest remaining bounding box is farther than the best segment found.
+     */
+    Match closest(double x, double y) {
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        double bestFraction = 0;
+        MinHeap fringe = new MinHeap(64);
+        int root = childStart.length - 1;
+        fringe.push(boxDistance(root, x, y), root);
+        while (!fringe.isEmpty() && fringe.peekPriority() < bestDistance) {
+            int node = fringe.pop();
+            if (node < numLeaves) {
+                for (int s = childStart[node]; s < childEnd[node]; s += 1) {
+                    double fraction = fraction(s, x, y);
+                    double distance = distance(s, fraction, x, y);
+                    if (distance < bestDistance) {
+                        best = s;
+                        bestDistance = distance;
+                        bestFraction = fraction;
+                    }
+                }
+            } else {
+                for (int child = childStart[node]; child < childEnd[node]; child += 1) {
+                    double distance = boxDistance(child, x, y);
+                    if (distance < bestDistance) {
+                        fringe.push(distance, child);
+                    }
+                }
+            }
+        }
+        if (best == -1) {
+            return null;
+        }
+        double ax = ends[4 * best];
+        double ay = ends[4 * best + 1];
+        return new Match(segmentFrom[best], segmentEdge[best], bestFraction,
+                ax + bestFraction * (ends[4 * best + 2] - ax),
+                ay + bestFraction * (ends[4 * best + 3] - ay));
+    }
+
+    /** Returns the squared distance from (X, Y) to the bounding box of NODE. */
+    private double boxDistance(int node, double x, double y) {
+        double dx = Math.max(0, Math.max(minXs[node] - x, x - maxXs[node]));
+        double dy = Math.max(0, Math.max(minYs[node] - y, y - maxYs[node]));
+        return dx * dx + dy * dy;
+    }
+
+    /** Returns how far along segment S the point closest to (X, Y) lies, from 0 to 1. */
+    private double fraction(int s, double x, double y) {
+        double ax = ends[4 * s];
+        double ay = ends[4 * s + 1];
+        double dx = ends[4 * s + 2] - ax;
+        double dy = ends[4 * s + 3] - ay;
+        double length2 = dx * dx + dy * dy;
+        if (length2 == 0) {
+            return 0;
+        }
+        return Math.max(0, Math.min(1, ((x - ax) * dx + (y - ay) * dy) / length2));
+    }
+
+    /** Returns the squared distance from (X, Y) to the point FRACTION along segment S. */
+    private double distance(int s, double fraction, double x, double y) {
+        double ax = ends[4 * s];
+        double ay = ends[4 * s + 1];
+        double px = ax + fraction * (ends[4 * s + 2] - ax) - x;
+        double py = ay + fraction * (ends[4 * s + 3] - ay) - y;
+        return px * px + py * py;
+    }
+}
@@ -0,0 +1,255 @@
+package huskymaps;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A 2-d tree over the projected coordinates of the navigable vertices of a graph, answering
+ * nearest-vertex, k-nearest and radius queries with the dense vertex indices themselves.
+ *
+ * The tree is implicit: the points are stored in one array in tree order, and the subtree over
+ * the range [lo, hi) has its root at the middle position (lo + hi) / 2, with the left subtree
+ * before it and the right subtree after it. Each level splits on x and y in turn, at the median,
+ * so the tree is balanced and needs no node objects or child pointers. The coordinates are
+ * packed into a single double array, x before y, so a query reads them from one cache line.
+ *
+ * Instances are immutable once built and are safe to share across threads.
+ */
+class SpatialIndex {
+    private static final int X = 0;
+    private static final int Y = 1;
+
+    /** The coordinates of the point at tree position i are coords[2i] and coords[2i + 1]. */
+    private final double[] coords;
+    /** The dense index of the vertex at each tree position. */
+    private final int[] vertices;
+
+    private SpatialIndex(double[] coords, int[] vertices) {
+        this.coords = coords;
+        this.vertices = vertices;
+    }
+
+    /**
+     * Builds the tree over the vertices of GRAPH that have outgoing edges.
+     * @param xs The projected x coordinate of each vertex.
+     * @param ys The projected y coordinate of each vertex.
+     */
+    static SpatialIndex build(CompactGraph graph, double[] xs, double[] ys) {
+        int m = 0;
+        for (int v = 0; v < graph.size(); v += 1) {
+            if (graph.degree(v) > 0) {
+                m += 1;
+            }
+        }
+        int[] order = new int[m];
+        int i = 0;
+        for (int v = 0; v < graph.size(); v += 1) {
+            if (graph.degree(v) > 0) {
+                order[i] = v;
+                i += 1;
+            }
+        }
+        arrange(order, xs, ys, 0, m, X);
+        double[] coords = new double[2 * m];
+        for (int p = 0; p < m; p += 1) {
+            coords[2 * p] = xs[order[p]];
+            coords[2 * p + 1] = ys[order[p]];
+        }
+        return new SpatialIndex(coords, order);
+    }
+
+    /** Puts the median of [lo, hi) by DIM in the middle, and arranges both halves likewise. */
+    private static void arrange(int[] order, double[] xs, double[] ys, int lo, int hi, int dim) {
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            select(order, dim == X ? xs : ys, lo, hi, mid);
+            arrange(order, xs, ys, mid + 1, hi, dim ^ 1);
+            hi = mid;
+            dim ^= 1;
+        }
+    }
+
+    /**
+     * Reorders [lo, hi) so that position K holds the vertex with the K-th smallest key, with no
+     * larger keys before it and no smaller keys after it.
+     */
+    private static void select(int[] order, double[] keys, int lo, int hi, int k) {
+        hi -= 1;
+        while (lo < hi) {
+            double pivot = keys[order[(lo + hi) >>> 1]];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (keys[order[i]] < pivot) {
+                    i += 1;
+                }
+                while (keys[order[j]] > pivot) {
+                    j -= 1;
+                }
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i] = order[j];
+                    order[j] = swap;
+                    i += 1;
+                    j -= 1;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /** Returns the number of indexed vertices. */
+    int size() {
+        return vertices.length;
+    }
+
+    /** Returns the dense index of the indexed vertex closest to (X, Y), or -1 if there is none. */
+    int nearest(double x, double y) {
+        int best = nearest(0, vertices.length, X, x, y, -1);
+        return best == -1 ? -1 : vertices[best];
+    }
+
+    /** Returns the tree position in [lo, hi) closest to (X, Y), or BEST if none is closer. */
+    private int nearest(int lo, int hi, int dim, double x, double y, int best) {
+        if (lo >= hi) {
+            return best;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (best == -1 || distance(mid, x, y) < distance(best, x, y)) {
+            best = mid;
+        }
+        double diff = (dim == X ? x : y) - coords[2 * mid + dim];
+        // Search the side of the split holding the query first, and the other only if the
+        // splitting line is closer than the best point found
+        if (diff < 0) {
+            best = nearest(lo, mid, dim ^ 1, x, y, best);
+            if (diff * diff < distance(best, x, y)) {
+                best = nearest(mid + 1, hi, dim ^ 1, x, y, best);
+            }
+        } else {
+            best = nearest(mid + 1, hi, dim ^ 1, x, y, best);
+            if (diff * diff < distance(best, x, y)) {
+                best = nearest(lo, mid, dim ^ 1, x, y, best);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the dense indices of the K indexed vertices closest to (X, Y), nearest first, or
+     * of all of them if there are fewer than K.
+     */
+    int[] nearest(double x, double y, int k) {
+        k = Math.min(k, vertices.length);
+        if (k <= 0) {
+            return new int[0];
+        }
+        // A max-heap of the K closest so far, by negated squared distance
+        MinHeap best = new MinHeap(k + 1);
+        nearest(0, vertices.length, X, x, y, k, best);
+        int[] result = new int[best.size()];
+        for (int i = result.length - 1; i >= 0; i -= 1) {
+            result[i] = vertices[best.pop()];
+        }
+        return result;
+    }
+
+    /** Offers to BEST the tree positions in [lo, hi) that may be among the K closest to (X, Y). */
+    private void nearest(int lo, int hi, int dim, double x, double y, int k, MinHeap best) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double d = distance(mid, x, y);
+        if (best.size() < k) {
+            best.push(-d, mid);
+        } else if (d < -best.peekPriority()) {
+            best.pop();
+            best.push(-d, mid);
+        }
+        double diff = (dim == X ? x : y) - coords[2 * mid + dim];
+        int nearLo = diff < 0 ? lo : mid + 1;
+        int nearHi = diff < 0 ? mid : hi;
+        nearest(nearLo, nearHi, dim ^ 1, x, y, k, best);
+        if (best.size() < k || diff * diff < -best.peekPriority()) {
+            nearest(diff < 0 ? mid + 1 : lo, diff < 0 ? hi : mid, dim ^ 1, x, y, k, best);
+        }
+    }
+
+    /**
+     * Returns the dense indices of the indexed vertices within projected distance RADIUS of
+     * (X, Y), in no particular order.
+     */
+    int[] withinRadius(double x, double y, double radius) {
+        int[] result = new int[16];
+        int size = 0;
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = vertices.length;
+        stack[top++] = X;
+        double radius2 = radius * radius;
+        while (top > 0) {
+            int dim = stack[--top];
+            int hi = stack[--top];
+            int lo = stack[--top];
+            if (lo >= hi) {
+                continue;
+            }
+            int mid = (lo + hi) >>> 1;
+            if (distance(mid, x, y) <= radius2) {
+                if (size == result.length) {
+                    result = Arrays.copyOf(result, 2 * size);
+                }
+                result[size] = vertices[mid];
+                size += 1;
+            }
+            // Descend into a side only if the disk reaches across the splitting line into it
+            double diff = (dim == X ? x : y) - coords[2 * mid + dim];
+            if (top + 6 > stack.length) {
+                stack = Arrays.copyOf(stack, 2 * stack.length);
+            }
+            if (diff - radius <= 0) {
+                stack[top++] = lo;
+                stack[top++] = mid;
+                stack[top++] = dim ^ 1;
+            }
+            if (diff + radius >= 0) {
+                stack[top++] = mid + 1;
+                stack[top++] = hi;
+                stack[top++] = dim ^ 1;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /** Returns the squared distance between the point at tree position P and (X, Y). */
+    private double distance(int p, double x, double y) {
+        double dx = coords[2 * p] - x;
+        double dy = coords[2 * p + 1] - y;
+        return dx * dx + dy * dy;
+    }
+
+    /** Returns the number of bytes {@link #writeTo} writes. */
+    long serializedSize() {
+        return Integer.BYTES + (long) coords.length * Double.BYTES
+                + Integer.BYTES + (long) vertices.length * Integer.BYTES;
+    }
+
+    void writeTo(ByteBuffer buffer) {
+        GraphSnapshot.putDoubles(buffer, coords);
+        GraphSnapshot.putInts(buffer, vertices);
+    }
+
+    static SpatialIndex readFrom(ByteBuffer buffer) {
+        double[] coords = GraphSnapshot.getDoubles(buffer);
+        int[] vertices = GraphSnapshot.getInts(buffer);
+        return new SpatialIndex(coords, vertices);
+    }
+}
@@ -2,136 +2,386 @@ package huskymaps;
 
 import astar.AStarGraph;
 import astar.WeightedEdge;
-import autocomplete.BinaryRangeSearch;
-import autocomplete.Term;
-import kdtree.KDTreePointSet;
-import kdtree.Point;
+import huskymaps.params.Location;
 
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
+import static huskymaps.utils.Constants.AUTOCOMPLETE_MAX_RESULTS;
+import static huskymaps.utils.Constants.EQUIRECTANGULAR_LAT_MARGIN;
+import static huskymaps.utils.Constants.HEROKU_DEPLOYMENT;
+import static huskymaps.utils.Constants.PLACES_PATH;
+import static huskymaps.utils.Constants.R;
+import static huskymaps.utils.Constants.SEARCH_STATES;
 import static huskymaps.utils.Spatial.greatCircleDistance;
 import static huskymaps.utils.Spatial.projectToX;
 import static huskymaps.utils.Spatial.projectToY;
 
+/**
+ * The street graph used for routing and search. Vertices and edges are collected while the OSM
+ * file is parsed and then frozen into a {@link CompactGraph}; this class adapts the compact
+ * representation to the <code>AStarGraph&lt;Long&gt;</code> interface keyed by OSM id.
+ */
 public class StreetMapGraph implements AStarGraph<Long> {
-    private Map<Long, Node> nodes = new HashMap<>();
-    private Map<Long, Set<WeightedEdge<Long>>> neighbors = new HashMap<>();
-    private KDTreePointSet points;
-    private Map<Point, Long> findID;
-    private BinaryRangeSearch autoComplete;
+    private static final double PROJECTED_RADIUS_SLACK = 1.001;
 
+    private CompactGraph graph;
+    private ContractionHierarchy contractionHierarchy;
+    private Landmarks landmarks;
+    private Heuristic heuristic = Heuristic.GREAT_CIRCLE;
+    private SpatialIndex spatialIndex;
+    private SegmentIndex segmentIndex;
+    /**
+     * Per-vertex geometry computed once at load, so that heuristics and spatial indexes do no
+     * trigonometry per vertex: latitudes and longitudes in radians, the cosine of each
+     * latitude, and the projected coordinates.
+     */
+    private double[] phis;
+    private double[] lambdas;
+    private double[] cosPhis;
+    private double[] xs;
+    private double[] ys;
+    /** The cosine of the latitude farthest from the equator, less EQUIRECTANGULAR_LAT_MARGIN. */
+    private double minCosPhi;
+    private Autocomplete autocomplete;
+    private FuzzySearch fuzzySearch;
+    /** Search states for the forward and backward sides of A* searches, shared by all threads. */
+    private SearchPool<SearchContext> forwardSearches;
+    private SearchPool<SearchContext> backwardSearches;
+
+    /**
+     * Loads the street graph for the OSM file FILENAME, from its binary snapshot if one is up to
+     * date and otherwise by parsing the XML, after which a fresh snapshot is written.
+     */
     public StreetMapGraph(String filename) {
-        OSMGraphHandler.initializeFromXML(this, filename);
-        List<Point> input = new ArrayList<Point>();
-        for (Node node : nodes.values()) {
-            if (isNavigable(node)) {
-                Point p = new Point(projectToX(node.lon(), node.lat()), projectToY(node.lon(), node.lat()));
-                input.add(p);
+        GraphSnapshot snapshot = null;
+        String snapshotPath = GraphSnapshot.pathFor(filename);
+        if (!HEROKU_DEPLOYMENT) {
+            snapshot = GraphSnapshot.read(snapshotPath, filename, PLACES_PATH);
+        }
+        if (snapshot == null) {
+            CompactGraph parsed = OSMIngestion.read(filename, OSMIngestion.DEFAULT_THREADS).graph;
+            precomputeGeometry(parsed);
+            snapshot = new GraphSnapshot(parsed, SpatialIndex.build(parsed, xs, ys));
+            if (!HEROKU_DEPLOYMENT) {
+                try {
+                    snapshot.write(snapshotPath, filename, PLACES_PATH);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
             }
         }
-        points = new KDTreePointSet(input);
-
-        // Initializes findID to find the corresponding ID of a Point.
-        findID = new HashMap<Point, Long>();
-        for (long id : nodes.keySet()) {
-            double x = projectToX(nodes.get(id).lon(), nodes.get(id).lat());
-            double y = projectToY(nodes.get(id).lon(), nodes.get(id).lat());
-            Point p = new Point(x, y);
-            findID.put(p, id);
+        graph = snapshot.graph;
+        if (xs == null) {
+            precomputeGeometry(graph);
         }
-        Term[] terms = new Term[nodes.values().size()];
-
+        spatialIndex = snapshot.spatialIndex;
+        autocomplete = Autocomplete.build(graph);
+        fuzzySearch = FuzzySearch.build(autocomplete);
+        int n = graph.size();
+        forwardSearches = new SearchPool<>(SEARCH_STATES, () -> new SearchContext(n));
+        backwardSearches = new SearchPool<>(SEARCH_STATES, () -> new SearchContext(n));
+    }
 
+    private void precomputeGeometry(CompactGraph g) {
+        int n = g.size();
+        phis = new double[n];
+        lambdas = new double[n];
+        cosPhis = new double[n];
+        xs = new double[n];
+        ys = new double[n];
+        double maxAbsLat = 0;
+        for (int v = 0; v < n; v += 1) {
+            phis[v] = Math.toRadians(g.lat(v));
+            lambdas[v] = Math.toRadians(g.lon(v));
+            cosPhis[v] = Math.cos(phis[v]);
+            xs[v] = projectToX(g.lon(v), g.lat(v));
+            ys[v] = projectToY(g.lon(v), g.lat(v));
+            maxAbsLat = Math.max(maxAbsLat, Math.abs(g.lat(v)));
+        }
+        minCosPhi = Math.cos(Math.toRadians(Math.min(90, maxAbsLat + EQUIRECTANGULAR_LAT_MARGIN)));
     }
 
     /**
-     * Returns the vertex closest to the given longitude and latitude.
+     * Returns the navigable vertex closest to the given longitude and latitude.
      * @param lat The target latitude.
      * @param lon The target longitude.
      * @return The id of the node in the graph closest to the target.
+     * @throws IllegalStateException If the graph has no navigable vertices.
      */
     public long closest(double lat, double lon) {
-        double x = projectToX(lon, lat);
-        double y = projectToY(lon, lat);
-        Point closestPoint = points.nearest(x, y);
-        return findID.get(closestPoint);
+        int v = spatialIndex.nearest(projectToX(lon, lat), projectToY(lon, lat));
+        if (v < 0) {
+            throw new IllegalStateException("The graph has no streets to snap to.");
+        }
+        return graph.id(v);
+    }
+
+    /**
+     * Returns the point on a street closest to the given latitude and longitude on the map
+     * projection, along with the street it lies on.
+     * @param lat The target latitude.
+     * @param lon The target longitude.
+     * @return The closest point, or null if no segment index has been built or the graph has
+     *         no streets.
+     */
+    public EdgeSnap closestEdge(double lat, double lon) {
+        if (segmentIndex == null) {
+            return null;
+        }
+        SegmentIndex.Match match = segmentIndex.closest(projectToX(lon, lat), projectToY(lon, lat));
+        if (match == null) {
+            return null;
+        }
+        int from = match.from;
+        int to = graph.target(match.edge);
+        double reverseWeight = Double.POSITIVE_INFINITY;
+        for (int e = graph.edgeStart(to); e < graph.edgeEnd(to); e += 1) {
+            if (graph.target(e) == from) {
+                reverseWeight = Math.min(reverseWeight, graph.weight(e));
+            }
+        }
+        double t = match.fraction;
+        return new EdgeSnap(graph.id(from), graph.id(to), t, match.x, match.y,
+                graph.lat(from) + t * (graph.lat(to) - graph.lat(from)),
+                graph.lon(from) + t * (graph.lon(to) - graph.lon(from)),
+                graph.weight(match.edge), reverseWeight);
+    }
+
+    /**
+     * Returns the K navigable vertices closest to the given latitude and longitude on the map
+     * projection, nearest first.
+     * @param lat The target latitude.
+     * @param lon The target longitude.
+     * @param k The most vertices to return.
+     * @return The ids of the nodes, or of every navigable node if there are fewer than K.
+     */
+    public long[] kNearest(double lat, double lon, int k) {
+        int[] nearest = spatialIndex.nearest(projectToX(lon, lat), projectToY(lon, lat), k);
+        long[] result = new long[nearest.length];
+        for (int i = 0; i < nearest.length; i += 1) {
+            result[i] = graph.id(nearest[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the navigable vertices within MILES of the given latitude and longitude by
+     * great-circle distance, nearest first.
+     * @param lat The target latitude.
+     * @param lon The target longitude.
+     * @param miles The search radius.
+     * @return The ids of the nodes in the radius.
+     */
+    public long[] withinRadius(double lat, double lon, double miles) {
+        // Projected distances run up to a few parts in 10^5 longer than great-circle ones
+        // across the map, so search a slightly larger disk and then measure exactly
+        double radius = miles / R * PROJECTED_RADIUS_SLACK;
+        int[] candidates = spatialIndex.withinRadius(projectToX(lon, lat), projectToY(lon, lat), radius);
+        MinHeap byDistance = new MinHeap(Math.max(1, candidates.length));
+        for (int v : candidates) {
+            double distance = greatCircleDistance(lon, graph.lon(v), lat, graph.lat(v));
+            if (distance <= miles) {
+                byDistance.push(distance, v);
+            }
+        }
+        long[] result = new long[byDistance.size()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = graph.id(byDistance.pop());
+        }
+        return result;
     }
 
     /**
-     * In linear time, collect all the names of OSM locations that prefix-match the query string.
+     * Collect the names of the most important OSM locations that prefix-match the query string.
      * @param prefix Prefix string to be searched for. Could be any case, with our without
      *               punctuation.
-     * @return A <code>List</code> of full names of locations matching the <code>prefix</code>.
+     * @return A <code>List</code> of at most AUTOCOMPLETE_MAX_RESULTS full names of locations
+     *         matching the <code>prefix</code>, most important first.
      */
     public List<String> getLocationsByPrefix(String prefix) {
-        return new LinkedList<>();
+        return getLocationsByPrefix(prefix, AUTOCOMPLETE_MAX_RESULTS);
+    }
+
+    /**
+     * Collect the names of the K most important OSM locations that prefix-match the query
+     * string, without visiting the matches that cannot be among them.
+     * @param prefix Prefix string to be searched for. Could be any case, with our without
+     *               punctuation.
+     * @param k The most names to return.
+     * @return A <code>List</code> of full names of locations matching the <code>prefix</code>,
+     *         most important first.
+     */
+    public List<String> getLocationsByPrefix(String prefix, int k) {
+        return autocomplete.topK(prefix, k);
+    }
+
+    /**
+     * Collect the names of the K best OSM locations for a query that may contain typos. Every
+     * word of the query must be within a small edit distance of a word of the name.
+     * @param term The query, in any case and with or without punctuation.
+     * @param k The most names to return.
+     * @return A <code>List</code> of full names of matching locations, those with the fewest
+     *         typos first and then the most important.
+     */
+    public List<String> getLocationsFuzzy(String term, int k) {
+        return fuzzySearch.topK(term, k);
     }
 
     /**
      * Collect all locations that match a cleaned <code>locationName</code>, and return
-     * information about each node that matches.
+     * information about each node that matches. Takes constant time in the size of the map.
      * @param locationName A full name of a location searched for.
-     * @return A list of locations whose name matches the <code>locationName</code>.
+     * @return A list of the latitude, longitude and name of the locations whose name matches
+     *         the <code>locationName</code>.
      */
-    public List<Node> getLocations(String locationName) {
-        return new LinkedList<>();
+    public List<Location> getLocations(String locationName) {
+        int[] matches = graph.locations(locationName);
+        List<Location> result = new ArrayList<>(matches.length);
+        for (int v : matches) {
+            result.add(new Location(graph.lat(v), graph.lon(v), graph.name(v)));
+        }
+        return result;
+    }
+
+    /** Returns the prefix search index over the location names. */
+    public Autocomplete autocomplete() {
+        return autocomplete;
+    }
+
+    /** Returns the typo-tolerant search index over the location names. */
+    public FuzzySearch fuzzySearch() {
+        return fuzzySearch;
     }
 
     /** Returns a list of outgoing edges for V. Assumes V exists in this graph. */
     @Override
     public List<WeightedEdge<Long>> neighbors(Long v) {
-        return new ArrayList<>(neighbors.get(v));
+        int index = graph.indexOf(v);
+        List<WeightedEdge<Long>> result = new ArrayList<>(graph.degree(index));
+        for (int e = graph.edgeStart(index); e < graph.edgeEnd(index); e += 1) {
+            String name = graph.edgeName(e);
+            result.add(new WeightedEdge<>(v, graph.id(graph.target(e)), graph.weight(e),
+                    name == null ? "" : name));
+        }
+        return result;
     }
 
     /**
-     * Returns the great-circle distance between S and GOAL. Assumes
-     * S and GOAL exist in this graph.
+     * Returns a lower bound on the distance between S and GOAL, using the graph's current
+     * {@link Heuristic}. Assumes S and GOAL exist in this graph.
      */
     @Override
     public double estimatedDistanceToGoal(Long s, Long goal) {
-        Node sNode = nodes.get(s);
-        Node goalNode = nodes.get(goal);
-        return greatCircleDistance(sNode.lon(), goalNode.lon(), sNode.lat(), goalNode.lat());
+        return estimatedDistanceToGoal(graph.indexOf(s), graph.indexOf(goal));
     }
 
-    /** Returns a set of my vertices. Altering this set does not alter this graph. */
-    public Set<Long> vertices() {
-        return new HashSet<>(nodes.keySet());
+    /**
+     * Returns a lower bound on the distance between the vertices with dense indices S and GOAL,
+     * using the graph's current {@link Heuristic}.
+     */
+    public double estimatedDistanceToGoal(int s, int goal) {
+        switch (heuristic) {
+            case EQUIRECTANGULAR:
+                return equirectangular(s, goal);
+            case LANDMARKS:
+                // The landmark bound is usually the larger, so the cheap floor is enough
+                return Math.max(equirectangular(s, goal), landmarks.lowerBound(s, goal));
+            default:
+                return greatCircle(s, goal);
+        }
     }
 
-    /** Adds an edge to this graph if it doesn't already exist, using distance as the weight. */
-    public void addWeightedEdge(long from, long to, String name) {
-        if (nodes.containsKey(from) && nodes.containsKey(to)) {
-            Node fromNode = nodes.get(from);
-            Node toNode = nodes.get(to);
-            double weight = greatCircleDistance(fromNode.lon(), toNode.lon(), fromNode.lat(), toNode.lat());
-            neighbors.get(from).add(new WeightedEdge<>(from, to, weight, name));
-        }
+    /**
+     * Returns the great-circle (haversine) distance between the vertices with dense indices S
+     * and W, as {@link huskymaps.utils.Spatial#greatCircleDistance} computes it but from the
+     * precomputed radians and cosines.
+     */
+    double greatCircle(int s, int w) {
+        double sinHalfDphi = Math.sin((phis[w] - phis[s]) / 2);
+        double sinHalfDlambda = Math.sin((lambdas[w] - lambdas[s]) / 2);
+        double a = sinHalfDphi * sinHalfDphi
+                + cosPhis[s] * cosPhis[w] * sinHalfDlambda * sinHalfDlambda;
+        return R * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    /**
+     * Returns the equirectangular distance between the vertices with dense indices S and W,
+     * with longitude differences scaled by the smallest latitude cosine on the map. Along the
+     * shortest path every latitude has at least that cosine, so this never exceeds the
+     * great-circle distance, and it needs a single square root.
+     */
+    double equirectangular(int s, int w) {
+        double dphi = phis[w] - phis[s];
+        double dlambda = (lambdas[w] - lambdas[s]) * minCosPhi;
+        return R * Math.sqrt(dphi * dphi + dlambda * dlambda);
     }
 
-    /** Adds an edge to this graph if it doesn't already exist. */
-    public void addWeightedEdge(long from, long to, double weight, String name) {
-        if (nodes.containsKey(from) && nodes.containsKey(to)) {
-            neighbors.get(from).add(new WeightedEdge<>(from, to, weight, name));
+    /**
+     * Selects the heuristic used by {@link #estimatedDistanceToGoal}.
+     * @throws IllegalStateException If LANDMARKS is selected before landmarks are loaded.
+     */
+    public void setHeuristic(Heuristic heuristic) {
+        if (heuristic == Heuristic.LANDMARKS && landmarks == null) {
+            throw new IllegalStateException("No landmarks are loaded.");
         }
+        this.heuristic = heuristic;
+    }
+
+    public Heuristic heuristic() {
+        return heuristic;
+    }
+
+    /**
+     * Calls CONSUMER once for every outgoing edge of the vertex with dense index V. Unlike
+     * {@link #neighbors(Long)}, this allocates nothing, so search algorithms should prefer it.
+     */
+    public void forEachNeighbor(int v, EdgeConsumer consumer) {
+        graph.forEachNeighbor(v, consumer);
     }
 
-    /** Adds an edge to this graph if it doesn't already exist. */
-    public void addWeightedEdge(WeightedEdge<Long> edge) {
-        if (nodes.containsKey(edge.from()) && nodes.containsKey(edge.to())) {
-            neighbors.get(edge.from()).add(edge);
+    /**
+     * Calls CONSUMER once for every incoming edge of the vertex with dense index V, passing the
+     * vertex the edge comes from. Backward searches use it to walk the edges in reverse.
+     */
+    public void forEachIncoming(int v, EdgeConsumer consumer) {
+        graph.forEachIncoming(v, consumer);
+    }
+
+    /** Returns the dense index of the vertex with OSM id ID, or -1 if there is none. */
+    public int indexOf(long id) {
+        return graph.indexOf(id);
+    }
+
+    /** Returns the dense index of the vertex with each of IDS, or -1 for ids with none. */
+    int[] indicesOf(long[] ids) {
+        int[] indices = new int[ids.length];
+        for (int i = 0; i < ids.length; i += 1) {
+            indices[i] = graph.indexOf(ids[i]);
         }
+        return indices;
+    }
+
+    /** Returns the OSM id of the vertex with dense index V. */
+    public long id(int v) {
+        return graph.id(v);
     }
 
-    /** Checks if a vertex has 0 out-degree from graph. */
-    private boolean isNavigable(Node node) {
-        return !neighbors.get(node.id()).isEmpty();
+    /** Returns the number of vertices; dense vertex indices range from 0 to size() - 1. */
+    public int size() {
+        return graph.size();
+    }
+
+    /** Returns a set of my vertices. Altering this set does not alter this graph. */
+    public Set<Long> vertices() {
+        Set<Long> result = new HashSet<>(graph.size());
+        for (int v = 0; v < graph.size(); v += 1) {
+            result.add(graph.id(v));
+        }
+        return result;
     }
 
     /**
@@ -140,10 +390,11 @@ public class StreetMapGraph implements AStarGraph<Long> {
      * @return The latitude of the vertex.
      */
     public double lat(long v) {
-        if (!nodes.containsKey(v)) {
+        int index = graph.indexOf(v);
+        if (index < 0) {
             return 0.0;
         }
-        return nodes.get(v).lat();
+        return graph.lat(index);
     }
 
     /**
@@ -152,25 +403,107 @@ public class StreetMapGraph implements AStarGraph<Long> {
      * @return The longitude of the vertex.
      */
     public double lon(long v) {
-        if (!nodes.containsKey(v)) {
+        int index = graph.indexOf(v);
+        if (index < 0) {
             return 0.0;
         }
-        return nodes.get(v).lon();
+        return graph.lon(index);
+    }
+
+    /**
+     * Loads a contraction hierarchy built offline by {@link ContractionHierarchy#main}.
+     * @param filename The path of the index file.
+     * @return True if the index was loaded; false if it is missing or was built for different
+     *         map data, in which case routing keeps using A*.
+     */
+    public boolean loadContractionHierarchy(String filename) {
+        contractionHierarchy = ContractionHierarchy.read(this, filename);
+        return contractionHierarchy != null;
+    }
+
+    /**
+     * Loads landmark distances computed offline by {@link Landmarks#main}, or discards the
+     * current ones if the file is missing or was built for different map data. Loading does
+     * not change the selected heuristic.
+     * @param filename The path of the landmarks file.
+     * @return True if the landmarks were loaded.
+     */
+    public boolean loadLandmarks(String filename) {
+        landmarks = Landmarks.read(this, filename);
+        if (landmarks == null) {
+            heuristic = Heuristic.GREAT_CIRCLE;
+        }
+        return landmarks != null;
     }
 
-    /** Adds a node to this graph, if it doesn't yet exist. */
-    void addNode(Node node) {
-        if (!nodes.containsKey(node.id())) {
-            nodes.put(node.id(), node);
-            neighbors.put(node.id(), new HashSet<>());
+    /** Uses the given contraction hierarchy, which must have been built for this graph. */
+    public void setContractionHierarchy(ContractionHierarchy contractionHierarchy) {
+        this.contractionHierarchy = contractionHierarchy;
+    }
+
+    /** Uses the given landmarks, which must have been built for this graph. */
+    public void setLandmarks(Landmarks landmarks) {
+        this.landmarks = landmarks;
+        if (landmarks == null) {
+            heuristic = Heuristic.GREAT_CIRCLE;
         }
     }
 
-    Node getNode(long id) {
-        return nodes.get(id);
+    /**
+     * Bulk-loads the R-tree over the streets that {@link #closestEdge} searches. It is built
+     * once, at startup, and never changes afterwards, so queries need no locking.
+     */
+    public void buildSegmentIndex() {
+        segmentIndex = SegmentIndex.build(graph, xs, ys);
     }
 
-    Node.Builder nodeBuilder() {
-        return new Node.Builder();
+    /** Returns whether {@link #buildSegmentIndex} has been called. */
+    public boolean hasSegmentIndex() {
+        return segmentIndex != null;
+    }
+
+    /**
+     * Returns the total length of PATH, taking the shortest edge between consecutive vertices,
+     * or infinity if some consecutive pair is not joined by an edge.
+     */
+    public double pathWeight(List<Long> path) {
+        double total = 0;
+        for (int i = 1; i < path.size(); i += 1) {
+            int u = graph.indexOf(path.get(i - 1));
+            int v = graph.indexOf(path.get(i));
+            if (u < 0 || v < 0) {
+                return Double.POSITIVE_INFINITY;
+            }
+            double weight = Double.POSITIVE_INFINITY;
+            for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e += 1) {
+                if (graph.target(e) == v) {
+                    weight = Math.min(weight, graph.weight(e));
+                }
+            }
+            total += weight;
+        }
+        return total;
+    }
+
+    /** Returns the loaded contraction hierarchy, or null if none is loaded. */
+    public ContractionHierarchy contractionHierarchy() {
+        return contractionHierarchy;
+    }
+
+    CompactGraph compactGraph() {
+        return graph;
+    }
+
+    /** Returns the pool of search states for forward searches over this graph. */
+    SearchPool<SearchContext> forwardSearches() {
+        return forwardSearches;
+    }
+
+    /**
+     * Returns the pool of search states for the backward sides of bidirectional searches. Take
+     * from it only while holding a forward state, so that searches never wait on each other.
+     */
+    SearchPool<SearchContext> backwardSearches() {
+        return backwardSearches;
     }
 }
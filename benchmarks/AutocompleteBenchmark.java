@@ -0,0 +1,93 @@
+package huskymaps.benchmarks;
+
+import huskymaps.Autocomplete;
+import huskymaps.StreetMapGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import static huskymaps.utils.Constants.OSM_DB_PATH;
+
+/**
+ * Measures the top-k {@link StreetMapGraph#getLocationsByPrefix} against a scan over every
+ * distinct location name that ranks the matches the same way, for search terms typed into the
+ * map from one letter up to a full name.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AutocompleteBenchmark {
+    @Param({"s", "se", "sea", "univ", "pike pl", "space needle"})
+    public String term;
+
+    @Param({"10", "100"})
+    public int k;
+
+    private StreetMapGraph graph;
+    private Autocomplete autocomplete;
+    private String[] keys;
+
+    @Setup
+    public void setUp() {
+        graph = new StreetMapGraph(OSM_DB_PATH);
+        autocomplete = graph.autocomplete();
+        keys = new String[autocomplete.size()];
+        for (int i = 0; i < keys.length; i += 1) {
+            keys[i] = Autocomplete.clean(autocomplete.name(i));
+        }
+    }
+
+    @Benchmark
+    public List<String> trie() {
+        return graph.getLocationsByPrefix(term, k);
+    }
+
+    @Benchmark
+    public List<String> scan() {
+        String prefix = Autocomplete.clean(term);
+        PriorityQueue<Integer> best = new PriorityQueue<>((a, b) -> {
+            int cmp = Integer.compare(autocomplete.importance(a), autocomplete.importance(b));
+            return cmp != 0 ? cmp : autocomplete.name(b).compareTo(autocomplete.name(a));
+        });
+        for (int i = 0; i < keys.length; i += 1) {
+            if (keys[i].startsWith(prefix)) {
+                best.offer(i);
+                if (best.size() > k) {
+                    best.poll();
+                }
+            }
+        }
+        List<String> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(0, autocomplete.name(best.poll()));
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AutocompleteBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
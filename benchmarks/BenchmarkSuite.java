@@ -0,0 +1,60 @@
+package huskymaps.benchmarks;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of the request paths of the server together: routing, snapping, rastering
+ * and rendering, search and graph construction. The steady-state benchmarks run twice, for
+ * throughput and for the latency distribution with its percentiles, and graph construction runs
+ * as repeated cold loads. The GC profiler adds <code>gc.alloc.rate.norm</code>, the bytes
+ * allocated per operation, to every result.
+ *
+ * Results are printed and written to RESULT_PATH as JSON. Any JMH command-line options given,
+ * such as <code>-f 3</code> or <code>-p depth=7</code>, apply to every benchmark.
+ */
+public class BenchmarkSuite {
+    private static final String RESULT_PATH = "jmh-result.json";
+    private static final String CONSTRUCTION_RESULT_PATH = "jmh-construction-result.json";
+
+    private static final String[] STEADY_STATE = {
+        RoutingBenchmark.class.getSimpleName(),
+        SnappingBenchmark.class.getSimpleName(),
+        RasterBenchmark.class.getSimpleName(),
+        SearchBenchmark.class.getSimpleName()
+    };
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        OptionsBuilder steadyState = new OptionsBuilder();
+        for (String benchmark : STEADY_STATE) {
+            steadyState.include("\\." + benchmark + "\\.");
+        }
+        Options options = steadyState
+                .parent(commandLine)
+                .mode(Mode.Throughput)
+                .mode(Mode.SampleTime)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(RESULT_PATH)
+                .build();
+        new Runner(options).run();
+
+        Options construction = new OptionsBuilder()
+                .include("\\." + GraphConstructionBenchmark.class.getSimpleName() + "\\.")
+                .parent(commandLine)
+                .mode(Mode.SingleShotTime)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(CONSTRUCTION_RESULT_PATH)
+                .build();
+        new Runner(construction).run();
+    }
+}
@@ -0,0 +1,129 @@
+package huskymaps.benchmarks;
+
+import astar.ShortestPathsSolver;
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import huskymaps.BidirectionalAStarSolver;
+import huskymaps.CompactAStarSolver;
+import huskymaps.Heuristic;
+import huskymaps.Landmarks;
+import huskymaps.StreetMapGraph;
+import huskymaps.params.RouteRequest;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static huskymaps.utils.Constants.BASE_DIR_PATH;
+import static huskymaps.utils.Constants.NUM_LANDMARKS;
+
+/**
+ * Compares unidirectional A* with {@link BidirectionalAStarSolver} on the routes of the
+ * <code>tests/router</code> requests, with each heuristic. Next to the latency, the
+ * <code>settled</code> counter totals the vertices settled in each iteration; dividing it by
+ * the operation count gives the average per route.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BidirectionalAStarBenchmark {
+    private static final String REQUEST_FORMAT = BASE_DIR_PATH + "tests/router/request%d.json";
+    private static final String LARGE_OSM_DB_PATH = BASE_DIR_PATH + "seattle.osm.gz";
+    private static final int NUM_ROUTES = 10;
+
+    @Param({"GREAT_CIRCLE", "EQUIRECTANGULAR", "LANDMARKS"})
+    public Heuristic heuristic;
+
+    private StreetMapGraph graph;
+    private long[] routeSources;
+    private long[] routeTargets;
+    private int nextRoute;
+
+    /** The vertices settled by the searches, reported by JMH next to the timings. */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Settled {
+        public long settled;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            settled = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        graph = new StreetMapGraph(LARGE_OSM_DB_PATH);
+        // The saved landmarks are for the small map, so these are computed here
+        if (heuristic == Heuristic.LANDMARKS) {
+            graph.setLandmarks(Landmarks.build(graph, NUM_LANDMARKS));
+        }
+        graph.setHeuristic(heuristic);
+        Gson gson = new GsonBuilder()
+                .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+                .create();
+        routeSources = new long[NUM_ROUTES];
+        routeTargets = new long[NUM_ROUTES];
+        for (int i = 0; i < NUM_ROUTES; i += 1) {
+            RouteRequest request;
+            try (Reader reader = new FileReader(String.format(REQUEST_FORMAT, i))) {
+                request = gson.fromJson(reader, RouteRequest.class);
+            }
+            routeSources[i] = graph.closest(request.startLat, request.startLon);
+            routeTargets[i] = graph.closest(request.endLat, request.endLon);
+        }
+    }
+
+    @Benchmark
+    public List<Long> unidirectional(Settled counter) {
+        int i = nextRoute();
+        return record(new CompactAStarSolver(graph, routeSources[i], routeTargets[i], 20), counter);
+    }
+
+    @Benchmark
+    public List<Long> bidirectional(Settled counter) {
+        int i = nextRoute();
+        return record(new BidirectionalAStarSolver(graph, routeSources[i], routeTargets[i], 20),
+                counter);
+    }
+
+    private static List<Long> record(ShortestPathsSolver<Long> solver, Settled counter) {
+        counter.settled += solver.numStatesExplored();
+        return solver.solution();
+    }
+
+    private int nextRoute() {
+        nextRoute = (nextRoute + 1) % NUM_ROUTES;
+        return nextRoute;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(BidirectionalAStarBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
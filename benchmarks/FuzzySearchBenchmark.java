@@ -0,0 +1,108 @@
+package huskymaps.benchmarks;
+
+import huskymaps.Autocomplete;
+import huskymaps.FuzzySearch;
+import huskymaps.StreetMapGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import static huskymaps.utils.Constants.OSM_DB_PATH;
+
+/**
+ * Measures {@link StreetMapGraph#getLocationsFuzzy} against a brute-force scan that compares
+ * every query word with every word of every location name, for misspelled search terms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FuzzySearchBenchmark {
+    private static final int K = 10;
+
+    @Param({"univeristy", "seatle center", "spcae neeedle", "pike plcae market"})
+    public String term;
+
+    private StreetMapGraph graph;
+    private Autocomplete autocomplete;
+    private String[][] nameWords;
+
+    @Setup
+    public void setUp() {
+        graph = new StreetMapGraph(OSM_DB_PATH);
+        autocomplete = graph.autocomplete();
+        nameWords = new String[autocomplete.size()][];
+        for (int i = 0; i < nameWords.length; i += 1) {
+            nameWords[i] = Autocomplete.clean(autocomplete.name(i)).split(" ");
+        }
+    }
+
+    @Benchmark
+    public List<String> bkTree() {
+        return graph.getLocationsFuzzy(term, K);
+    }
+
+    @Benchmark
+    public List<String> scan() {
+        String[] tokens = Autocomplete.clean(term).split(" ");
+        int[] typos = new int[nameWords.length];
+        PriorityQueue<Integer> best = new PriorityQueue<>((a, b) -> {
+            int cmp = Integer.compare(typos[b], typos[a]);
+            if (cmp == 0) {
+                cmp = Integer.compare(autocomplete.importance(a), autocomplete.importance(b));
+            }
+            return cmp != 0 ? cmp : autocomplete.name(b).compareTo(autocomplete.name(a));
+        });
+        for (int i = 0; i < nameWords.length; i += 1) {
+            boolean matches = true;
+            for (String token : tokens) {
+                int closest = Integer.MAX_VALUE;
+                for (String word : nameWords[i]) {
+                    closest = Math.min(closest, FuzzySearch.distance(token, word));
+                }
+                if (closest > FuzzySearch.maxDistance(token.length())) {
+                    matches = false;
+                    break;
+                }
+                typos[i] += closest;
+            }
+            if (matches) {
+                best.offer(i);
+                if (best.size() > K) {
+                    best.poll();
+                }
+            }
+        }
+        List<String> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(0, autocomplete.name(best.poll()));
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(FuzzySearchBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
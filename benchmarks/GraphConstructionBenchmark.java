@@ -0,0 +1,87 @@
+package huskymaps.benchmarks;
+
+import huskymaps.StreetMapGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import static huskymaps.utils.Constants.OSM_DB_PATH;
+
+/**
+ * Measures loading the street graph for seattle-small.osm.gz as the server does at startup,
+ * search indexes included: from its binary snapshot, and from the OSM file when there is no
+ * snapshot, which also writes one. The OSM file is copied to a temporary directory so that the
+ * snapshot next to the real one is left alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class GraphConstructionBenchmark {
+    /** The suffix GraphSnapshot gives the snapshot it keeps next to an OSM file. */
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    @Param({"true", "false"})
+    public boolean fromSnapshot;
+
+    private Path directory;
+    private String osmPath;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("huskymaps");
+        Path osm = directory.resolve(Paths.get(OSM_DB_PATH).getFileName());
+        Files.copy(Paths.get(OSM_DB_PATH), osm);
+        osmPath = osm.toString();
+        // Writes the snapshot
+        new StreetMapGraph(osmPath);
+    }
+
+    @Setup(Level.Invocation)
+    public void removeSnapshot() throws IOException {
+        if (!fromSnapshot) {
+            Files.deleteIfExists(Paths.get(osmPath + SNAPSHOT_SUFFIX));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Paths.get(osmPath + SNAPSHOT_SUFFIX));
+        Files.deleteIfExists(Paths.get(osmPath));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public StreetMapGraph load() {
+        return new StreetMapGraph(osmPath);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(GraphConstructionBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
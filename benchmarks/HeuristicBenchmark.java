@@ -0,0 +1,130 @@
+package huskymaps.benchmarks;
+
+import huskymaps.CompactAStarSolver;
+import huskymaps.Heuristic;
+import huskymaps.Landmarks;
+import huskymaps.StreetMapGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static huskymaps.utils.Constants.LANDMARKS_PATH;
+import static huskymaps.utils.Constants.NUM_LANDMARKS;
+import static huskymaps.utils.Constants.OSM_DB_PATH;
+import static huskymaps.utils.Spatial.greatCircleDistance;
+
+/**
+ * Measures the cost of one {@link StreetMapGraph#estimatedDistanceToGoal} call, as A* makes for
+ * every vertex it reaches, with each heuristic. <code>uncached</code> is the haversine from
+ * degrees that the great-circle heuristic computed before the graph precomputed radians and
+ * cosines. The routing benchmarks show what each heuristic costs and saves over whole searches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HeuristicBenchmark {
+    private static final int NUM_VERTICES = 1024;
+    private static final int NUM_ROUTES = 64;
+
+    @Param({"GREAT_CIRCLE", "EQUIRECTANGULAR", "LANDMARKS"})
+    public Heuristic heuristic;
+
+    private StreetMapGraph graph;
+    private int[] indices;
+    private double[] lats;
+    private double[] lons;
+    private int goal;
+    private long[] routeSources;
+    private long[] routeTargets;
+    private int nextRoute;
+
+    @Setup
+    public void setUp() {
+        graph = new StreetMapGraph(OSM_DB_PATH);
+        if (heuristic == Heuristic.LANDMARKS && !graph.loadLandmarks(LANDMARKS_PATH)) {
+            graph.setLandmarks(Landmarks.build(graph, NUM_LANDMARKS));
+        }
+        graph.setHeuristic(heuristic);
+        Random random = new Random(373);
+        indices = new int[NUM_VERTICES];
+        lats = new double[NUM_VERTICES];
+        lons = new double[NUM_VERTICES];
+        for (int i = 0; i < NUM_VERTICES; i += 1) {
+            indices[i] = randomNavigableVertex(random);
+            lats[i] = graph.lat(graph.id(indices[i]));
+            lons[i] = graph.lon(graph.id(indices[i]));
+        }
+        goal = randomNavigableVertex(random);
+        routeSources = new long[NUM_ROUTES];
+        routeTargets = new long[NUM_ROUTES];
+        for (int i = 0; i < NUM_ROUTES; i += 1) {
+            routeSources[i] = graph.id(randomNavigableVertex(random));
+            routeTargets[i] = graph.id(randomNavigableVertex(random));
+        }
+    }
+
+    private int randomNavigableVertex(Random random) {
+        int v;
+        do {
+            v = random.nextInt(graph.size());
+        } while (graph.neighbors(graph.id(v)).isEmpty());
+        return v;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VERTICES)
+    public double estimate() {
+        double total = 0;
+        for (int v : indices) {
+            total += graph.estimatedDistanceToGoal(v, goal);
+        }
+        return total;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VERTICES)
+    public double uncached() {
+        double goalLat = graph.lat(graph.id(goal));
+        double goalLon = graph.lon(graph.id(goal));
+        double total = 0;
+        for (int i = 0; i < NUM_VERTICES; i += 1) {
+            total += greatCircleDistance(lons[i], goalLon, lats[i], goalLat);
+        }
+        return total;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Long> shortestPath() {
+        nextRoute = (nextRoute + 1) % NUM_ROUTES;
+        return new CompactAStarSolver(graph, routeSources[nextRoute], routeTargets[nextRoute], 20)
+                .solution();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(HeuristicBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,133 @@
+package huskymaps.benchmarks;
+
+import astar.AStarSolver;
+import astar.WeightedEdge;
+import huskymaps.CompactAStarSolver;
+import huskymaps.EdgeConsumer;
+import huskymaps.StreetMapGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static huskymaps.utils.Constants.OSM_DB_PATH;
+
+/**
+ * Compares neighbor iteration through the boxed <code>AStarGraph&lt;Long&gt;</code> adapter with
+ * the allocation-free {@link StreetMapGraph#forEachNeighbor}, both on its own and inside a full
+ * A* search. Run {@link #main} to get the GC profiler's <code>gc.alloc.rate.norm</code> (bytes
+ * allocated per operation) next to the timings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NeighborIterationBenchmark {
+    private static final int NUM_VERTICES = 1024;
+    private static final int NUM_ROUTES = 64;
+
+    private StreetMapGraph graph;
+    private long[] ids;
+    private int[] indices;
+    private long[] routeSources;
+    private long[] routeTargets;
+    private int nextRoute;
+    private final WeightSum sum = new WeightSum();
+
+    @Setup
+    public void setUp() {
+        graph = new StreetMapGraph(OSM_DB_PATH);
+        Random random = new Random(373);
+        ids = new long[NUM_VERTICES];
+        indices = new int[NUM_VERTICES];
+        for (int i = 0; i < NUM_VERTICES; i += 1) {
+            indices[i] = randomNavigableVertex(random);
+            ids[i] = graph.id(indices[i]);
+        }
+        routeSources = new long[NUM_ROUTES];
+        routeTargets = new long[NUM_ROUTES];
+        for (int i = 0; i < NUM_ROUTES; i += 1) {
+            routeSources[i] = graph.id(randomNavigableVertex(random));
+            routeTargets[i] = graph.id(randomNavigableVertex(random));
+        }
+    }
+
+    private int randomNavigableVertex(Random random) {
+        int v;
+        do {
+            v = random.nextInt(graph.size());
+        } while (graph.neighbors(graph.id(v)).isEmpty());
+        return v;
+    }
+
+    @Benchmark
+    public double neighborsList() {
+        double total = 0;
+        for (long id : ids) {
+            for (WeightedEdge<Long> edge : graph.neighbors(id)) {
+                total += edge.weight();
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double forEachNeighbor() {
+        sum.total = 0;
+        for (int v : indices) {
+            graph.forEachNeighbor(v, sum);
+        }
+        return sum.total;
+    }
+
+    @Benchmark
+    public List<Long> shortestPathAStarSolver() {
+        int i = nextRoute();
+        return new AStarSolver<>(graph, routeSources[i], routeTargets[i], 20).solution();
+    }
+
+    @Benchmark
+    public List<Long> shortestPathCompactAStarSolver() {
+        int i = nextRoute();
+        return new CompactAStarSolver(graph, routeSources[i], routeTargets[i], 20).solution();
+    }
+
+    private int nextRoute() {
+        nextRoute = (nextRoute + 1) % NUM_ROUTES;
+        return nextRoute;
+    }
+
+    private static class WeightSum implements EdgeConsumer {
+        double total;
+
+        @Override
+        public void accept(int to, double weight) {
+            total += weight;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(NeighborIterationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,74 @@
+package huskymaps.benchmarks;
+
+import huskymaps.OSMIngestion;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import static huskymaps.utils.Constants.OSM_DB_PATH;
+
+/**
+ * Measures how fast {@link OSMIngestion} turns an OSM file into a frozen graph with different
+ * numbers of parsing workers. Besides whole files per second, JMH reports the
+ * <code>nodes</code> and <code>ways</code> counters as elements read per second. The file
+ * defaults to {@link huskymaps.utils.Constants#OSM_DB_PATH}; pass <code>-p file=...</code> to
+ * read another one, such as the full seattle.osm.gz or a .osm.pbf extract.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class OSMIngestionBenchmark {
+    @Param({OSM_DB_PATH})
+    public String file;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    /** Elements read, which JMH divides by the measurement time. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Elements {
+        public long nodes;
+        public long ways;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+            ways = 0;
+        }
+    }
+
+    @Benchmark
+    public OSMIngestion.Result ingest(Elements elements) {
+        OSMIngestion.Result result = OSMIngestion.read(file, threads);
+        elements.nodes += result.nodes;
+        elements.ways += result.ways;
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(OSMIngestionBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,136 @@
+package huskymaps.benchmarks;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import huskymaps.StreetMapGraph;
+import huskymaps.params.RasterRequest;
+import huskymaps.params.RasterResult;
+import huskymaps.params.RenderedRasterResult;
+import huskymaps.params.RouteRequest;
+import huskymaps.server.handler.impl.RasterAPIHandler;
+import huskymaps.server.logic.Rasterer;
+import huskymaps.server.logic.RoutePolyline;
+import huskymaps.server.logic.RouteStore;
+import huskymaps.server.logic.Router;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static huskymaps.utils.Constants.LAT_PER_TILE;
+import static huskymaps.utils.Constants.LON_PER_TILE;
+import static huskymaps.utils.Constants.OSM_DB_PATH;
+import static huskymaps.utils.Constants.ROOT_LAT;
+import static huskymaps.utils.Constants.ROOT_LAT_DIFF;
+import static huskymaps.utils.Constants.ROOT_LON;
+import static huskymaps.utils.Constants.ROOT_LON_DIFF;
+import static huskymaps.utils.Constants.ROOT_LRLAT;
+import static huskymaps.utils.Constants.ROOT_LRLON;
+import static huskymaps.utils.Constants.ROOT_ULLAT;
+import static huskymaps.utils.Constants.ROOT_ULLON;
+import static huskymaps.utils.Constants.ROUTES;
+
+/**
+ * Measures the map view at each depth, for a browser window of VIEW_X_TILES by VIEW_Y_TILES
+ * tiles over the middle of the map: {@link Rasterer#rasterizeMap} choosing the tiles, and the
+ * full {@link RasterAPIHandler} request that draws them and a route across the map into one
+ * PNG, both freshly and from the cache of rendered images.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RasterBenchmark {
+    private static final int VIEW_X_TILES = 5;
+    private static final int VIEW_Y_TILES = 3;
+
+    @Param({"0", "1", "2", "3", "4", "5", "6", "7"})
+    public int depth;
+
+    private final Handler handler = new Handler();
+    private RasterRequest request;
+    private RouteStore.Route route;
+
+    /** Exposes the request processing of the handler, without a Spark request around it. */
+    private static class Handler extends RasterAPIHandler {
+        RenderedRasterResult render(RasterRequest request) {
+            return processRequest(request, null);
+        }
+    }
+
+    /** Empties the cache of rendered images before every call, so that each one renders. */
+    @State(Scope.Thread)
+    public static class Uncached {
+        @Setup(Level.Invocation)
+        public void discard(RasterBenchmark benchmark) {
+            RasterAPIHandler.RENDERED.discard(benchmark.route.version);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        StreetMapGraph graph = new StreetMapGraph(OSM_DB_PATH);
+        List<Long> nodes = Router.shortestPath(graph, RouteRequest.from(Map.of(
+                "start_lat", ROOT_LAT + ROOT_LAT_DIFF / 4, "start_lon", ROOT_LON - ROOT_LON_DIFF / 4,
+                "end_lat", ROOT_LAT - ROOT_LAT_DIFF / 4, "end_lon", ROOT_LON + ROOT_LON_DIFF / 4)));
+        String token = ROUTES.newToken();
+        ROUTES.put(token, nodes, RoutePolyline.of(graph, nodes));
+        route = ROUTES.get(token);
+
+        // Keep the view a hair inside the map, so that its edges do not round onto a further tile
+        double inset = 1e-6;
+        double halfWidth = VIEW_X_TILES * LON_PER_TILE[depth] / 2;
+        double halfHeight = VIEW_Y_TILES * LAT_PER_TILE[depth] / 2;
+        Gson gson = new GsonBuilder()
+                .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+                .create();
+        request = gson.fromJson(gson.toJsonTree(Map.of(
+                "ullat", Math.min(ROOT_ULLAT - inset, ROOT_LAT + halfHeight),
+                "ullon", Math.max(ROOT_ULLON + inset, ROOT_LON - halfWidth),
+                "lrlat", Math.max(ROOT_LRLAT + inset, ROOT_LAT - halfHeight),
+                "lrlon", Math.min(ROOT_LRLON - inset, ROOT_LON + halfWidth),
+                "depth", depth,
+                "route_token", token)), RasterRequest.class);
+    }
+
+    @Benchmark
+    public RasterResult rasterizeMap() {
+        return Rasterer.rasterizeMap(request);
+    }
+
+    @Benchmark
+    public RenderedRasterResult render(Uncached uncached) {
+        return handler.render(request);
+    }
+
+    @Benchmark
+    public RenderedRasterResult renderCached() {
+        return handler.render(request);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RasterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,96 @@
+package huskymaps.benchmarks;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import huskymaps.ContractionHierarchy;
+import huskymaps.StreetMapGraph;
+import huskymaps.params.RouteRequest;
+import huskymaps.server.logic.Router;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static huskymaps.utils.Constants.BASE_DIR_PATH;
+
+/**
+ * Measures {@link Router#shortestPath} on the <code>tests/router</code> requests, over the large
+ * map that {@link huskymaps.tests.TestRouter} uses, with each routing algorithm and with route
+ * endpoints snapped to the closest intersection or to the closest point on a street. Every
+ * operation routes the next request in turn, snapping included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoutingBenchmark {
+    private static final String REQUEST_FORMAT = BASE_DIR_PATH + "tests/router/request%d.json";
+    private static final String LARGE_OSM_DB_PATH = BASE_DIR_PATH + "seattle.osm.gz";
+    private static final String LARGE_CH_PATH = BASE_DIR_PATH + "seattle.ch";
+    private static final int NUM_ROUTES = 10;
+
+    @Param({"CONTRACTION_HIERARCHY", "ASTAR", "BIDIRECTIONAL_ASTAR"})
+    public Router.Algorithm algorithm;
+
+    @Param({"false", "true"})
+    public boolean snapToStreets;
+
+    private StreetMapGraph graph;
+    private RouteRequest[] requests;
+    private int nextRoute;
+
+    @Setup
+    public void setUp() throws IOException {
+        graph = new StreetMapGraph(LARGE_OSM_DB_PATH);
+        // The saved hierarchy is for the small map, so one is built here unless saved for this one
+        if (algorithm == Router.Algorithm.CONTRACTION_HIERARCHY
+                && !graph.loadContractionHierarchy(LARGE_CH_PATH)) {
+            graph.setContractionHierarchy(ContractionHierarchy.build(graph));
+        }
+        if (snapToStreets) {
+            graph.buildSegmentIndex();
+        }
+        Gson gson = new GsonBuilder()
+                .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+                .create();
+        requests = new RouteRequest[NUM_ROUTES];
+        for (int i = 0; i < NUM_ROUTES; i += 1) {
+            try (Reader reader = new FileReader(String.format(REQUEST_FORMAT, i))) {
+                requests[i] = gson.fromJson(reader, RouteRequest.class);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Long> shortestPath() {
+        nextRoute = (nextRoute + 1) % NUM_ROUTES;
+        return Router.shortestPath(graph, requests[nextRoute], algorithm);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RoutingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,70 @@
+package huskymaps.benchmarks;
+
+import huskymaps.StreetMapGraph;
+import huskymaps.params.SearchRequest;
+import huskymaps.server.handler.impl.SearchAPIHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import static huskymaps.utils.Constants.AUTOCOMPLETE_MAX_RESULTS;
+import static huskymaps.utils.Constants.OSM_DB_PATH;
+import static huskymaps.utils.Constants.SEMANTIC_STREET_GRAPH;
+
+/**
+ * Measures <code>/search</code> prefix queries as the search box sends them while a name is
+ * typed: the {@link SearchAPIHandler} lookup followed by the JSON response, without the HTTP
+ * round trip. {@link AutocompleteBenchmark} compares the lookup alone with a scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    @Param({"s", "se", "sea", "univ", "pike pl", "space needle"})
+    public String term;
+
+    private final Handler handler = new Handler();
+    private SearchRequest request;
+
+    /** Exposes the request processing of the handler, without a Spark request around it. */
+    private static class Handler extends SearchAPIHandler {
+        Object search(SearchRequest request) {
+            return buildJsonResponse(processRequest(request, null));
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        SEMANTIC_STREET_GRAPH = new StreetMapGraph(OSM_DB_PATH);
+        request = new SearchRequest(term, false, AUTOCOMPLETE_MAX_RESULTS, false);
+    }
+
+    @Benchmark
+    public Object prefix() {
+        return handler.search(request);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SearchBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,84 @@
+package huskymaps.benchmarks;
+
+import huskymaps.EdgeSnap;
+import huskymaps.StreetMapGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static huskymaps.utils.Constants.OSM_DB_PATH;
+import static huskymaps.utils.Constants.ROOT_LAT_DIFF;
+import static huskymaps.utils.Constants.ROOT_LON_DIFF;
+import static huskymaps.utils.Constants.ROOT_LRLAT;
+import static huskymaps.utils.Constants.ROOT_ULLON;
+
+/**
+ * Measures snapping a location on the map to the graph: {@link StreetMapGraph#closest}, which
+ * finds the closest intersection for route endpoints, and {@link StreetMapGraph#closestEdge},
+ * which finds the closest point on a street. The locations are spread uniformly over the map.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnappingBenchmark {
+    private static final int NUM_LOCATIONS = 1024;
+
+    private StreetMapGraph graph;
+    private double[] lats;
+    private double[] lons;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        graph = new StreetMapGraph(OSM_DB_PATH);
+        graph.buildSegmentIndex();
+        Random random = new Random(373);
+        lats = new double[NUM_LOCATIONS];
+        lons = new double[NUM_LOCATIONS];
+        for (int i = 0; i < NUM_LOCATIONS; i += 1) {
+            lats[i] = ROOT_LRLAT + random.nextDouble() * ROOT_LAT_DIFF;
+            lons[i] = ROOT_ULLON + random.nextDouble() * ROOT_LON_DIFF;
+        }
+    }
+
+    @Benchmark
+    public long closest() {
+        int i = nextLocation();
+        return graph.closest(lats[i], lons[i]);
+    }
+
+    @Benchmark
+    public EdgeSnap closestEdge() {
+        int i = nextLocation();
+        return graph.closestEdge(lats[i], lons[i]);
+    }
+
+    private int nextLocation() {
+        next = (next + 1) % NUM_LOCATIONS;
+        return next;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SnappingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,66 @@
+package huskymaps.params;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import spark.Request;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static huskymaps.utils.Constants.BAD_REQUEST;
+import static huskymaps.utils.Constants.HALT_RESPONSE;
+import static huskymaps.utils.Constants.ROUTE_BATCH_MAX_REQUESTS;
+import static spark.Spark.halt;
+
+/** Represents many shortest-route requests sent together in the body of one POST request. */
+public final class BatchRouteRequest {
+    private static final Gson GSON = new Gson();
+
+    /** The requested routes, in the order of the request body. */
+    public final List<RouteRequest> routes;
+
+    /**
+     * Returns a BatchRouteRequest for a body holding a JSON array of route requests, each an
+     * object with the start_lat, start_lon, end_lat and end_lon parameters of /route.
+     * @param request Spark Request
+     * @return A populated BatchRouteRequest of at most ROUTE_BATCH_MAX_REQUESTS routes
+     */
+    public static BatchRouteRequest from(Request request) {
+        List<Map<String, Double>> params = null;
+        try {
+            params = GSON.fromJson(request.body(),
+                    new TypeToken<List<Map<String, Double>>>() { }.getType());
+        } catch (JsonParseException e) {
+            e.printStackTrace();
+            halt(HALT_RESPONSE, "Request failed: unable to parse JSON.");
+        }
+        if (params == null) {
+            halt(HALT_RESPONSE, "Request failed: parameter not found.");
+        }
+        if (params.size() > ROUTE_BATCH_MAX_REQUESTS) {
+            halt(BAD_REQUEST, "Request failed: at most " + ROUTE_BATCH_MAX_REQUESTS
+                    + " routes per batch.");
+        }
+        List<RouteRequest> routes = new ArrayList<>(params.size());
+        for (Map<String, Double> route : params) {
+            if (route == null) {
+                halt(HALT_RESPONSE, "Request failed: parameter not found.");
+            }
+            routes.add(RouteRequest.from(route));
+        }
+        return new BatchRouteRequest(routes);
+    }
+
+    public BatchRouteRequest(List<RouteRequest> routes) {
+        this.routes = routes;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchRouteRequest{" +
+                "routes=" + routes +
+                '}';
+    }
+}
@@ -0,0 +1,42 @@
+package huskymaps.params;
+
+import java.util.List;
+import java.util.Objects;
+
+/** The computed routes in response to a batch of route requests. */
+public class BatchRouteResult {
+
+    /**
+     * The node ids along the shortest path of each requested route, in request order, or an
+     * empty list for a route that could not be found.
+     */
+    public final List<List<Long>> routes;
+
+    public BatchRouteResult(List<List<Long>> routes) {
+        this.routes = routes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        BatchRouteResult that = (BatchRouteResult) o;
+        return Objects.equals(routes, that.routes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(routes);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchRouteResult{" +
+                "routes=" + routes +
+                '}';
+    }
+}
@@ -0,0 +1,72 @@
+package huskymaps.params;
+
+import spark.Request;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static huskymaps.utils.Constants.BAD_REQUEST;
+import static huskymaps.utils.Constants.HALT_RESPONSE;
+import static huskymaps.utils.Constants.MATRIX_MAX_LOCATIONS;
+import static spark.Spark.halt;
+
+/** Represents a request for the distances between many locations received from the browser. */
+public final class MatrixRequest {
+    /** The locations to measure from and to, without names. */
+    public final List<Location> sources;
+    public final List<Location> targets;
+
+    /**
+     * Returns a MatrixRequest for the sources and targets parameters of the request, each a
+     * semicolon-separated list of lat,lon pairs such as <code>47.65,-122.31;47.61,-122.34</code>.
+     * @param request Spark Request
+     * @return A populated MatrixRequest
+     */
+    public static MatrixRequest from(Request request) {
+        try {
+            return new MatrixRequest(
+                    parseLocations(request.queryParams("sources")),
+                    parseLocations(request.queryParams("targets"))
+                    );
+        } catch (NullPointerException e) {
+            halt(HALT_RESPONSE, "Request failed: parameter not found.");
+        } catch (NumberFormatException e) {
+            e.printStackTrace();
+            halt(HALT_RESPONSE, "Request failed: unable to parse double.");
+        }
+        return null;
+    }
+
+    private static List<Location> parseLocations(String param) {
+        List<Location> locations = new ArrayList<>();
+        for (String pair : param.split(";")) {
+            if (pair.isBlank()) {
+                continue;
+            }
+            String[] latLon = pair.split(",");
+            if (latLon.length != 2) {
+                halt(BAD_REQUEST, "Request failed: expected lat,lon but got " + pair + ".");
+            }
+            locations.add(new Location(Double.parseDouble(latLon[0].strip()),
+                    Double.parseDouble(latLon[1].strip()), null));
+        }
+        if (locations.isEmpty() || locations.size() > MATRIX_MAX_LOCATIONS) {
+            halt(BAD_REQUEST, "Request failed: expected 1 to " + MATRIX_MAX_LOCATIONS
+                    + " locations.");
+        }
+        return locations;
+    }
+
+    public MatrixRequest(List<Location> sources, List<Location> targets) {
+        this.sources = sources;
+        this.targets = targets;
+    }
+
+    @Override
+    public String toString() {
+        return "MatrixRequest{" +
+                "sources=" + sources +
+                ", targets=" + targets +
+                '}';
+    }
+}
@@ -9,6 +9,7 @@ import java.util.Objects;
 import static huskymaps.utils.Constants.DECIMAL_PLACES;
 import static huskymaps.utils.Constants.EPSILON;
 import static huskymaps.utils.Constants.HALT_RESPONSE;
+import static huskymaps.utils.Constants.ROUTE_TOKEN_COOKIE;
 import static spark.Spark.halt;
 
 /** Represents a rastering request received from the browser. */
@@ -21,6 +22,16 @@ public final class RasterRequest {
     public final double lrlon;
     /** The browser's requested depth. */
     public final int depth;
+    /**
+     * True if the browser fetches the tiles itself from <code>/tiles</code> and only needs the
+     * grid and its bounds instead of a composite image.
+     */
+    public final boolean tilesOnly;
+    /**
+     * The token of the client's route cookie, or null for requests made outside the server.
+     * It identifies the client rather than the viewport, so it is not part of equality.
+     */
+    public final String routeToken;
 
     /**
      * Return a RasterRequest with the required parameters.
@@ -34,7 +45,9 @@ public final class RasterRequest {
                     (double) request.get("ullon"),
                     (double) request.get("lrlat"),
                     (double) request.get("lrlon"),
-                    (int) request.get("depth")
+                    (int) request.get("depth"),
+                    Boolean.TRUE.equals(request.get("tiles_only")),
+                    null
                     );
         } catch (NullPointerException e) {
             halt(HALT_RESPONSE, "Request failed: parameter not found.");
@@ -54,7 +67,9 @@ public final class RasterRequest {
                         Double.parseDouble(request.queryParams("ullon")),
                         Double.parseDouble(request.queryParams("lrlat")),
                         Double.parseDouble(request.queryParams("lrlon")),
-                        Integer.parseInt(request.queryParams("depth"))
+                        Integer.parseInt(request.queryParams("depth")),
+                        Boolean.parseBoolean(request.queryParams("tiles_only")),
+                        request.attribute(ROUTE_TOKEN_COOKIE)
                         );
         } catch (NullPointerException e) {
             halt(HALT_RESPONSE, "Request failed: parameter not found.");
@@ -66,12 +81,15 @@ public final class RasterRequest {
     }
 
     /** Use the from factory method to avoid misplacing parameters. */
-    private RasterRequest(double ullat, double ullon, double lrlat, double lrlon, int depth) {
+    private RasterRequest(double ullat, double ullon, double lrlat, double lrlon, int depth,
+                          boolean tilesOnly, String routeToken) {
         this.ullat = ullat;
         this.ullon = ullon;
         this.lrlat = lrlat;
         this.lrlon = lrlon;
         this.depth = depth;
+        this.tilesOnly = tilesOnly;
+        this.routeToken = routeToken;
     }
 
     @Override
@@ -87,7 +105,8 @@ public final class RasterRequest {
                 Precision.equals(that.ullon, ullon, EPSILON) &&
                 Precision.equals(that.lrlat, lrlat, EPSILON) &&
                 Precision.equals(that.lrlon, lrlon, EPSILON) &&
-                depth == that.depth;
+                depth == that.depth &&
+                tilesOnly == that.tilesOnly;
     }
 
     @Override
@@ -97,7 +116,8 @@ public final class RasterRequest {
                 Precision.round(ullon, DECIMAL_PLACES),
                 Precision.round(lrlat, DECIMAL_PLACES),
                 Precision.round(lrlon, DECIMAL_PLACES),
-                depth
+                depth,
+                tilesOnly
         );
     }
 
@@ -109,6 +129,7 @@ public final class RasterRequest {
                 ", lrlat=" + lrlat +
                 ", lrlon=" + lrlon +
                 ", depth=" + depth +
+                ", tilesOnly=" + tilesOnly +
                 '}';
     }
 }
@@ -1,7 +1,9 @@
 package huskymaps.params;
 
+import huskymaps.server.logic.Rasterer;
 import org.apache.commons.math3.util.Precision;
 
+import java.util.Arrays;
 import java.util.Objects;
 
 import static huskymaps.utils.Constants.DECIMAL_PLACES;
@@ -10,8 +12,13 @@ import static huskymaps.utils.Constants.EPSILON;
 /** The computed and fully-rendered rastering result in response to a browser request. */
 public class RenderedRasterResult {
 
-    /** The base-64 encoded string of the image. */
+    /** The base-64 encoded string of the image, or null if only the tiles were requested. */
     public final String image;
+    /**
+     * The grid of tiles covering the result, for browsers that fetch each tile from
+     * <code>/tiles/{depth}/{x}/{y}</code>, or null if a composite image was rendered.
+     */
+    public final Rasterer.Tile[][] tiles;
     /** The bounding upper-left, lower-right latitudes and longitudes of the final image. */
     public final double ullat;
     public final double ullon;
@@ -22,7 +29,13 @@ public class RenderedRasterResult {
 
     /** Construct a new RenderedRasterResult with the given parameters. */
     public RenderedRasterResult(RasterResult result, String image) {
+        this(result, image, null);
+    }
+
+    /** Construct a new RenderedRasterResult with the given parameters. */
+    public RenderedRasterResult(RasterResult result, String image, Rasterer.Tile[][] tiles) {
         this.image = image;
+        this.tiles = tiles;
         this.ullat = result.ullat;
         this.ullon = result.ullon;
         this.lrlat = result.lrlat;
@@ -49,7 +62,8 @@ public class RenderedRasterResult {
                 Precision.equals(that.lrlat, lrlat, EPSILON) &&
                 Precision.equals(that.lrlon, lrlon, EPSILON) &&
                 success == that.success &&
-                Objects.equals(image, that.image);
+                Objects.equals(image, that.image) &&
+                Arrays.deepEquals(tiles, that.tiles);
     }
 
     @Override
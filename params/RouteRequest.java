@@ -9,6 +9,7 @@ import java.util.Objects;
 import static huskymaps.utils.Constants.DECIMAL_PLACES;
 import static huskymaps.utils.Constants.EPSILON;
 import static huskymaps.utils.Constants.HALT_RESPONSE;
+import static huskymaps.utils.Constants.ROUTE_TOKEN_COOKIE;
 import static spark.Spark.halt;
 
 /** Represents a shortest-route request received from the browser. */
@@ -19,6 +20,11 @@ public final class RouteRequest {
     public final double startLon;
     public final double endLat;
     public final double endLon;
+    /**
+     * The token of the client's route cookie, or null for requests made outside the server.
+     * It identifies the client rather than the route, so it is not part of equality.
+     */
+    public final String routeToken;
 
     /**
      * Return a RouteRequest with the required parameters.
@@ -31,7 +37,8 @@ public final class RouteRequest {
                     request.get("start_lat"),
                     request.get("start_lon"),
                     request.get("end_lat"),
-                    request.get("end_lon")
+                    request.get("end_lon"),
+                    null
                     );
         } catch (NullPointerException e) {
             halt(HALT_RESPONSE, "Request failed: parameter not found.");
@@ -50,7 +57,8 @@ public final class RouteRequest {
                         Double.parseDouble(request.queryParams("start_lat")),
                         Double.parseDouble(request.queryParams("start_lon")),
                         Double.parseDouble(request.queryParams("end_lat")),
-                        Double.parseDouble(request.queryParams("end_lon"))
+                        Double.parseDouble(request.queryParams("end_lon")),
+                        request.attribute(ROUTE_TOKEN_COOKIE)
                         );
         } catch (NullPointerException e) {
             halt(HALT_RESPONSE, "Request failed: parameter not found.");
@@ -61,11 +69,13 @@ public final class RouteRequest {
         return null;
     }
 
-    private RouteRequest(double startLat, double startLon, double endLat, double endLon) {
+    private RouteRequest(double startLat, double startLon, double endLat, double endLon,
+                         String routeToken) {
         this.startLat = startLat;
         this.startLon = startLon;
         this.endLat = endLat;
         this.endLon = endLon;
+        this.routeToken = routeToken;
     }
 
     @Override
@@ -1,7 +1,14 @@
 package huskymaps.params;
 
+import spark.Request;
+
 import java.util.Objects;
 
+import static huskymaps.utils.Constants.AUTOCOMPLETE_MAX_RESULTS;
+import static huskymaps.utils.Constants.AUTOCOMPLETE_RESULT_LIMIT;
+import static huskymaps.utils.Constants.HALT_RESPONSE;
+import static spark.Spark.halt;
+
 /** Represents a search request received from the browser. */
 public class SearchRequest {
 
@@ -9,10 +16,41 @@ public class SearchRequest {
     public final String term;
     /** Whether this search requires locations or just a list of matches. */
     public final boolean full;
+    /** The most names to return for a prefix or fuzzy search. */
+    public final int k;
+    /** Whether the term may contain typos, rather than being a prefix of the names. */
+    public final boolean fuzzy;
 
     public SearchRequest(String term, boolean full) {
+        this(term, full, AUTOCOMPLETE_MAX_RESULTS, false);
+    }
+
+    public SearchRequest(String term, boolean full, int k, boolean fuzzy) {
         this.term = term;
         this.full = full;
+        this.k = k;
+        this.fuzzy = fuzzy;
+    }
+
+    /**
+     * Returns a SearchRequest for the term, full, fuzzy and optional k query parameters. A k outside
+     * [1, AUTOCOMPLETE_RESULT_LIMIT] is clamped to that range.
+     * @param request Spark Request
+     * @return A populated SearchRequest
+     */
+    public static SearchRequest from(Request request) {
+        int k = AUTOCOMPLETE_MAX_RESULTS;
+        String limit = request.queryParams("k");
+        if (limit != null) {
+            try {
+                k = Math.max(1, Math.min(AUTOCOMPLETE_RESULT_LIMIT, Integer.parseInt(limit)));
+            } catch (NumberFormatException e) {
+                e.printStackTrace();
+                halt(HALT_RESPONSE, "Request failed: unable to parse value.");
+            }
+        }
+        return new SearchRequest(request.queryParams("term"), request.queryParams("full") != null, k,
+                Boolean.parseBoolean(request.queryParams("fuzzy")));
     }
 
     @Override
@@ -25,12 +63,14 @@ public class SearchRequest {
         }
         SearchRequest that = (SearchRequest) o;
         return full == that.full &&
+                k == that.k &&
+                fuzzy == that.fuzzy &&
                 Objects.equals(term, that.term);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(term, full);
+        return Objects.hash(term, full, k, fuzzy);
     }
 
     @Override
@@ -38,6 +78,8 @@ public class SearchRequest {
         return "SearchRequest{" +
                 "term='" + term + '\'' +
                 ", full=" + full +
+                ", k=" + k +
+                ", fuzzy=" + fuzzy +
                 '}';
     }
 }
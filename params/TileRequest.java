@@ -0,0 +1,71 @@
+package huskymaps.params;
+
+import huskymaps.server.logic.Rasterer;
+import spark.Request;
+
+import static huskymaps.utils.Constants.HALT_RESPONSE;
+import static huskymaps.utils.Constants.NOT_FOUND;
+import static huskymaps.utils.Constants.NUM_X_TILES_AT_DEPTH;
+import static huskymaps.utils.Constants.NUM_Y_TILES_AT_DEPTH;
+import static spark.Spark.halt;
+
+/** Represents a request for a single map tile received from the browser. */
+public final class TileRequest {
+    /** The requested tile. */
+    public final Rasterer.Tile tile;
+    /** The browser's If-None-Match header, or null if it has no cached copy. */
+    public final String ifNoneMatch;
+
+    /**
+     * Returns a TileRequest for the depth, x and y path parameters of the request.
+     * @param request Spark Request
+     * @return A TileRequest for a tile inside the map
+     */
+    public static TileRequest from(Request request) {
+        try {
+            int depth = Integer.parseInt(request.params("depth"));
+            int x = Integer.parseInt(request.params("x"));
+            int y = Integer.parseInt(request.params("y"));
+            if (depth < 0 || depth >= NUM_X_TILES_AT_DEPTH.length
+                    || x < 0 || x >= NUM_X_TILES_AT_DEPTH[depth]
+                    || y < 0 || y >= NUM_Y_TILES_AT_DEPTH[depth]) {
+                halt(NOT_FOUND, "Tile not found.");
+            }
+            return new TileRequest(new Rasterer.Tile(depth, x, y), request.headers("If-None-Match"));
+        } catch (NumberFormatException e) {
+            e.printStackTrace();
+            halt(HALT_RESPONSE, "Request failed: unable to parse value.");
+        }
+        return null;
+    }
+
+    private TileRequest(Rasterer.Tile tile, String ifNoneMatch) {
+        this.tile = tile;
+        this.ifNoneMatch = ifNoneMatch;
+    }
+
+    /** Returns true if the browser's cached copy has the entity tag ETAG. */
+    public boolean matches(String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.strip();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "TileRequest{" +
+                "tile=" + tile +
+                ", ifNoneMatch=" + ifNoneMatch +
+                '}';
+    }
+}
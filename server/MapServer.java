@@ -1,39 +1,73 @@
 package huskymaps.server;
 
+import huskymaps.Heuristic;
 import huskymaps.StreetMapGraph;
 import huskymaps.server.handler.APIRouteHandler;
+import huskymaps.server.handler.impl.BatchRoutingAPIHandler;
 import huskymaps.server.handler.impl.ClearRouteAPIHandler;
+import huskymaps.server.handler.impl.MatrixAPIHandler;
 import huskymaps.server.handler.impl.RasterAPIHandler;
 import huskymaps.server.handler.impl.RedirectAPIHandler;
 import huskymaps.server.handler.impl.RoutingAPIHandler;
 import huskymaps.server.handler.impl.SearchAPIHandler;
+import huskymaps.server.handler.impl.TileAPIHandler;
+import huskymaps.server.logic.RouteStore;
 
+import java.util.List;
 import java.util.Map;
 
+import static huskymaps.utils.Constants.CH_PATH;
 import static huskymaps.utils.Constants.HEROKU_DEPLOYMENT;
+import static huskymaps.utils.Constants.LANDMARKS_PATH;
 import static huskymaps.utils.Constants.OSM_DB_PATH;
 import static huskymaps.utils.Constants.PORT;
+import static huskymaps.utils.Constants.ROUTES;
+import static huskymaps.utils.Constants.ROUTE_TOKEN_COOKIE;
 import static huskymaps.utils.Constants.SEMANTIC_STREET_GRAPH;
+import static huskymaps.utils.Constants.SERVER_IDLE_TIMEOUT_MILLIS;
+import static huskymaps.utils.Constants.SERVER_MAX_THREADS;
+import static huskymaps.utils.Constants.SERVER_MIN_THREADS;
+import static huskymaps.utils.Constants.SNAP_ROUTES_TO_STREETS;
 import static spark.Spark.before;
 import static spark.Spark.get;
 import static spark.Spark.port;
+import static spark.Spark.post;
 import static spark.Spark.staticFileLocation;
+import static spark.Spark.threadPool;
 
 public class MapServer {
 
     private static final Map<String, APIRouteHandler> HANDLERS = Map.of(
             "/raster", new RasterAPIHandler(),
+            "/tiles/:depth/:x/:y", new TileAPIHandler(),
             "/route", new RoutingAPIHandler(),
             "/clear_route", new ClearRouteAPIHandler(),
+            "/matrix", new MatrixAPIHandler(),
             "/search", new SearchAPIHandler(),
             "/", new RedirectAPIHandler()
             );
 
+    /** Handlers whose requests carry their parameters in the body. */
+    private static final Map<String, APIRouteHandler> POST_HANDLERS = Map.of(
+            "/route/batch", new BatchRoutingAPIHandler()
+            );
+
+    /** Paths whose handlers read or change the client's route, and so need its route cookie. */
+    private static final List<String> ROUTE_TOKEN_PATHS = List.of("/route", "/raster", "/clear_route");
+
     /** Entry point for the MapServer. Everything starts here. */
     public static void main(String[] args) {
         port(getPort());
+        threadPool(SERVER_MAX_THREADS, SERVER_MIN_THREADS, SERVER_IDLE_TIMEOUT_MILLIS);
 
         SEMANTIC_STREET_GRAPH = new StreetMapGraph(OSM_DB_PATH);
+        SEMANTIC_STREET_GRAPH.loadContractionHierarchy(CH_PATH);
+        if (SNAP_ROUTES_TO_STREETS) {
+            SEMANTIC_STREET_GRAPH.buildSegmentIndex();
+        }
+        if (SEMANTIC_STREET_GRAPH.loadLandmarks(LANDMARKS_PATH)) {
+            SEMANTIC_STREET_GRAPH.setHeuristic(Heuristic.LANDMARKS);
+        }
         staticFileLocation("/static/page");
         /* Allow for all origin requests (since this is not an authenticated server, we do not
          * care about CSRF).  */
@@ -42,10 +76,26 @@ public class MapServer {
             response.header("Access-Control-Request-Method", "*");
             response.header("Access-Control-Allow-Headers", "*");
         });
+        /* Give every browser its own route, identified by a random token in a cookie. Only the
+         * handlers that read or change the route get the cookie, so cacheable responses such as
+         * tiles never carry a Set-Cookie header that a shared cache could hand to others. */
+        for (String path : ROUTE_TOKEN_PATHS) {
+            before(path, (request, response) -> {
+                String token = request.cookie(ROUTE_TOKEN_COOKIE);
+                if (!RouteStore.isValidToken(token)) {
+                    token = ROUTES.newToken();
+                    response.cookie("/", ROUTE_TOKEN_COOKIE, token, -1, false, true);
+                }
+                request.attribute(ROUTE_TOKEN_COOKIE, token);
+            });
+        }
 
         for (Map.Entry<String, APIRouteHandler> apiRoute : HANDLERS.entrySet()) {
             get(apiRoute.getKey(), apiRoute.getValue());
         }
+        for (Map.Entry<String, APIRouteHandler> apiRoute : POST_HANDLERS.entrySet()) {
+            post(apiRoute.getKey(), apiRoute.getValue());
+        }
     }
 
     private static int getPort() {
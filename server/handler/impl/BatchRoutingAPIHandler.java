@@ -0,0 +1,34 @@
+package huskymaps.server.handler.impl;
+
+import huskymaps.params.BatchRouteRequest;
+import huskymaps.params.BatchRouteResult;
+import huskymaps.server.handler.APIRouteHandler;
+import huskymaps.server.logic.Router;
+import spark.Request;
+import spark.Response;
+
+import static huskymaps.utils.Constants.SEMANTIC_STREET_GRAPH;
+
+/**
+ * Handles POST requests carrying many route requests at once, such as routes replayed from a
+ * log, and returns the node ids of every route in one response. Unlike /route, the routes are
+ * not drawn on the map and do not replace the client's current route.
+ */
+public class BatchRoutingAPIHandler extends APIRouteHandler<BatchRouteRequest, BatchRouteResult> {
+
+    @Override
+    protected BatchRouteRequest parseRequest(Request request) {
+        return BatchRouteRequest.from(request);
+    }
+
+    /**
+     * Finds the shortest path of every route in the batch.
+     * @param request BatchRouteRequest
+     * @param response Ignored.
+     * @return BatchRouteResult
+     */
+    @Override
+    protected BatchRouteResult processRequest(BatchRouteRequest request, Response response) {
+        return new BatchRouteResult(Router.shortestPaths(SEMANTIC_STREET_GRAPH, request.routes));
+    }
+}
@@ -4,19 +4,21 @@ import huskymaps.server.handler.APIRouteHandler;
 import spark.Request;
 import spark.Response;
 
-import static huskymaps.utils.Constants.ROUTE_LIST;
+import static huskymaps.utils.Constants.ROUTES;
+import static huskymaps.utils.Constants.ROUTE_TOKEN_COOKIE;
 
-/** Handles the "Clear Route" button in Bearmaps. */
-public class ClearRouteAPIHandler extends APIRouteHandler {
+/** Handles the "Clear Route" button in Bearmaps, clearing only the requesting client's route. */
+public class ClearRouteAPIHandler extends APIRouteHandler<String, Boolean> {
 
+    /** Returns the client's route token. */
     @Override
-    protected Object parseRequest(Request request) {
-        return null;
+    protected String parseRequest(Request request) {
+        return request.attribute(ROUTE_TOKEN_COOKIE);
     }
 
     @Override
-    protected Object processRequest(Object request, Response response) {
-        ROUTE_LIST.clear();
+    protected Boolean processRequest(String routeToken, Response response) {
+        RasterAPIHandler.routeChanged(ROUTES.clear(routeToken));
         return true;
     }
 }
@@ -0,0 +1,94 @@
+package huskymaps.server.handler.impl;
+
+import huskymaps.params.MatrixRequest;
+import huskymaps.server.handler.APIRouteHandler;
+import huskymaps.server.logic.Router;
+import spark.Request;
+import spark.Response;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+
+import static huskymaps.utils.Constants.HALT_RESPONSE;
+import static huskymaps.utils.Constants.SEMANTIC_STREET_GRAPH;
+import static spark.Spark.halt;
+
+/**
+ * Handles requests from the web browser for the distances between many locations at
+ * <code>/matrix?sources=lat,lon;...&amp;targets=lat,lon;...</code>.
+ *
+ * The response is newline-delimited JSON with one object per source, such as
+ * <code>{"source":0,"distances":[1.25,null]}</code>, where null marks an unreachable target.
+ * Rows are written and flushed as soon as each is computed, so they arrive in no particular
+ * order and a client can use the first rows while the rest are still being searched. If the
+ * search fails after rows have been sent, the stream ends with an <code>{"error":...}</code>
+ * object instead of the remaining rows.
+ */
+public class MatrixAPIHandler extends APIRouteHandler<MatrixRequest, Boolean> {
+    private static final String ERROR_ROW = "{\"error\":\"Unable to compute distances.\"}\n";
+
+    @Override
+    protected MatrixRequest parseRequest(Request request) {
+        return MatrixRequest.from(request);
+    }
+
+    /**
+     * Streams the rows of the requested distance matrix to the response.
+     * @param request MatrixRequest
+     * @param response The response, which is committed when this returns.
+     * @return True once every row has been sent.
+     */
+    @Override
+    protected Boolean processRequest(MatrixRequest request, Response response) {
+        response.type("application/x-ndjson");
+        PrintWriter out = null;
+        try {
+            out = response.raw().getWriter();
+            PrintWriter writer = out;
+            Router.distanceMatrix(SEMANTIC_STREET_GRAPH, request, (source, distances) -> {
+                String row = toJson(source, distances);
+                synchronized (writer) {
+                    writer.write(row);
+                    writer.flush();
+                    if (writer.checkError()) {
+                        throw new UncheckedIOException(new IOException("Client disconnected."));
+                    }
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            if (out == null || !response.raw().isCommitted()) {
+                halt(HALT_RESPONSE, "Request failed: unable to compute distances.");
+            }
+            // The status has already been sent with the first rows, so end the stream with an error
+            synchronized (out) {
+                out.write(ERROR_ROW);
+                out.flush();
+            }
+        }
+        return true;
+    }
+
+    private static String toJson(int source, double[] distances) {
+        StringBuilder sb = new StringBuilder(32 + 12 * distances.length);
+        sb.append("{\"source\":").append(source).append(",\"distances\":[");
+        for (int j = 0; j < distances.length; j += 1) {
+            if (j > 0) {
+                sb.append(',');
+            }
+            if (Double.isInfinite(distances[j])) {
+                sb.append("null");
+            } else {
+                sb.append(distances[j]);
+            }
+        }
+        return sb.append("]}\n").toString();
+    }
+
+    /** The rows have already been written to the response, so there is no JSON body. */
+    @Override
+    protected Object buildJsonResponse(Boolean result) {
+        return "";
+    }
+}
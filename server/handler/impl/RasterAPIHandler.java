@@ -5,6 +5,10 @@ import huskymaps.params.RasterResult;
 import huskymaps.params.RenderedRasterResult;
 import huskymaps.server.handler.APIRouteHandler;
 import huskymaps.server.logic.Rasterer;
+import huskymaps.server.logic.RenderedRasterCache;
+import huskymaps.server.logic.RoutePolyline;
+import huskymaps.server.logic.RouteStore;
+import huskymaps.server.logic.TileCache;
 import spark.Request;
 import spark.Response;
 
@@ -18,10 +22,11 @@ import java.util.Base64;
 
 import static huskymaps.utils.Constants.HEROKU_DEPLOYMENT;
 import static huskymaps.utils.Constants.IMG_ROOT;
-import static huskymaps.utils.Constants.ROUTE_LIST;
+import static huskymaps.utils.Constants.RENDERED_CACHE_BYTES;
+import static huskymaps.utils.Constants.ROUTES;
 import static huskymaps.utils.Constants.ROUTE_STROKE_COLOR;
 import static huskymaps.utils.Constants.ROUTE_STROKE_WIDTH_PX;
-import static huskymaps.utils.Constants.SEMANTIC_STREET_GRAPH;
+import static huskymaps.utils.Constants.TILE_CACHE_BYTES;
 import static huskymaps.utils.Constants.TILE_SIZE;
 
 /**
@@ -29,6 +34,10 @@ import static huskymaps.utils.Constants.TILE_SIZE;
  * rastered into one large image to be displayed to the user.
  */
 public class RasterAPIHandler extends APIRouteHandler<RasterRequest, RenderedRasterResult> {
+    /** Decoded tiles shared by all requests. */
+    public static final TileCache TILES = new TileCache(TILE_CACHE_BYTES, RasterAPIHandler::loadTile);
+    /** Encoded composite images, keyed on the tile grid and the route drawn over it. */
+    public static final RenderedRasterCache RENDERED = new RenderedRasterCache(RENDERED_CACHE_BYTES);
 
     @Override
     protected RasterRequest parseRequest(Request request) {
@@ -36,7 +45,9 @@ public class RasterAPIHandler extends APIRouteHandler<RasterRequest, RenderedRas
     }
 
     /**
-     * Takes a user query and finds the grid of images that best matches the query.
+     * Takes a user query and finds the grid of images that best matches the query. Unless the
+     * request asks for the tiles only, the grid is rendered into one image with the client's
+     * route on top.
      * @param request RasterRequest
      * @param response Ignored
      * @return RenderedRasterResult
@@ -44,22 +55,35 @@ public class RasterAPIHandler extends APIRouteHandler<RasterRequest, RenderedRas
     @Override
     protected RenderedRasterResult processRequest(RasterRequest request, Response response) {
         RasterResult raster = Rasterer.rasterizeMap(request);
-        if (raster.grid != null) {
-            // Render the result as an image if successful
-            BufferedImage image = render(raster);
-            ByteArrayOutputStream os = new ByteArrayOutputStream();
-            try {
-                ImageIO.write(image, "png", os);
-            } catch (IOException e) {
-                e.printStackTrace();
+        if (raster.grid != null && request.tilesOnly) {
+            return new RenderedRasterResult(raster, null, raster.grid);
+        } else if (raster.grid != null) {
+            RouteStore.Route route = ROUTES.get(request.routeToken);
+            String encoded = RENDERED.get(raster, route.version);
+            if (encoded == null) {
+                // Render the result as an image if successful
+                BufferedImage image = render(raster, route);
+                ByteArrayOutputStream os = new ByteArrayOutputStream();
+                try {
+                    ImageIO.write(image, "png", os);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                encoded = Base64.getEncoder().encodeToString(os.toByteArray());
+                RENDERED.put(raster, route.version, encoded);
             }
-            return new RenderedRasterResult(raster, Base64.getEncoder().encodeToString(os.toByteArray()));
+            return new RenderedRasterResult(raster, encoded);
         } else {
             return new RenderedRasterResult(raster);
         }
     }
 
-    private static BufferedImage render(RasterResult result) {
+    /** Frees the cached images drawn with PREVIOUS after a client's route is replaced. */
+    public static void routeChanged(RouteStore.Route previous) {
+        RENDERED.discard(previous.version);
+    }
+
+    private static BufferedImage render(RasterResult result, RouteStore.Route route) {
         int numVertTiles = result.grid.length;
         int numHorizTiles = result.grid[0].length;
 
@@ -83,28 +107,36 @@ public class RasterAPIHandler extends APIRouteHandler<RasterRequest, RenderedRas
             }
         }
 
-        final double wdpp = (result.lrlon - result.ullon) / image.getWidth();
-        final double hdpp = (result.ullat - result.lrlat) / image.getHeight();
-        if (ROUTE_LIST != null && !ROUTE_LIST.isEmpty()) {
+        RoutePolyline polyline = route.polyline.atDepth(result.grid[0][0].depth);
+        if (!polyline.isEmpty()) {
+            final double wdpp = (result.lrlon - result.ullon) / image.getWidth();
+            final double hdpp = (result.ullat - result.lrlat) / image.getHeight();
             Graphics2D g2d = (Graphics2D) graphic;
             g2d.setColor(ROUTE_STROKE_COLOR);
             g2d.setStroke(new BasicStroke(ROUTE_STROKE_WIDTH_PX,
                     BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
             g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            ROUTE_LIST.stream().reduce((v, w) -> {
-                g2d.drawLine(
-                        (int) ((SEMANTIC_STREET_GRAPH.lon(v) - result.ullon) * (1 / wdpp)),
-                        (int) ((result.ullat - SEMANTIC_STREET_GRAPH.lat(v)) * (1 / hdpp)),
-                        (int) ((SEMANTIC_STREET_GRAPH.lon(w) - result.ullon) * (1 / wdpp)),
-                        (int) ((result.ullat - SEMANTIC_STREET_GRAPH.lat(w)) * (1 / hdpp))
-                );
-                return w;
-            });
+            // Clip to the image plus a stroke width, so that strokes crossing the edge still show
+            double marginLon = ROUTE_STROKE_WIDTH_PX * wdpp;
+            double marginLat = ROUTE_STROKE_WIDTH_PX * hdpp;
+            polyline.forEachSegment(result.ullon - marginLon, result.lrlat - marginLat,
+                    result.lrlon + marginLon, result.ullat + marginLat,
+                    (lon0, lat0, lon1, lat1) -> g2d.drawLine(
+                            (int) ((lon0 - result.ullon) * (1 / wdpp)),
+                            (int) ((result.ullat - lat0) * (1 / hdpp)),
+                            (int) ((lon1 - result.ullon) * (1 / wdpp)),
+                            (int) ((result.ullat - lat1) * (1 / hdpp))
+                    ));
         }
         return image;
     }
 
     private static BufferedImage getTile(Rasterer.Tile name) {
+        return TILES.get(name);
+    }
+
+    /** Decodes the image of the tile NAME from IMG_ROOT, or returns null if it cannot be read. */
+    private static BufferedImage loadTile(Rasterer.Tile name) {
         String path = IMG_ROOT + name;
         BufferedImage tile = null;
         try {
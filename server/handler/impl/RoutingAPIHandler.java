@@ -4,13 +4,14 @@ import huskymaps.params.RouteRequest;
 import huskymaps.params.RouteResult;
 import huskymaps.server.handler.APIRouteHandler;
 import huskymaps.server.logic.NavigationDirection;
+import huskymaps.server.logic.RoutePolyline;
 import huskymaps.server.logic.Router;
 import spark.Request;
 import spark.Response;
 
 import java.util.List;
 
-import static huskymaps.utils.Constants.ROUTE_LIST;
+import static huskymaps.utils.Constants.ROUTES;
 import static huskymaps.utils.Constants.SEMANTIC_STREET_GRAPH;
 
 /**
@@ -26,20 +27,22 @@ public class RoutingAPIHandler extends APIRouteHandler<RouteRequest, RouteResult
 
     /**
      * Takes a user query in the form of a pair of (lat/lon) values, and finds
-     * street directions between the given points.
+     * street directions between the given points. The route replaces the client's previous one.
      * @param request RouteRequest
      * @param response Ignored.
      * @return RouteResult
      */
     @Override
     protected RouteResult processRequest(RouteRequest request, Response response) {
-        ROUTE_LIST = Router.shortestPath(SEMANTIC_STREET_GRAPH, request);
-        return new RouteResult(!ROUTE_LIST.isEmpty(), getDirectionsText());
+        Router.SnappedPath route = Router.snappedPath(SEMANTIC_STREET_GRAPH, request);
+        RasterAPIHandler.routeChanged(ROUTES.put(request.routeToken, route.nodes,
+                RoutePolyline.of(SEMANTIC_STREET_GRAPH, route)));
+        return new RouteResult(!route.isEmpty(), getDirectionsText(route.nodes));
     }
 
-    /** Takes the current route and converts it into an HTML-friendly String. */
-    private String getDirectionsText() {
-        List<NavigationDirection> directions = Router.routeDirections(SEMANTIC_STREET_GRAPH, ROUTE_LIST);
+    /** Takes the ROUTE and converts it into an HTML-friendly String. */
+    private String getDirectionsText(List<Long> route) {
+        List<NavigationDirection> directions = Router.routeDirections(SEMANTIC_STREET_GRAPH, route);
         if (directions == null || directions.isEmpty()) {
             return "";
         }
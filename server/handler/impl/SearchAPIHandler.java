@@ -13,15 +13,17 @@ public class SearchAPIHandler extends APIRouteHandler<SearchRequest, List> {
 
     @Override
     protected SearchRequest parseRequest(Request request) {
-        return new SearchRequest(request.queryParams("term"), request.queryParams("full") != null);
+        return SearchRequest.from(request);
     }
 
     @Override
     protected List processRequest(SearchRequest request, Response response) {
         if (request.full) {
             return SEMANTIC_STREET_GRAPH.getLocations(request.term);
+        } else if (request.fuzzy) {
+            return SEMANTIC_STREET_GRAPH.getLocationsFuzzy(request.term, request.k);
         } else {
-            return SEMANTIC_STREET_GRAPH.getLocationsByPrefix(request.term);
+            return SEMANTIC_STREET_GRAPH.getLocationsByPrefix(request.term, request.k);
         }
     }
 }
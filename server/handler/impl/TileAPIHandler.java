@@ -0,0 +1,130 @@
+package huskymaps.server.handler.impl;
+
+import huskymaps.params.TileRequest;
+import huskymaps.server.handler.APIRouteHandler;
+import org.eclipse.jetty.server.HttpOutput;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import static huskymaps.utils.Constants.HALT_RESPONSE;
+import static huskymaps.utils.Constants.HEROKU_DEPLOYMENT;
+import static huskymaps.utils.Constants.IMG_ROOT;
+import static huskymaps.utils.Constants.NOT_FOUND;
+import static huskymaps.utils.Constants.TILE_MAX_AGE_SECONDS;
+import static spark.Spark.halt;
+
+/**
+ * Serves a single map tile at <code>/tiles/{depth}/{x}/{y}</code> as the original JPEG from
+ * IMG_ROOT, so browsers can fetch the tiles of a <code>/raster?tiles_only=true</code> grid in
+ * parallel and cache each one.
+ *
+ * The file is memory-mapped and handed to Jetty as a direct buffer, which writes it to the
+ * socket without copying it through the Java heap. Responses carry an ETag derived from the
+ * file's size and modification time and a Cache-Control max-age, and a request whose
+ * If-None-Match matches the ETag gets an empty 304 response.
+ */
+public class TileAPIHandler extends APIRouteHandler<TileRequest, Boolean> {
+    private static final int NOT_MODIFIED = 304;
+
+    @Override
+    protected TileRequest parseRequest(Request request) {
+        return TileRequest.from(request);
+    }
+
+    /**
+     * Writes the JPEG of the requested tile to the response.
+     * @param request TileRequest
+     * @param response The response, which is committed when this returns.
+     * @return True once the tile or a 304 has been sent.
+     */
+    @Override
+    protected Boolean processRequest(TileRequest request, Response response) {
+        String path = IMG_ROOT + request.tile;
+        try {
+            if (HEROKU_DEPLOYMENT) {
+                sendResource(path, request, response);
+                return true;
+            }
+            File file = new File(path);
+            if (!file.isFile()) {
+                halt(NOT_FOUND, "Tile not found.");
+            }
+            String etag = String.format("\"%x-%x\"", file.length(), file.lastModified());
+            if (notModified(etag, request, response)) {
+                return true;
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                send(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), response.raw());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            halt(HALT_RESPONSE, "Request failed: unable to read tile.");
+        }
+        return true;
+    }
+
+    /** Tile images are bundled as classpath resources when deployed, so they cannot be mapped. */
+    private static void sendResource(String path, TileRequest request, Response response)
+            throws IOException {
+        byte[] bytes;
+        try (InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(path)) {
+            if (in == null) {
+                halt(NOT_FOUND, "Tile not found.");
+            }
+            bytes = in.readAllBytes();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        String etag = String.format("\"%x-%x\"", bytes.length, crc.getValue());
+        if (!notModified(etag, request, response)) {
+            send(ByteBuffer.wrap(bytes), response.raw());
+        }
+    }
+
+    /** Writes CONTENT as the whole response body, through Jetty's buffer path when available. */
+    private static void send(ByteBuffer content, HttpServletResponse raw) throws IOException {
+        raw.setContentLength(content.remaining());
+        ServletOutputStream out = raw.getOutputStream();
+        if (out instanceof HttpOutput) {
+            ((HttpOutput) out).sendContent(content);
+        } else {
+            byte[] bytes = new byte[content.remaining()];
+            content.get(bytes);
+            out.write(bytes);
+            out.flush();
+        }
+    }
+
+    /**
+     * Sets the caching headers for ETAG and sends a 304 if the browser's copy is current.
+     * @return True if the 304 was sent.
+     */
+    private static boolean notModified(String etag, TileRequest request, Response response)
+            throws IOException {
+        response.type("image/jpeg");
+        response.header("ETag", etag);
+        response.header("Cache-Control", "public, max-age=" + TILE_MAX_AGE_SECONDS);
+        if (request.matches(etag)) {
+            response.status(NOT_MODIFIED);
+            response.raw().flushBuffer();
+            return true;
+        }
+        return false;
+    }
+
+    /** The tile has already been written to the response, so there is no JSON body. */
+    @Override
+    protected Object buildJsonResponse(Boolean result) {
+        return "";
+    }
+}
@@ -0,0 +1,124 @@
+package huskymaps.server.logic;
+
+import huskymaps.params.RasterResult;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Caches the Base64-encoded composite images returned by the raster API, so that repeating a
+ * viewport skips drawing, PNG encoding and Base64 encoding entirely.
+ *
+ * Entries are keyed on the snapped tile grid of a {@link RasterResult}, which is the same for
+ * all viewports that round to the same tiles, together with the version of the route drawn on
+ * top. Route versions are unique across clients (see {@link RouteStore}), so a new route never
+ * hits an image of an old one, and clients without a route share their images. When a route is
+ * replaced, {@link #discard} frees its images right away. The cache is bounded by the total
+ * length of its images and evicts the least recently used image first.
+ */
+public class RenderedRasterCache {
+    private final long capacityBytes;
+    private final LinkedHashMap<Key, String> images = new LinkedHashMap<>(64, 0.75f, true);
+    private long sizeBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /** @param capacityBytes The most bytes of encoded images to keep. */
+    public RenderedRasterCache(long capacityBytes) {
+        this.capacityBytes = capacityBytes;
+    }
+
+    /** Drops every image drawn with the route of version VERSION, unless it is the empty route. */
+    public synchronized void discard(long version) {
+        if (version == RouteStore.Route.EMPTY.version) {
+            return;
+        }
+        Iterator<Map.Entry<Key, String>> entries = images.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Key, String> entry = entries.next();
+            if (entry.getKey().version == version) {
+                sizeBytes -= entry.getValue().length();
+                entries.remove();
+            }
+        }
+    }
+
+    /** Returns the image rendered for RASTER with route version VERSION, or null if none is cached. */
+    public synchronized String get(RasterResult raster, long version) {
+        String image = images.get(new Key(raster, version));
+        if (image == null) {
+            misses += 1;
+        } else {
+            hits += 1;
+        }
+        return image;
+    }
+
+    /** Caches IMAGE as the rendering of RASTER with route version VERSION. */
+    public synchronized void put(RasterResult raster, long version, String image) {
+        long bytes = image.length();
+        if (bytes > capacityBytes) {
+            return;
+        }
+        String previous = images.put(new Key(raster, version), image);
+        if (previous != null) {
+            sizeBytes -= previous.length();
+        }
+        sizeBytes += bytes;
+        Iterator<String> eldest = images.values().iterator();
+        while (sizeBytes > capacityBytes) {
+            sizeBytes -= eldest.next().length();
+            eldest.remove();
+            evictions += 1;
+        }
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("RenderedRasterCache(%d images, %d/%d bytes, %d hits, %d misses, %d evictions)",
+                images.size(), sizeBytes, capacityBytes, hits, misses, evictions);
+    }
+
+    private static class Key {
+        private final RasterResult raster;
+        private final long version;
+
+        Key(RasterResult raster, long version) {
+            this.raster = raster;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return version == key.version && raster.equals(key.raster);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(raster, version);
+        }
+    }
+}
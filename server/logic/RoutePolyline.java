@@ -0,0 +1,264 @@
+package huskymaps.server.logic;
+
+import huskymaps.StreetMapGraph;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static huskymaps.utils.Constants.LAT_PER_TILE;
+import static huskymaps.utils.Constants.LON_PER_TILE;
+import static huskymaps.utils.Constants.ROUTE_SIMPLIFY_TOLERANCE_PX;
+import static huskymaps.utils.Constants.TILE_SIZE;
+
+/**
+ * The coordinates of a route as primitive arrays, indexed for drawing only the part of the
+ * route inside a viewport.
+ *
+ * Consecutive segments are grouped into blocks of BLOCK_SIZE, and the bounding box of each
+ * block is stored, so {@link #forEachSegment} skips every block outside the viewport without
+ * looking at its points. Each depth draws a copy simplified with Douglas-Peucker to within
+ * ROUTE_SIMPLIFY_TOLERANCE_PX pixels, made the first time the depth is drawn.
+ */
+public class RoutePolyline {
+    /** The polyline with no points. */
+    public static final RoutePolyline EMPTY = new RoutePolyline(new double[0], new double[0]);
+
+    /** Number of segments covered by each bounding box. */
+    private static final int BLOCK_SIZE = 16;
+
+    private final double[] lons;
+    private final double[] lats;
+    private final double[] blockMinLons;
+    private final double[] blockMinLats;
+    private final double[] blockMaxLons;
+    private final double[] blockMaxLats;
+    /** The simplified polyline for each depth, or null for a copy that is simplified already. */
+    private final AtomicReferenceArray<RoutePolyline> simplified;
+
+    /** Receives the endpoints of a clipped segment. */
+    @FunctionalInterface
+    public interface SegmentConsumer {
+        void accept(double lon0, double lat0, double lon1, double lat1);
+    }
+
+    /** Returns the polyline through the vertices NODES of GRAPH. */
+    public static RoutePolyline of(StreetMapGraph graph, List<Long> nodes) {
+        double[] lons = new double[nodes.size()];
+        double[] lats = new double[nodes.size()];
+        int i = 0;
+        for (long node : nodes) {
+            lons[i] = graph.lon(node);
+            lats[i] = graph.lat(node);
+            i += 1;
+        }
+        return new RoutePolyline(lons, lats);
+    }
+
+    /**
+     * Returns the polyline of PATH in GRAPH: from the point it starts at, through its nodes, to
+     * the point it ends at. A path that stays on one street is drawn as the straight line
+     * between its two points.
+     */
+    public static RoutePolyline of(StreetMapGraph graph, Router.SnappedPath path) {
+        if (path.start == null || path.isEmpty()) {
+            return of(graph, path.nodes);
+        }
+        int size = path.withinStreet ? 2 : path.nodes.size() + 2;
+        double[] lons = new double[size];
+        double[] lats = new double[size];
+        lons[0] = path.start.lon;
+        lats[0] = path.start.lat;
+        for (int i = 1; i < size - 1; i += 1) {
+            long node = path.nodes.get(i - 1);
+            lons[i] = graph.lon(node);
+            lats[i] = graph.lat(node);
+        }
+        lons[size - 1] = path.end.lon;
+        lats[size - 1] = path.end.lat;
+        return new RoutePolyline(lons, lats);
+    }
+
+    /** Returns the polyline through the points (LONS[i], LATS[i]), which it takes ownership of. */
+    public static RoutePolyline of(double[] lons, double[] lats) {
+        if (lons.length != lats.length) {
+            throw new IllegalArgumentException("Mismatched coordinate arrays.");
+        }
+        return new RoutePolyline(lons, lats);
+    }
+
+    private RoutePolyline(double[] lons, double[] lats) {
+        this(lons, lats, new AtomicReferenceArray<>(LON_PER_TILE.length));
+    }
+
+    private RoutePolyline(double[] lons, double[] lats, AtomicReferenceArray<RoutePolyline> simplified) {
+        this.lons = lons;
+        this.lats = lats;
+        this.simplified = simplified;
+        int numSegments = Math.max(0, lons.length - 1);
+        int numBlocks = (numSegments + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        blockMinLons = new double[numBlocks];
+        blockMinLats = new double[numBlocks];
+        blockMaxLons = new double[numBlocks];
+        blockMaxLats = new double[numBlocks];
+        for (int b = 0; b < numBlocks; b += 1) {
+            int end = Math.min(lons.length - 1, (b + 1) * BLOCK_SIZE);
+            double minLon = Double.POSITIVE_INFINITY;
+            double minLat = Double.POSITIVE_INFINITY;
+            double maxLon = Double.NEGATIVE_INFINITY;
+            double maxLat = Double.NEGATIVE_INFINITY;
+            for (int i = b * BLOCK_SIZE; i <= end; i += 1) {
+                minLon = Math.min(minLon, lons[i]);
+                minLat = Math.min(minLat, lats[i]);
+                maxLon = Math.max(maxLon, lons[i]);
+                maxLat = Math.max(maxLat, lats[i]);
+            }
+            blockMinLons[b] = minLon;
+            blockMinLats[b] = minLat;
+            blockMaxLons[b] = maxLon;
+            blockMaxLats[b] = maxLat;
+        }
+    }
+
+    /** Returns the number of points. */
+    public int size() {
+        return lons.length;
+    }
+
+    public boolean isEmpty() {
+        return lons.length == 0;
+    }
+
+    public double lon(int i) {
+        return lons[i];
+    }
+
+    public double lat(int i) {
+        return lats[i];
+    }
+
+    /**
+     * Returns this polyline simplified for drawing at DEPTH, which keeps the first and last
+     * point and drops the points that are closer than ROUTE_SIMPLIFY_TOLERANCE_PX pixels to the
+     * simplified line.
+     */
+    public RoutePolyline atDepth(int depth) {
+        if (simplified == null || lons.length <= 2) {
+            return this;
+        }
+        RoutePolyline result = simplified.get(depth);
+        if (result == null) {
+            result = simplify(LON_PER_TILE[depth] / TILE_SIZE, LAT_PER_TILE[depth] / TILE_SIZE);
+            simplified.set(depth, result);
+        }
+        return result;
+    }
+
+    /** Douglas-Peucker in pixel units, with an explicit stack so long routes cannot overflow. */
+    private RoutePolyline simplify(double lonPerPixel, double latPerPixel) {
+        int n = lons.length;
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        int kept = 2;
+        double tolerance = ROUTE_SIMPLIFY_TOLERANCE_PX * ROUTE_SIMPLIFY_TOLERANCE_PX;
+        int[] stack = new int[2 * n];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            double x0 = lons[first] / lonPerPixel;
+            double y0 = lats[first] / latPerPixel;
+            double dx = lons[last] / lonPerPixel - x0;
+            double dy = lats[last] / latPerPixel - y0;
+            double lengthSquared = dx * dx + dy * dy;
+            double farthest = -1;
+            int index = -1;
+            for (int i = first + 1; i < last; i += 1) {
+                double px = lons[i] / lonPerPixel - x0;
+                double py = lats[i] / latPerPixel - y0;
+                double distance;
+                if (lengthSquared == 0) {
+                    distance = px * px + py * py;
+                } else {
+                    double t = Math.max(0, Math.min(1, (px * dx + py * dy) / lengthSquared));
+                    double ex = px - t * dx;
+                    double ey = py - t * dy;
+                    distance = ex * ex + ey * ey;
+                }
+                if (distance > farthest) {
+                    farthest = distance;
+                    index = i;
+                }
+            }
+            if (index >= 0 && farthest > tolerance) {
+                keep[index] = true;
+                kept += 1;
+                stack[top++] = first;
+                stack[top++] = index;
+                stack[top++] = index;
+                stack[top++] = last;
+            }
+        }
+        double[] simpleLons = new double[kept];
+        double[] simpleLats = new double[kept];
+        int j = 0;
+        for (int i = 0; i < n; i += 1) {
+            if (keep[i]) {
+                simpleLons[j] = lons[i];
+                simpleLats[j] = lats[i];
+                j += 1;
+            }
+        }
+        return new RoutePolyline(simpleLons, simpleLats, null);
+    }
+
+    /**
+     * Calls ACTION on every segment that intersects the box from (MINLON, MINLAT) to
+     * (MAXLON, MAXLAT), clipped to the box, in route order.
+     */
+    public void forEachSegment(double minLon, double minLat, double maxLon, double maxLat,
+                               SegmentConsumer action) {
+        for (int b = 0; b < blockMinLons.length; b += 1) {
+            if (blockMaxLons[b] < minLon || blockMinLons[b] > maxLon
+                    || blockMaxLats[b] < minLat || blockMinLats[b] > maxLat) {
+                continue;
+            }
+            int end = Math.min(lons.length - 1, (b + 1) * BLOCK_SIZE);
+            for (int i = b * BLOCK_SIZE; i < end; i += 1) {
+                clip(lons[i], lats[i], lons[i + 1], lats[i + 1], minLon, minLat, maxLon, maxLat, action);
+            }
+        }
+    }
+
+    /** Liang-Barsky clipping of one segment to the box, passing the visible part to ACTION. */
+    private static void clip(double lon0, double lat0, double lon1, double lat1,
+                             double minLon, double minLat, double maxLon, double maxLat,
+                             SegmentConsumer action) {
+        double dLon = lon1 - lon0;
+        double dLat = lat1 - lat0;
+        double[] p = {-dLon, dLon, -dLat, dLat};
+        double[] q = {lon0 - minLon, maxLon - lon0, lat0 - minLat, maxLat - lat0};
+        double enter = 0;
+        double exit = 1;
+        for (int k = 0; k < 4; k += 1) {
+            if (p[k] == 0) {
+                if (q[k] < 0) {
+                    return;
+                }
+            } else {
+                double t = q[k] / p[k];
+                if (p[k] < 0) {
+                    enter = Math.max(enter, t);
+                } else {
+                    exit = Math.min(exit, t);
+                }
+            }
+        }
+        if (enter > exit) {
+            return;
+        }
+        action.accept(lon0 + enter * dLon, lat0 + enter * dLat, lon0 + exit * dLon, lat0 + exit * dLat);
+    }
+}
@@ -0,0 +1,140 @@
+package huskymaps.server.logic;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The current route of every client, keyed by the random token in the client's route cookie.
+ *
+ * Routes are immutable {@link Route} snapshots replaced atomically, so a request always sees
+ * either the whole old route or the whole new one. Every stored route gets a version that is
+ * unique across all clients, so caches can key rendered images on the version alone; clients
+ * without a route share version 0. Routes that have not been read or written for the TTL are
+ * evicted, by a sweep that runs at most once per TTL as part of ordinary calls.
+ */
+public class RouteStore {
+    /** Number of random bytes in a token. */
+    private static final int TOKEN_BYTES = 16;
+    /** Length of a token encoded as unpadded URL-safe Base64. */
+    private static final int TOKEN_LENGTH = 22;
+
+    private final long ttlMillis;
+    private final ConcurrentHashMap<String, Entry> routes = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final AtomicLong nextSweep;
+    private final SecureRandom random = new SecureRandom();
+
+    /** An immutable route, its coordinates and its version. */
+    public static class Route {
+        /** The route with no nodes, drawn as nothing. */
+        public static final Route EMPTY = new Route(List.of(), RoutePolyline.EMPTY, 0);
+
+        /** The node ids along the route. */
+        public final List<Long> nodes;
+        /** The coordinates of the nodes, for drawing. */
+        public final RoutePolyline polyline;
+        public final long version;
+
+        Route(List<Long> nodes, RoutePolyline polyline, long version) {
+            this.nodes = nodes;
+            this.polyline = polyline;
+            this.version = version;
+        }
+
+        public boolean isEmpty() {
+            return nodes.isEmpty();
+        }
+    }
+
+    private static class Entry {
+        final Route route;
+        volatile long lastAccess;
+
+        Entry(Route route, long lastAccess) {
+            this.route = route;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    /** @param ttlMillis How long an unused route is kept. */
+    public RouteStore(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.nextSweep = new AtomicLong(System.currentTimeMillis() + ttlMillis);
+    }
+
+    /** Returns a new random token. */
+    public String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /** Returns true if TOKEN could have come from {@link #newToken}. */
+    public static boolean isValidToken(String token) {
+        if (token == null || token.length() != TOKEN_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i += 1) {
+            char c = token.charAt(i);
+            if (!(Character.isLetterOrDigit(c) && c < 128) && c != '-' && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the route of the client with TOKEN, or {@link Route#EMPTY} if it has none. */
+    public Route get(String token) {
+        long now = System.currentTimeMillis();
+        sweep(now);
+        Entry entry = token == null ? null : routes.get(token);
+        if (entry == null) {
+            return Route.EMPTY;
+        }
+        entry.lastAccess = now;
+        return entry.route;
+    }
+
+    /**
+     * Replaces the route of the client with TOKEN by NODES, whose coordinates are POLYLINE,
+     * giving it a fresh version.
+     * @return The route that was replaced, or {@link Route#EMPTY}.
+     */
+    public Route put(String token, List<Long> nodes, RoutePolyline polyline) {
+        long now = System.currentTimeMillis();
+        sweep(now);
+        if (token == null) {
+            return Route.EMPTY;
+        }
+        Route route = new Route(List.copyOf(nodes), polyline, versions.incrementAndGet());
+        Entry previous = routes.put(token, new Entry(route, now));
+        return previous == null ? Route.EMPTY : previous.route;
+    }
+
+    /**
+     * Forgets the route of the client with TOKEN.
+     * @return The route that was removed, or {@link Route#EMPTY}.
+     */
+    public Route clear(String token) {
+        Entry entry = token == null ? null : routes.remove(token);
+        return entry == null ? Route.EMPTY : entry.route;
+    }
+
+    /** Returns the number of clients with a stored route. */
+    public int size() {
+        return routes.size();
+    }
+
+    /** Evicts expired routes if the last sweep was more than a TTL ago. */
+    private void sweep(long now) {
+        long next = nextSweep.get();
+        if (now < next || !nextSweep.compareAndSet(next, now + ttlMillis)) {
+            return;
+        }
+        long cutoff = now - ttlMillis;
+        routes.values().removeIf(entry -> entry.lastAccess < cutoff);
+    }
+}
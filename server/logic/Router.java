@@ -1,28 +1,326 @@
 package huskymaps.server.logic;
 
-import astar.AStarSolver;
+import huskymaps.BidirectionalAStarSolver;
+import huskymaps.CompactAStarSolver;
+import huskymaps.ContractionHierarchy;
+import huskymaps.DistanceMatrix;
+import huskymaps.EdgeSnap;
 import huskymaps.StreetMapGraph;
+import huskymaps.params.Location;
+import huskymaps.params.MatrixRequest;
 import huskymaps.params.RouteRequest;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static huskymaps.utils.Constants.ROUTE_BATCH_THREADS;
 
 /** Application logic for the RoutingAPIHandler. */
 public class Router {
+    /** Solves the routes of batch requests, so they cannot take over the request threads. */
+    private static final ForkJoinPool BATCH_POOL = new ForkJoinPool(ROUTE_BATCH_THREADS);
+
+    /** The search algorithms that {@link #shortestPath} can route with. */
+    public enum Algorithm {
+        /** Query the graph's contraction hierarchy. Requires one to be loaded. */
+        CONTRACTION_HIERARCHY,
+        /** A* from the start to the destination. */
+        ASTAR,
+        /** A* from both ends at once, meeting in the middle. */
+        BIDIRECTIONAL_ASTAR
+    }
+
+    /**
+     * A shortest path with the points it starts and ends at. If the graph has a segment index,
+     * START and END are the points on the streets closest to the requested locations, and the
+     * route runs from START through NODES to END. Otherwise they are null and the route runs
+     * between the first and last of NODES.
+     */
+    public static class SnappedPath {
+        /** The path with no nodes, for locations that are not connected. */
+        public static final SnappedPath EMPTY = new SnappedPath(List.of(), null, null, false);
+
+        /** The node id's in the order visited. */
+        public final List<Long> nodes;
+        public final EdgeSnap start;
+        public final EdgeSnap end;
+        /**
+         * Whether the route stays on the street of START, from START directly to END. NODES are
+         * then the ends of the street in the direction of travel, which the route does not
+         * reach.
+         */
+        public final boolean withinStreet;
+
+        SnappedPath(List<Long> nodes, EdgeSnap start, EdgeSnap end, boolean withinStreet) {
+            this.nodes = nodes;
+            this.start = start;
+            this.end = end;
+            this.withinStreet = withinStreet;
+        }
+
+        public boolean isEmpty() {
+            return nodes.isEmpty();
+        }
+    }
 
     /**
      * Overloaded method for shortestPath that has flexibility to specify a solver
      * and returns a List of longs representing the shortest path from the node
      * closest to a start location and the node closest to the destination location.
+     * Uses the graph's contraction hierarchy if one is loaded, and A* otherwise.
+     * If the graph has a segment index, the route instead runs between the closest points on
+     * the closest streets, as described in {@link #shortestPath(StreetMapGraph, RouteRequest,
+     * Algorithm)}.
      * @param g The graph to use.
      * @param request The requested route.
      * @return A list of node id's in the order visited on the shortest path.
      */
     public static List<Long> shortestPath(StreetMapGraph g, RouteRequest request) {
+        return shortestPath(g, request, defaultAlgorithm(g));
+    }
+
+    /**
+     * Returns the shortest path between the nodes closest to the requested start and
+     * destination, found with the given ALGORITHM.
+     *
+     * If the graph has a segment index, the start and destination are instead snapped to the
+     * closest points on the closest streets, and the route runs between virtual nodes at those
+     * points. The virtual start leaves along its street towards either end, as one-way rules
+     * allow, at the cost of the part of the street it covers; the virtual destination is
+     * reached from either end of its street likewise. The path then lists the real nodes from
+     * the end of the start street it leaves by to the end of the destination street it arrives
+     * by, or just the ends of the street in the direction of travel if both points are on the
+     * same street and the route stays on it.
+     * @param g The graph to use.
+     * @param request The requested route.
+     * @param algorithm The search algorithm to use.
+     * @return A list of node id's in the order visited on the shortest path.
+     * @throws IllegalStateException If the algorithm needs a contraction hierarchy and none is
+     *                               loaded.
+     */
+    public static List<Long> shortestPath(StreetMapGraph g, RouteRequest request,
+                                          Algorithm algorithm) {
+        return snappedPath(g, request, algorithm).nodes;
+    }
+
+    /**
+     * Returns the shortest path for REQUEST as {@link #shortestPath(StreetMapGraph,
+     * RouteRequest)} finds it, together with the points it starts and ends at, which are where
+     * the drawn route should begin and end.
+     * @param g The graph to use.
+     * @param request The requested route.
+     * @return The path, which is empty if there is no route.
+     */
+    public static SnappedPath snappedPath(StreetMapGraph g, RouteRequest request) {
+        return snappedPath(g, request, defaultAlgorithm(g));
+    }
+
+    /**
+     * Returns the shortest path for REQUEST as {@link #shortestPath(StreetMapGraph, RouteRequest,
+     * Algorithm)} finds it, together with the points it starts and ends at.
+     * @param g The graph to use.
+     * @param request The requested route.
+     * @param algorithm The search algorithm to use.
+     * @return The path, which is empty if there is no route.
+     * @throws IllegalStateException If the algorithm needs a contraction hierarchy and none is
+     *                               loaded.
+     */
+    public static SnappedPath snappedPath(StreetMapGraph g, RouteRequest request,
+                                          Algorithm algorithm) {
+        if (g.hasSegmentIndex()) {
+            EdgeSnap start = g.closestEdge(request.startLat, request.startLon);
+            EdgeSnap end = g.closestEdge(request.endLat, request.endLon);
+            if (start == null || end == null) {
+                return SnappedPath.EMPTY;
+            }
+            return shortestPath(g, start, end, algorithm);
+        }
         long src = g.closest(request.startLat, request.startLon);
         long dest = g.closest(request.endLat, request.endLon);
-        return new AStarSolver<>(g, src, dest, 20).solution();
+        return new SnappedPath(solve(g, src, dest, algorithm), null, null, false);
+    }
+
+    private static List<Long> shortestPath(StreetMapGraph g, long src, long dest) {
+        return solve(g, src, dest, defaultAlgorithm(g));
+    }
+
+    private static Algorithm defaultAlgorithm(StreetMapGraph g) {
+        return g.contractionHierarchy() != null ? Algorithm.CONTRACTION_HIERARCHY : Algorithm.ASTAR;
+    }
+
+    /**
+     * Returns the shortest path between virtual nodes at the points START and END, found by one
+     * search that starts from both ends of the start street, each at the cost of reaching it from
+     * START, and finishes at whichever end of the destination street is cheaper once the rest of
+     * the way to END is added.
+     */
+    private static SnappedPath shortestPath(StreetMapGraph g, EdgeSnap start, EdgeSnap end,
+                                            Algorithm algorithm) {
+        List<Long> withinStreet = List.of();
+        double withinStreetWeight = Double.POSITIVE_INFINITY;
+        if (start.isSameStreet(end)) {
+            double fraction = end.from == start.from ? end.fraction : 1 - end.fraction;
+            if (fraction >= start.fraction) {
+                withinStreetWeight = partial(fraction - start.fraction, start.weight);
+                withinStreet = List.of(start.from, start.to);
+            } else if (start.reverseWeight < Double.POSITIVE_INFINITY) {
+                withinStreetWeight = partial(start.fraction - fraction, start.reverseWeight);
+                withinStreet = List.of(start.to, start.from);
+            }
+        }
+        long[] exits = {start.to, start.from};
+        double[] exitWeights = {
+            partial(1 - start.fraction, start.weight), partial(start.fraction, start.reverseWeight)
+        };
+        long[] entries = {end.from, end.to};
+        double[] entryWeights = {
+            partial(end.fraction, end.weight), partial(1 - end.fraction, end.reverseWeight)
+        };
+        // Only a route lighter than staying on the street can replace it
+        List<Long> path = solve(g, exits, exitWeights, entries, entryWeights, withinStreetWeight,
+                algorithm);
+        if (!path.isEmpty()) {
+            return new SnappedPath(path, start, end, false);
+        }
+        if (withinStreet.isEmpty()) {
+            return SnappedPath.EMPTY;
+        }
+        return new SnappedPath(withinStreet, start, end, true);
+    }
+
+    /** Returns the length of FRACTION of an edge of length WEIGHT, which may be infinite. */
+    private static double partial(double fraction, double weight) {
+        return fraction == 0 ? 0 : fraction * weight;
+    }
+
+    /**
+     * Returns the shortest route from one of SRCS to one of DESTS, counting the matching partial
+     * weights at either end, or an empty list if there is none lighter than MAXWEIGHT.
+     */
+    private static List<Long> solve(StreetMapGraph g, long[] srcs, double[] srcWeights,
+                                    long[] dests, double[] destWeights, double maxWeight,
+                                    Algorithm algorithm) {
+        switch (algorithm) {
+            case CONTRACTION_HIERARCHY:
+                ContractionHierarchy ch = g.contractionHierarchy();
+                if (ch == null) {
+                    throw new IllegalStateException("No contraction hierarchy is loaded.");
+                }
+                return ch.shortestPath(srcs, srcWeights, dests, destWeights, maxWeight);
+            case BIDIRECTIONAL_ASTAR:
+                return new BidirectionalAStarSolver(g, srcs, srcWeights, dests, destWeights,
+                        maxWeight, 20).solution();
+            default:
+                return new CompactAStarSolver(g, srcs, srcWeights, dests, destWeights,
+                        maxWeight, 20).solution();
+        }
+    }
+
+    private static List<Long> solve(StreetMapGraph g, long src, long dest, Algorithm algorithm) {
+        switch (algorithm) {
+            case CONTRACTION_HIERARCHY:
+                ContractionHierarchy ch = g.contractionHierarchy();
+                if (ch == null) {
+                    throw new IllegalStateException("No contraction hierarchy is loaded.");
+                }
+                return ch.shortestPath(src, dest);
+            case BIDIRECTIONAL_ASTAR:
+                return new BidirectionalAStarSolver(g, src, dest, 20).solution();
+            default:
+                return new CompactAStarSolver(g, src, dest, 20).solution();
+        }
     }
 
+    /**
+     * Finds the shortest path of every request between the nodes closest to its endpoints, as
+     * {@link #shortestPath} does for a graph without a segment index; the endpoints are never
+     * snapped to streets, even if the graph has a segment index. The distinct endpoints are
+     * snapped to their closest nodes once, and the distinct routes between those
+     * nodes are solved concurrently on a pool of ROUTE_BATCH_THREADS threads. Every search takes
+     * its state from the graph's bounded pools, so routes reuse it from one to the next.
+     * @param g The graph to use.
+     * @param requests The requested routes.
+     * @return The path of each request, in order, sharing the list of any repeated route.
+     */
+    public static List<List<Long>> shortestPaths(StreetMapGraph g, List<RouteRequest> requests) {
+        // Logged routes repeat their endpoints, so snap each distinct coordinate pair once
+        Map<List<Double>, Integer> endpointIds = new HashMap<>();
+        List<List<Double>> endpoints = new ArrayList<>();
+        int[] starts = new int[requests.size()];
+        int[] ends = new int[requests.size()];
+        for (int i = 0; i < requests.size(); i += 1) {
+            RouteRequest request = requests.get(i);
+            starts[i] = endpointIds.computeIfAbsent(List.of(request.startLat, request.startLon),
+                    endpoint -> add(endpoints, endpoint));
+            ends[i] = endpointIds.computeIfAbsent(List.of(request.endLat, request.endLon),
+                    endpoint -> add(endpoints, endpoint));
+        }
+        Map<Long, Integer> routeIds = new HashMap<>();
+        List<int[]> routes = new ArrayList<>();
+        int[] routeOf = new int[requests.size()];
+        for (int i = 0; i < requests.size(); i += 1) {
+            int[] route = {starts[i], ends[i]};
+            routeOf[i] = routeIds.computeIfAbsent(((long) route[0] << 32) | route[1],
+                    key -> add(routes, route));
+        }
+        long[] nodes;
+        List<List<Long>> paths;
+        try {
+            nodes = BATCH_POOL.submit(() -> endpoints.parallelStream()
+                    .mapToLong(endpoint -> g.closest(endpoint.get(0), endpoint.get(1)))
+                    .toArray()).get();
+            paths = BATCH_POOL.submit(() -> routes.parallelStream()
+                    .map(route -> shortestPath(g, nodes[route[0]], nodes[route[1]]))
+                    .collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while solving a batch of routes.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Unable to solve a batch of routes.", e.getCause());
+        }
+        List<List<Long>> result = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i += 1) {
+            result.add(paths.get(routeOf[i]));
+        }
+        return result;
+    }
+
+    /** Appends ITEM to LIST and returns its index. */
+    private static <T> int add(List<T> list, T item) {
+        list.add(item);
+        return list.size() - 1;
+    }
+
+    /**
+     * Computes the shortest-path distance in miles from the node closest to each source to the
+     * node closest to each target, and passes each row to ROWS as soon as it is known.
+     * @param g The graph to use.
+     * @param request The requested sources and targets.
+     * @param rows Receives the row of each source, possibly from several threads at once.
+     *             Unreachable targets have an infinite distance.
+     */
+    public static void distanceMatrix(StreetMapGraph g, MatrixRequest request,
+                                      DistanceMatrix.RowConsumer rows) {
+        DistanceMatrix.compute(g, closest(g, request.sources), closest(g, request.targets), rows);
+    }
+
+    /** Returns the full distance matrix for REQUEST, with one row per source. */
+    public static double[][] distanceMatrix(StreetMapGraph g, MatrixRequest request) {
+        return DistanceMatrix.compute(g, closest(g, request.sources), closest(g, request.targets));
+    }
+
+    private static long[] closest(StreetMapGraph g, List<Location> locations) {
+        long[] ids = new long[locations.size()];
+        for (int i = 0; i < ids.length; i += 1) {
+            ids[i] = g.closest(locations.get(i).lat(), locations.get(i).lon());
+        }
+        return ids;
+    }
 
     /**
      * Create the list of directions corresponding to a route on the graph.
@@ -0,0 +1,130 @@
+package huskymaps.server.logic;
+
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * A shared cache of decoded map tiles, bounded by the total size of their pixel data and
+ * evicting the least recently used tile first.
+ *
+ * When several requests miss on the same tile at once, only the first one decodes it; the
+ * others wait for that decode instead of reading the file again. Tiles that fail to load are
+ * not cached. Cached images are shared between requests and must not be modified.
+ */
+public class TileCache {
+    private final long capacityBytes;
+    private final Function<Rasterer.Tile, BufferedImage> loader;
+
+    /** Cached tiles in access order, guarded by this cache's lock. */
+    private final LinkedHashMap<Rasterer.Tile, BufferedImage> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    /** Decodes in progress, guarded by this cache's lock. */
+    private final Map<Rasterer.Tile, CompletableFuture<BufferedImage>> loading = new HashMap<>();
+    private long sizeBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param capacityBytes The most pixel bytes to keep.
+     * @param loader Decodes a tile, returning null if it cannot be read.
+     */
+    public TileCache(long capacityBytes, Function<Rasterer.Tile, BufferedImage> loader) {
+        this.capacityBytes = capacityBytes;
+        this.loader = loader;
+    }
+
+    /** Returns the decoded image for TILE, loading it if necessary, or null if it cannot be read. */
+    public BufferedImage get(Rasterer.Tile tile) {
+        CompletableFuture<BufferedImage> pending;
+        boolean owner = false;
+        synchronized (this) {
+            BufferedImage image = tiles.get(tile);
+            if (image != null) {
+                hits += 1;
+                return image;
+            }
+            misses += 1;
+            pending = loading.get(tile);
+            if (pending == null) {
+                pending = new CompletableFuture<>();
+                loading.put(tile, pending);
+                owner = true;
+            }
+        }
+        if (!owner) {
+            return pending.join();
+        }
+        BufferedImage image = null;
+        try {
+            image = loader.apply(tile);
+        } finally {
+            synchronized (this) {
+                loading.remove(tile);
+                if (image != null) {
+                    put(tile, image);
+                }
+            }
+            pending.complete(image);
+        }
+        return image;
+    }
+
+    /** Adds IMAGE and evicts least recently used tiles until the cache fits. */
+    private void put(Rasterer.Tile tile, BufferedImage image) {
+        long bytes = sizeOf(image);
+        if (bytes > capacityBytes) {
+            return;
+        }
+        BufferedImage previous = tiles.put(tile, image);
+        if (previous != null) {
+            sizeBytes -= sizeOf(previous);
+        }
+        sizeBytes += bytes;
+        Iterator<BufferedImage> eldest = tiles.values().iterator();
+        while (sizeBytes > capacityBytes) {
+            sizeBytes -= sizeOf(eldest.next());
+            eldest.remove();
+            evictions += 1;
+        }
+    }
+
+    /** Returns the number of bytes of pixel data held by IMAGE. */
+    static long sizeOf(BufferedImage image) {
+        long bitsPerPixel = image.getColorModel().getPixelSize();
+        return (long) image.getWidth() * image.getHeight() * ((bitsPerPixel + 7) / 8);
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /** Returns the number of cached tiles. */
+    public synchronized int size() {
+        return tiles.size();
+    }
+
+    /** Returns the pixel bytes held by the cached tiles. */
+    public synchronized long sizeBytes() {
+        return sizeBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("TileCache(%d tiles, %d/%d bytes, %d hits, %d misses, %d evictions)",
+                tiles.size(), sizeBytes, capacityBytes, hits, misses, evictions);
+    }
+}
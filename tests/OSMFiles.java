@@ -0,0 +1,84 @@
+package huskymaps.tests;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static huskymaps.utils.Constants.ROOT_LAT;
+import static huskymaps.utils.Constants.ROOT_LON;
+
+/** Writes small OSM files for tests to load, in a temporary directory removed on exit. */
+final class OSMFiles {
+    /** The suffix of the binary snapshot StreetMapGraph keeps next to an OSM file. */
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    private OSMFiles() {
+    }
+
+    /** Returns the path of a new gzipped OSM XML file holding XML. */
+    static String writeXML(String xml) throws IOException {
+        File file = newFile(".osm.gz");
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+            out.write(xml.getBytes(StandardCharsets.UTF_8));
+        }
+        return file.getPath();
+    }
+
+    /** Returns the path of a new file ending in SUFFIX holding BYTES, such as an OSM PBF file. */
+    static String writeBytes(String suffix, byte[] bytes) throws IOException {
+        File file = newFile(suffix);
+        Files.write(file.toPath(), bytes);
+        return file.getPath();
+    }
+
+    private static File newFile(String suffix) throws IOException {
+        File directory = Files.createTempDirectory("huskymaps").toFile();
+        directory.deleteOnExit();
+        File file = new File(directory, "map" + suffix);
+        file.deleteOnExit();
+        // Files are deleted in the reverse order they were registered, so the directory goes last
+        new File(file.getPath() + SNAPSHOT_SUFFIX).deleteOnExit();
+        return file;
+    }
+
+    /** Returns the XML of a node with the given id and coordinates. */
+    static String node(long id, double lat, double lon) {
+        return "<node id=\"" + id + "\" lat=\"" + lat + "\" lon=\"" + lon + "\"/>\n";
+    }
+
+    /** Returns the XML of a node with the given id and coordinates, tagged with NAME. */
+    static String node(long id, double lat, double lon, String name) {
+        String escaped = name.replace("&", "&amp;").replace("\"", "&quot;").replace("<", "&lt;");
+        return "<node id=\"" + id + "\" lat=\"" + lat + "\" lon=\"" + lon + "\">\n"
+                + "<tag k=\"name\" v=\"" + escaped + "\"/>\n</node>\n";
+    }
+
+    /** Returns the XML of a residential street through the nodes REFS. */
+    static String way(long id, long... refs) {
+        StringBuilder sb = new StringBuilder("<way id=\"" + id + "\">\n");
+        for (long ref : refs) {
+            sb.append("<nd ref=\"").append(ref).append("\"/>\n");
+        }
+        return sb.append("<tag k=\"highway\" v=\"residential\"/>\n</way>\n").toString();
+    }
+
+    /** Returns an OSM document with one node per name in NAMES, spread around the map center. */
+    static String namedNodes(List<String> names) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < names.size(); i += 1) {
+            sb.append(node(i + 1, ROOT_LAT + i * 1e-4, ROOT_LON - i * 1e-4, names.get(i)));
+        }
+        return osm(sb.toString());
+    }
+
+    /** Wraps ELEMENTS in an OSM document. */
+    static String osm(String elements) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<osm version=\"0.6\">\n"
+                + elements + "</osm>\n";
+    }
+}
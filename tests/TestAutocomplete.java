@@ -0,0 +1,189 @@
+package huskymaps.tests;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import huskymaps.Autocomplete;
+import huskymaps.CompactGraph;
+import huskymaps.OSMIngestion;
+import huskymaps.StreetMapGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static huskymaps.utils.Constants.AUTOCOMPLETE_MAX_RESULTS;
+import static huskymaps.utils.Constants.PLACES_PATH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks prefix search, which is answered by a ternary search trie, against a scan of every
+ * location name ranked by importance.
+ */
+public class TestAutocomplete {
+    private static final int NUM_PLACES = 20;
+    private static final int NUM_STOPS = 200;
+    private static final int[] KS = {1, 2, 3, 5, AUTOCOMPLETE_MAX_RESULTS, 1000};
+    private static StreetMapGraph graph;
+    private static Map<String, Integer> importance;
+    private static boolean initialized = false;
+
+    @Before
+    public void setUp() throws IOException {
+        if (initialized) {
+            return;
+        }
+        List<String> names = new ArrayList<>(List.of(
+                "Pike Place Market", "pike place market", "PIKE PLACE MARKET!", "Pike-Place Market",
+                "Pike Street", "Pike Street", "Pine Street", "Café Allegro", "Cafe Allegro",
+                "Fish & Chips", "Seattle", "Seattle Center", "Seattle Central College", "Sea-Tac",
+                "7-Eleven", "76", "A", "B", "Z", "!!!", "   ", "Zoo"));
+        // Keys inserted in sorted order would make an unbalanced trie a long chain
+        for (int i = 0; i < NUM_STOPS; i += 1) {
+            names.add(String.format("Stop %03d", i));
+        }
+        // Names of well-known places carry an importance, and their variants share their keys
+        try (Reader reader = new FileReader(PLACES_PATH)) {
+            Map<String, Integer> places = new Gson().fromJson(reader,
+                    new TypeToken<HashMap<String, Integer>>() {}.getType());
+            for (String place : new TreeSet<>(places.keySet()).stream().limit(NUM_PLACES).toList()) {
+                names.add(place);
+                names.add(place.toUpperCase());
+                names.add(place + " Station");
+            }
+        }
+        String path = OSMFiles.writeXML(OSMFiles.namedNodes(names));
+        graph = new StreetMapGraph(path);
+        importance = importance(OSMIngestion.read(path, 1).graph);
+        initialized = true;
+    }
+
+    /** Returns the highest importance of each location name of G whose cleaned name is not empty. */
+    static Map<String, Integer> importance(CompactGraph g) {
+        Map<String, Integer> result = new HashMap<>();
+        for (int v = 0; v < g.size(); v += 1) {
+            String name = g.name(v);
+            if (name != null && !Autocomplete.clean(name).isEmpty()) {
+                result.merge(name, g.importance(v), Math::max);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the K most important names whose cleaned name starts with the cleaned PREFIX. */
+    private static List<String> scan(String prefix, int k) {
+        String key = Autocomplete.clean(prefix);
+        List<String> result = new ArrayList<>();
+        if (key.isEmpty()) {
+            return result;
+        }
+        for (String name : importance.keySet()) {
+            if (Autocomplete.clean(name).startsWith(key)) {
+                result.add(name);
+            }
+        }
+        result.sort(Comparator.<String>comparingInt(importance::get).reversed()
+                .thenComparing(Comparator.naturalOrder()));
+        return result.subList(0, Math.min(k, result.size()));
+    }
+
+    /** Returns every nonempty prefix of every cleaned name. */
+    private static Set<String> prefixes() {
+        Set<String> result = new LinkedHashSet<>();
+        for (String name : importance.keySet()) {
+            String key = Autocomplete.clean(name);
+            for (int i = 1; i <= key.length(); i += 1) {
+                result.add(key.substring(0, i));
+            }
+        }
+        return result;
+    }
+
+    /** Returns every prefix of every cleaned name, and a few queries that match nothing. */
+    private static Set<String> queries() {
+        Set<String> result = prefixes();
+        result.addAll(List.of("zzz", "pike place marketx", "stop 1000", "cafè"));
+        return result;
+    }
+
+    @Test
+    public void testMatchesScan() {
+        for (String prefix : queries()) {
+            assertEquals("Wrong names for \"" + prefix + "\"", scan(prefix, AUTOCOMPLETE_MAX_RESULTS),
+                    graph.getLocationsByPrefix(prefix));
+            assertEquals("Wrong names for \"" + prefix + "\"", scan(prefix, Integer.MAX_VALUE),
+                    graph.getLocationsByPrefix(prefix, Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void testTopKMatchesScan() {
+        for (String prefix : queries()) {
+            for (int k : KS) {
+                assertEquals("Wrong top " + k + " names for \"" + prefix + "\"", scan(prefix, k),
+                        graph.getLocationsByPrefix(prefix, k));
+            }
+        }
+    }
+
+    @Test
+    public void testTiesOnImportance() {
+        // The stops all have the same importance, so a subtrie whose best name only ties with
+        // the K names found so far can still hold names that come first alphabetically
+        for (int k : KS) {
+            List<String> stops = graph.getLocationsByPrefix("s", k);
+            assertEquals(scan("s", k), stops);
+            assertEquals(scan("stop 1", k), graph.getLocationsByPrefix("stop 1", k));
+        }
+        assertEquals(List.of("Stop 000", "Stop 001"), graph.getLocationsByPrefix("stop 0", 2));
+        assertEquals(List.of("Stop 199"), graph.getLocationsByPrefix("stop 199", 1));
+    }
+
+    @Test
+    public void testPrefixIsCleaned() {
+        assertEquals(scan("pike p", 1000), graph.getLocationsByPrefix("Pike P", 1000));
+        assertEquals(scan("pike p", 1000), graph.getLocationsByPrefix("P-I-K-E P!", 1000));
+        // Accented letters are kept, so they are not the same as the unaccented ones
+        assertTrue(graph.getLocationsByPrefix("CAFÉ", 1000).contains("Café Allegro"));
+        assertTrue(!graph.getLocationsByPrefix("cafe", 1000).contains("Café Allegro"));
+    }
+
+    @Test
+    public void testEmptyPrefix() {
+        assertEquals(List.of(), graph.getLocationsByPrefix(""));
+        assertEquals(List.of(), graph.getLocationsByPrefix("!?-", 1000));
+        assertEquals(List.of(), graph.getLocationsByPrefix("pike", 0));
+    }
+
+    @Test
+    public void testNamesWithTheSameKey() {
+        // Distinct names that clean to the same key are all returned, and a name on several
+        // vertices only once
+        List<String> pike = graph.getLocationsByPrefix("pike place market", 1000);
+        assertTrue(pike.containsAll(List.of("Pike Place Market", "pike place market", "PIKE PLACE MARKET!")));
+        assertEquals(1, graph.getLocationsByPrefix("pike street", 1000).stream()
+                .filter("Pike Street"::equals).count());
+        assertTrue(graph.getLocationsByPrefix("pikeplace", 1000).contains("Pike-Place Market"));
+        assertTrue(!pike.contains("Pike-Place Market"));
+    }
+
+    @Test
+    public void testSortedKeys() {
+        List<String> stops = graph.getLocationsByPrefix("stop ", Integer.MAX_VALUE);
+        assertEquals(scan("stop ", Integer.MAX_VALUE), stops);
+        assertTrue(stops.size() >= NUM_STOPS);
+        assertEquals(scan("stop 123", 1000), graph.getLocationsByPrefix("stop 123", 1000));
+        // The trie has exactly one node per distinct prefix of the keys
+        assertEquals(prefixes().size(), graph.autocomplete().trieSize());
+    }
+}
@@ -0,0 +1,137 @@
+package huskymaps.tests;
+
+import astar.WeightedEdge;
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import huskymaps.BidirectionalAStarSolver;
+import huskymaps.CompactAStarSolver;
+import huskymaps.ContractionHierarchy;
+import huskymaps.Heuristic;
+import huskymaps.Landmarks;
+import huskymaps.StreetMapGraph;
+import huskymaps.params.RouteRequest;
+import huskymaps.server.logic.Router;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import static huskymaps.utils.Constants.BASE_DIR_PATH;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that bidirectional A*, plain A* and contraction hierarchy queries find routes as short
+ * as Dijkstra's algorithm does.
+ */
+public class TestBidirectionalAStar {
+    private static final String REQUEST_FORMAT = BASE_DIR_PATH + "tests/router/request%d.json";
+    private static final String OSM_DB_PATH_TINY = BASE_DIR_PATH + "tiny.osm.gz";
+    private static final String OSM_DB_PATH_SMALL = BASE_DIR_PATH + "seattle-small.osm.gz";
+    private static final int NUM_TESTS = 10;
+    private static final int NUM_LANDMARKS = 4;
+    private static final double DELTA = 1e-9;
+    private static StreetMapGraph tinyGraph;
+    private static StreetMapGraph smallGraph;
+    private static boolean initialized = false;
+    private final Gson gson = new GsonBuilder()
+            .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+            .create();
+
+    @Before
+    public void setUp() {
+        if (initialized) {
+            return;
+        }
+        tinyGraph = new StreetMapGraph(OSM_DB_PATH_TINY);
+        tinyGraph.setLandmarks(Landmarks.build(tinyGraph, NUM_LANDMARKS));
+        smallGraph = new StreetMapGraph(OSM_DB_PATH_SMALL);
+        smallGraph.setContractionHierarchy(ContractionHierarchy.build(smallGraph));
+        smallGraph.setLandmarks(Landmarks.build(smallGraph, NUM_LANDMARKS));
+        initialized = true;
+    }
+
+    @Test
+    public void testAllPairsMatchDijkstra() {
+        for (Heuristic heuristic : Heuristic.values()) {
+            tinyGraph.setHeuristic(heuristic);
+            for (long start : tinyGraph.vertices()) {
+                Map<Long, Double> distances = dijkstra(tinyGraph, start);
+                for (long end : tinyGraph.vertices()) {
+                    BidirectionalAStarSolver solver = new BidirectionalAStarSolver(tinyGraph, start, end, 20);
+                    String route = heuristic + " route " + start + " -> " + end;
+                    assertEquals("Reachability differs for " + route,
+                            distances.containsKey(end), !solver.solution().isEmpty());
+                    if (distances.containsKey(end)) {
+                        List<Long> path = solver.solution();
+                        assertEquals(start, (long) path.get(0));
+                        assertEquals(end, (long) path.get(path.size() - 1));
+                        assertEquals("Weight differs for " + route, distances.get(end), solver.solutionWeight(), DELTA);
+                        assertEquals("Path does not have its weight for " + route,
+                                solver.solutionWeight(), tinyGraph.pathWeight(path), DELTA);
+                    }
+                }
+            }
+        }
+        tinyGraph.setHeuristic(Heuristic.GREAT_CIRCLE);
+    }
+
+    @Test
+    public void testRouterRequestsMatchDijkstra() throws IOException {
+        for (int i = 0; i < NUM_TESTS; i += 1) {
+            RouteRequest request;
+            try (Reader reader = new FileReader(String.format(REQUEST_FORMAT, i))) {
+                request = gson.fromJson(reader, RouteRequest.class);
+            }
+            long start = smallGraph.closest(request.startLat, request.startLon);
+            long end = smallGraph.closest(request.endLat, request.endLon);
+            Double expected = dijkstra(smallGraph, start).get(end);
+            for (Heuristic heuristic : Heuristic.values()) {
+                smallGraph.setHeuristic(heuristic);
+                for (Router.Algorithm algorithm : Router.Algorithm.values()) {
+                    List<Long> path = Router.shortestPath(smallGraph, request, algorithm);
+                    String route = algorithm + " with " + heuristic + " on request " + i;
+                    assertEquals("Reachability differs for " + route, expected != null, !path.isEmpty());
+                    if (expected != null) {
+                        assertEquals(start, (long) path.get(0));
+                        assertEquals(end, (long) path.get(path.size() - 1));
+                        assertEquals("Weight differs for " + route, expected, smallGraph.pathWeight(path), DELTA);
+                    }
+                }
+                // Searches reuse pooled state, so repeating one must not change it
+                CompactAStarSolver astar = new CompactAStarSolver(smallGraph, start, end, 20);
+                BidirectionalAStarSolver bidirectional = new BidirectionalAStarSolver(smallGraph, start, end, 20);
+                assertEquals(astar.solutionWeight(), bidirectional.solutionWeight(), DELTA);
+                assertEquals(astar.solution(), new CompactAStarSolver(smallGraph, start, end, 20).solution());
+            }
+        }
+        smallGraph.setHeuristic(Heuristic.GREAT_CIRCLE);
+    }
+
+    /** Returns the distance from START to every vertex of G reachable from it. */
+    private static Map<Long, Double> dijkstra(StreetMapGraph g, long start) {
+        Map<Long, Double> distances = new HashMap<>();
+        PriorityQueue<Map.Entry<Long, Double>> fringe = new PriorityQueue<>(Map.Entry.comparingByValue());
+        fringe.add(Map.entry(start, 0.0));
+        while (!fringe.isEmpty()) {
+            Map.Entry<Long, Double> closest = fringe.remove();
+            long v = closest.getKey();
+            if (distances.containsKey(v)) {
+                continue;
+            }
+            distances.put(v, closest.getValue());
+            for (WeightedEdge<Long> edge : g.neighbors(v)) {
+                if (!distances.containsKey(edge.to())) {
+                    fringe.add(Map.entry(edge.to(), closest.getValue() + edge.weight()));
+                }
+            }
+        }
+        return distances;
+    }
+}
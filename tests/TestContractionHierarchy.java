@@ -0,0 +1,84 @@
+package huskymaps.tests;
+
+import astar.WeightedEdge;
+import huskymaps.CompactAStarSolver;
+import huskymaps.ContractionHierarchy;
+import huskymaps.StreetMapGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static huskymaps.utils.Constants.BASE_DIR_PATH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/** Checks contraction hierarchy queries against plain A* search. */
+public class TestContractionHierarchy {
+    private static final String OSM_DB_PATH_TINY = BASE_DIR_PATH + "tiny.osm.gz";
+    private static final double DELTA = 1e-9;
+    private static StreetMapGraph tinyGraph;
+    private static ContractionHierarchy ch;
+    private static boolean initialized = false;
+
+    @Before
+    public void setUp() throws IOException {
+        if (initialized) {
+            return;
+        }
+        tinyGraph = new StreetMapGraph(OSM_DB_PATH_TINY);
+        File file = File.createTempFile("tiny", ".ch");
+        file.deleteOnExit();
+        ContractionHierarchy.build(tinyGraph).write(file.getPath());
+        assertTrue(tinyGraph.loadContractionHierarchy(file.getPath()));
+        ch = tinyGraph.contractionHierarchy();
+        initialized = true;
+    }
+
+    @Test
+    public void testAllPairsMatchAStar() {
+        for (long start : tinyGraph.vertices()) {
+            for (long end : tinyGraph.vertices()) {
+                CompactAStarSolver expected = new CompactAStarSolver(tinyGraph, start, end, 20);
+                List<Long> actual = ch.shortestPath(start, end);
+                assertEquals("Reachability differs for " + start + " -> " + end,
+                        expected.solution().isEmpty(), actual.isEmpty());
+                if (!actual.isEmpty()) {
+                    assertEquals(start, (long) actual.get(0));
+                    assertEquals(end, (long) actual.get(actual.size() - 1));
+                    assertEquals("Path weight differs for " + start + " -> " + end,
+                            expected.solutionWeight(), pathWeight(actual), DELTA);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testStaleIndexIsRejected() throws IOException {
+        StreetMapGraph other = new StreetMapGraph(BASE_DIR_PATH + "seattle-small.osm.gz");
+        File file = File.createTempFile("tiny", ".ch");
+        file.deleteOnExit();
+        ch.write(file.getPath());
+        assertNull(ContractionHierarchy.read(other, file.getPath()));
+        assertNull(ContractionHierarchy.read(tinyGraph, BASE_DIR_PATH + "missing.ch"));
+    }
+
+    /** Returns the weight of PATH, checking that each step is an edge of the graph. */
+    private static double pathWeight(List<Long> path) {
+        double weight = 0;
+        for (int i = 0; i + 1 < path.size(); i += 1) {
+            double step = Double.POSITIVE_INFINITY;
+            for (WeightedEdge<Long> edge : tinyGraph.neighbors(path.get(i))) {
+                if (edge.to().equals(path.get(i + 1))) {
+                    step = Math.min(step, edge.weight());
+                }
+            }
+            assertTrue("No edge " + path.get(i) + " -> " + path.get(i + 1), step < Double.POSITIVE_INFINITY);
+            weight += step;
+        }
+        return weight;
+    }
+}
@@ -0,0 +1,108 @@
+package huskymaps.tests;
+
+import huskymaps.ContractionHierarchy;
+import huskymaps.StreetMapGraph;
+import huskymaps.params.Location;
+import huskymaps.params.MatrixRequest;
+import huskymaps.params.RouteRequest;
+import huskymaps.server.logic.Router;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static huskymaps.utils.Constants.BASE_DIR_PATH;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks distance matrices against the weights of routes solved one pair at a time, both with
+ * the contraction hierarchy's target buckets and with the Dijkstra fallback.
+ */
+public class TestDistanceMatrix {
+    private static final String OSM_DB_PATH_TINY = BASE_DIR_PATH + "tiny.osm.gz";
+    private static final int MAX_LOCATIONS = 12;
+    private static final double DELTA = 1e-6;
+    private static StreetMapGraph chGraph;
+    private static StreetMapGraph plainGraph;
+    private static MatrixRequest request;
+    private static boolean initialized = false;
+
+    @Before
+    public void setUp() {
+        if (initialized) {
+            return;
+        }
+        chGraph = new StreetMapGraph(OSM_DB_PATH_TINY);
+        chGraph.setContractionHierarchy(ContractionHierarchy.build(chGraph));
+        plainGraph = new StreetMapGraph(OSM_DB_PATH_TINY);
+
+        // Spread the locations over the vertices; every source is also a target
+        List<Location> sources = new ArrayList<>();
+        int step = Math.max(1, plainGraph.size() / MAX_LOCATIONS);
+        for (int v = 0; v < plainGraph.size(); v += step) {
+            long id = plainGraph.id(v);
+            sources.add(new Location(plainGraph.lat(id), plainGraph.lon(id), null));
+        }
+        List<Location> targets = new ArrayList<>(sources);
+        // Duplicate targets must each get their own column
+        targets.add(sources.get(0));
+        targets.add(sources.get(sources.size() - 1));
+        targets.add(sources.get(0));
+        request = new MatrixRequest(sources, targets);
+        initialized = true;
+    }
+
+    @Test
+    public void testContractionHierarchyMatchesRoutes() {
+        assertMatchesRoutes(chGraph);
+    }
+
+    @Test
+    public void testDijkstraMatchesRoutes() {
+        assertMatchesRoutes(plainGraph);
+    }
+
+    @Test
+    public void testRowsAreStreamedOncePerSource() {
+        int[] calls = new int[request.sources.size()];
+        Router.distanceMatrix(plainGraph, request, (source, distances) -> {
+            synchronized (calls) {
+                calls[source] += 1;
+            }
+            assertEquals(request.targets.size(), distances.length);
+        });
+        for (int i = 0; i < calls.length; i += 1) {
+            assertEquals("Row " + i + " was not sent exactly once", 1, calls[i]);
+        }
+    }
+
+    private static void assertMatchesRoutes(StreetMapGraph g) {
+        double[][] matrix = Router.distanceMatrix(g, request);
+        assertEquals(request.sources.size(), matrix.length);
+        for (int i = 0; i < request.sources.size(); i += 1) {
+            assertEquals(request.targets.size(), matrix[i].length);
+            for (int j = 0; j < request.targets.size(); j += 1) {
+                double expected = routeWeight(request.sources.get(i), request.targets.get(j));
+                assertEquals("Distance differs from source " + i + " to target " + j,
+                        expected, matrix[i][j], DELTA);
+            }
+        }
+    }
+
+    /** Returns the weight of the A* route between the vertices closest to FROM and TO. */
+    private static double routeWeight(Location from, Location to) {
+        RouteRequest route = RouteRequest.from(Map.of(
+                "start_lat", from.lat(),
+                "start_lon", from.lon(),
+                "end_lat", to.lat(),
+                "end_lon", to.lon()
+        ));
+        List<Long> path = Router.shortestPath(plainGraph, route, Router.Algorithm.ASTAR);
+        if (path.isEmpty()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return plainGraph.pathWeight(path);
+    }
+}
@@ -0,0 +1,219 @@
+package huskymaps.tests;
+
+import huskymaps.Autocomplete;
+import huskymaps.FuzzySearch;
+import huskymaps.OSMIngestion;
+import huskymaps.StreetMapGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks typo-tolerant search, which looks up the words of a query in a BK-tree, against a scan
+ * of every location name ranked by typos and importance.
+ */
+public class TestFuzzySearch {
+    private static final int[] KS = {1, 3, 10, 1000};
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz ";
+    private static StreetMapGraph graph;
+    private static Map<String, Integer> importance;
+    private static Set<String> words;
+    private static boolean initialized = false;
+
+    @Before
+    public void setUp() throws IOException {
+        if (initialized) {
+            return;
+        }
+        List<String> names = new ArrayList<>(List.of(
+                "University of Washington", "University Village", "University Way NE", "UNIVERSITY WAY NE!",
+                "Universal Studios", "Unity Church", "University", "Varsity Theatre",
+                "Pike Place Market", "Pike Street", "Pike Street", "Pine Street", "Spike's Diner",
+                "Space Needle", "Seattle Center", "Seattle Central College", "Green Lake", "Greenlake Bar",
+                "Café Allegro", "Cafe Allegro", "Fish & Chips", "Ivar's Fish Bar", "Fish Fish Fish",
+                "A", "Ab", "Abc", "Abcd", "Abcde", "7-Eleven", "76", "!!!"));
+        for (int i = 0; i < 30; i += 1) {
+            names.add("Stop " + i);
+        }
+        String path = OSMFiles.writeXML(OSMFiles.namedNodes(names));
+        graph = new StreetMapGraph(path);
+        importance = TestAutocomplete.importance(OSMIngestion.read(path, 1).graph);
+        words = new TreeSet<>();
+        for (String name : importance.keySet()) {
+            words.addAll(words(name));
+        }
+        initialized = true;
+    }
+
+    /** Returns the distinct nonempty words of the cleaned S. */
+    private static Set<String> words(String s) {
+        Set<String> result = new LinkedHashSet<>();
+        for (String word : Autocomplete.clean(s).split(" ")) {
+            if (!word.isEmpty()) {
+                result.add(word);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the Levenshtein distance between A and B, filling in the full table. */
+    private static int levenshtein(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i += 1) {
+            for (int j = 0; j <= b.length(); j += 1) {
+                if (i == 0 || j == 0) {
+                    d[i][j] = i + j;
+                } else {
+                    int substitute = d[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                    d[i][j] = Math.min(substitute, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+                }
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    /**
+     * Returns the K best names for TERM: those in which every word of TERM is within
+     * maxDistance of some word, fewest typos first, then most important, then alphabetically.
+     */
+    private static List<String> scan(String term, int k) {
+        // A repeated word counts its typos once per occurrence
+        List<String> tokens = new ArrayList<>();
+        for (String token : Autocomplete.clean(term).split(" ")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        Map<String, Integer> typos = new HashMap<>();
+        for (String name : importance.keySet()) {
+            int total = 0;
+            for (String token : tokens) {
+                int best = Integer.MAX_VALUE;
+                for (String word : words(name)) {
+                    best = Math.min(best, levenshtein(token, word));
+                }
+                if (best > FuzzySearch.maxDistance(token.length())) {
+                    total = -1;
+                    break;
+                }
+                total += best;
+            }
+            if (!tokens.isEmpty() && total >= 0) {
+                typos.put(name, total);
+            }
+        }
+        List<String> result = new ArrayList<>(typos.keySet());
+        result.sort(Comparator.<String>comparingInt(typos::get)
+                .thenComparing(Comparator.<String>comparingInt(importance::get).reversed())
+                .thenComparing(Comparator.naturalOrder()));
+        return result.subList(0, Math.min(k, result.size()));
+    }
+
+    /** Returns the words within MAXDISTANCE of WORD. */
+    private static Set<String> scanWords(String word, int maxDistance) {
+        Set<String> result = new TreeSet<>();
+        for (String w : words) {
+            if (levenshtein(word, w) <= maxDistance) {
+                result.add(w);
+            }
+        }
+        return result;
+    }
+
+    /** Returns every name and word, each with a few random typos, and queries that match nothing. */
+    private static Set<String> queries() {
+        Random random = new Random(373);
+        Set<String> result = new LinkedHashSet<>(List.of(
+                "univeristy", "univeristy vilage", "Univeristy of Washingtin", "pike plaec", "pine",
+                "pin", "seatle centr", "fish", "fish fish", "abxde", "stop 3", "stop", "xyzzy", "nowhere near"));
+        List<String> seeds = new ArrayList<>(importance.keySet());
+        seeds.addAll(words);
+        for (String seed : seeds) {
+            result.add(seed);
+            String typo = Autocomplete.clean(seed);
+            for (int typos = 0; typos < 3 && !typo.isEmpty(); typos += 1) {
+                int i = random.nextInt(typo.length());
+                char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+                switch (random.nextInt(3)) {
+                    case 0:
+                        typo = typo.substring(0, i) + typo.substring(i + 1);
+                        break;
+                    case 1:
+                        typo = typo.substring(0, i) + c + typo.substring(i);
+                        break;
+                    default:
+                        typo = typo.substring(0, i) + c + typo.substring(i + 1);
+                        break;
+                }
+                result.add(typo);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testMatchesScan() {
+        for (String term : queries()) {
+            for (int k : KS) {
+                assertEquals("Wrong top " + k + " names for \"" + term + "\"", scan(term, k),
+                        graph.getLocationsFuzzy(term, k));
+            }
+        }
+        assertEquals(scan("pike", Integer.MAX_VALUE), graph.getLocationsFuzzy("pike", Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testTypos() {
+        List<String> university = graph.getLocationsFuzzy("univeristy", 1000);
+        assertTrue(university.contains("University of Washington"));
+        assertTrue(university.contains("University Village"));
+        assertTrue(!university.contains("Varsity Theatre"));
+        assertEquals("University Village", graph.getLocationsFuzzy("univeristy vilage", 1).get(0));
+        assertTrue(graph.getLocationsFuzzy("Univeristy of Washingtin", 1000).contains("University of Washington"));
+        // Short words must match exactly
+        assertTrue(graph.getLocationsFuzzy("pin", 1000).isEmpty());
+        assertEquals(List.of("Pine Street"), graph.getLocationsFuzzy("pine", 1));
+    }
+
+    @Test
+    public void testEmptyTerm() {
+        assertTrue(graph.getLocationsFuzzy("", 10).isEmpty());
+        assertTrue(graph.getLocationsFuzzy("!?-", 10).isEmpty());
+        assertTrue(graph.getLocationsFuzzy("university", 0).isEmpty());
+    }
+
+    @Test
+    public void testBKTreeMatchesScan() {
+        FuzzySearch fuzzy = graph.fuzzySearch();
+        Set<String> indexed = new TreeSet<>();
+        for (int w = 0; w < fuzzy.wordCount(); w += 1) {
+            indexed.add(fuzzy.word(w));
+        }
+        assertEquals(words, indexed);
+        Set<String> queries = new LinkedHashSet<>(words);
+        for (String term : queries()) {
+            queries.addAll(words(term));
+        }
+        for (String word : queries) {
+            for (int maxDistance = 0; maxDistance <= 3; maxDistance += 1) {
+                assertEquals("Wrong words within " + maxDistance + " of \"" + word + "\"",
+                        scanWords(word, maxDistance), new TreeSet<>(fuzzy.similarWords(word, maxDistance)));
+                assertEquals(fuzzy.similarWords(word, maxDistance).size(),
+                        new TreeSet<>(fuzzy.similarWords(word, maxDistance)).size());
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package huskymaps.tests;
+
+import huskymaps.IndexedMinHeap;
+import org.junit.Test;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Checks the indexed binary heap used by the A* solvers against a sorted set. */
+public class TestIndexedMinHeap {
+    private static final int N = 200;
+    private static final int NUM_OPERATIONS = 100_000;
+    private static final double DELTA = 0;
+
+    @Test
+    public void testDecreaseKey() {
+        IndexedMinHeap heap = new IndexedMinHeap(N);
+        heap.pushOrDecrease(5, 1);
+        heap.pushOrDecrease(3, 2);
+        heap.pushOrDecrease(4, 3);
+        heap.pushOrDecrease(6, 4);
+        // Lowering a priority moves the vertex up, and raising one is ignored
+        heap.pushOrDecrease(1, 4);
+        heap.pushOrDecrease(10, 2);
+        heap.pushOrDecrease(4, 1);
+        assertEquals(4, heap.size());
+        assertEquals(1, heap.peekPriority(), DELTA);
+        assertEquals(4, heap.pop());
+        assertEquals(3, heap.peekPriority(), DELTA);
+        assertEquals(2, heap.pop());
+        assertEquals(4, heap.peekPriority(), DELTA);
+        int next = heap.pop();
+        assertTrue(next == 1 || next == 3);
+        assertEquals(4, heap.peekPriority(), DELTA);
+        assertEquals(1 + 3 - next, heap.pop());
+        assertTrue(heap.isEmpty());
+        assertFalse(heap.contains(4));
+    }
+
+    @Test
+    public void testClearAndReuse() {
+        IndexedMinHeap heap = new IndexedMinHeap(N);
+        for (int v = 0; v < N; v += 1) {
+            heap.pushOrDecrease(N - v, v);
+        }
+        for (int i = 0; i < N / 2; i += 1) {
+            assertEquals(N - 1 - i, heap.pop());
+        }
+        heap.clear();
+        assertTrue(heap.isEmpty());
+        for (int v = 0; v < N; v += 1) {
+            assertFalse("Vertex " + v + " survived clear", heap.contains(v));
+        }
+        // Vertices left in the heap before the clear are pushed anew rather than decreased
+        heap.pushOrDecrease(1000, 0);
+        heap.pushOrDecrease(2000, N - 1);
+        heap.pushOrDecrease(500, 1);
+        assertEquals(3, heap.size());
+        assertEquals(1, heap.pop());
+        assertEquals(0, heap.pop());
+        assertEquals(N - 1, heap.pop());
+        assertTrue(heap.isEmpty());
+        heap.clear();
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void testMatchesSortedSet() {
+        Random random = new Random(373);
+        IndexedMinHeap heap = new IndexedMinHeap(N);
+        Map<Integer, Double> priorities = new HashMap<>();
+        TreeSet<Integer> expected = new TreeSet<>(Comparator.<Integer>comparingDouble(priorities::get)
+                .thenComparingInt(v -> v));
+        for (int i = 0; i < NUM_OPERATIONS; i += 1) {
+            int operation = random.nextInt(100);
+            if (operation < 60) {
+                int v = random.nextInt(N);
+                // Few distinct priorities, so that ties are common
+                double priority = random.nextInt(50);
+                if (!priorities.containsKey(v)) {
+                    priorities.put(v, priority);
+                    expected.add(v);
+                } else if (priority < priorities.get(v)) {
+                    expected.remove(v);
+                    priorities.put(v, priority);
+                    expected.add(v);
+                }
+                heap.pushOrDecrease(priority, v);
+            } else if (operation < 99) {
+                if (!expected.isEmpty()) {
+                    double min = priorities.get(expected.first());
+                    assertEquals(min, heap.peekPriority(), DELTA);
+                    int v = heap.pop();
+                    assertEquals("Popped a vertex without the smallest priority", min, priorities.get(v), DELTA);
+                    assertTrue(expected.remove(v));
+                    priorities.remove(v);
+                }
+            } else {
+                heap.clear();
+                expected.clear();
+                priorities.clear();
+            }
+            assertEquals(expected.size(), heap.size());
+            int v = random.nextInt(N);
+            assertEquals(priorities.containsKey(v), heap.contains(v));
+        }
+    }
+}
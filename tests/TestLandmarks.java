@@ -0,0 +1,94 @@
+package huskymaps.tests;
+
+import astar.WeightedEdge;
+import huskymaps.CompactAStarSolver;
+import huskymaps.Heuristic;
+import huskymaps.Landmarks;
+import huskymaps.StreetMapGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import static huskymaps.utils.Constants.BASE_DIR_PATH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Checks that the ALT heuristic is admissible and that A* with it still finds shortest paths. */
+public class TestLandmarks {
+    private static final String OSM_DB_PATH_TINY = BASE_DIR_PATH + "tiny.osm.gz";
+    private static final int NUM_LANDMARKS = 4;
+    private static final double DELTA = 1e-9;
+    private static StreetMapGraph tinyGraph;
+    private static Landmarks landmarks;
+    private static boolean initialized = false;
+
+    @Before
+    public void setUp() {
+        if (initialized) {
+            return;
+        }
+        tinyGraph = new StreetMapGraph(OSM_DB_PATH_TINY);
+        landmarks = Landmarks.build(tinyGraph, NUM_LANDMARKS);
+        tinyGraph.setLandmarks(landmarks);
+        initialized = true;
+    }
+
+    @Test
+    public void testBoundNeverExceedsDistance() {
+        tinyGraph.setHeuristic(Heuristic.LANDMARKS);
+        for (long start : tinyGraph.vertices()) {
+            Map<Long, Double> distances = dijkstra(start);
+            for (Map.Entry<Long, Double> entry : distances.entrySet()) {
+                long end = entry.getKey();
+                double landmarkBound = landmarks.lowerBound(tinyGraph.indexOf(start), tinyGraph.indexOf(end));
+                assertTrue("Landmark bound " + landmarkBound + " exceeds distance " + entry.getValue()
+                        + " for " + start + " -> " + end, landmarkBound <= entry.getValue() + DELTA);
+                double bound = tinyGraph.estimatedDistanceToGoal(start, end);
+                assertTrue("Bound " + bound + " exceeds distance " + entry.getValue()
+                        + " for " + start + " -> " + end, bound <= entry.getValue() + DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void testRoutesMatchGreatCircle() {
+        for (long start : tinyGraph.vertices()) {
+            for (long end : tinyGraph.vertices()) {
+                tinyGraph.setHeuristic(Heuristic.GREAT_CIRCLE);
+                CompactAStarSolver expected = new CompactAStarSolver(tinyGraph, start, end, 20);
+                tinyGraph.setHeuristic(Heuristic.LANDMARKS);
+                CompactAStarSolver actual = new CompactAStarSolver(tinyGraph, start, end, 20);
+                assertEquals("Reachability differs for " + start + " -> " + end,
+                        expected.solution().isEmpty(), actual.solution().isEmpty());
+                assertEquals("Route weight differs for " + start + " -> " + end,
+                        expected.solutionWeight(), actual.solutionWeight(), DELTA);
+            }
+        }
+    }
+
+    /** Returns the distance from START to every vertex reachable from it. */
+    private static Map<Long, Double> dijkstra(long start) {
+        Map<Long, Double> distances = new HashMap<>();
+        PriorityQueue<Map.Entry<Long, Double>> fringe = new PriorityQueue<>(Map.Entry.comparingByValue());
+        fringe.add(Map.entry(start, 0.0));
+        while (!fringe.isEmpty()) {
+            Map.Entry<Long, Double> closest = fringe.remove();
+            long v = closest.getKey();
+            if (distances.containsKey(v)) {
+                continue;
+            }
+            distances.put(v, closest.getValue());
+            List<WeightedEdge<Long>> edges = tinyGraph.neighbors(v);
+            for (WeightedEdge<Long> edge : edges) {
+                if (!distances.containsKey(edge.to())) {
+                    fringe.add(Map.entry(edge.to(), closest.getValue() + edge.weight()));
+                }
+            }
+        }
+        return distances;
+    }
+}
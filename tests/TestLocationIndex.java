@@ -0,0 +1,125 @@
+package huskymaps.tests;
+
+import huskymaps.Autocomplete;
+import huskymaps.CompactGraph;
+import huskymaps.OSMIngestion;
+import huskymaps.StreetMapGraph;
+import huskymaps.params.Location;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks exact full-name lookups, which are answered by an open-addressing hash table from
+ * cleaned name to vertices, against a scan of every vertex.
+ */
+public class TestLocationIndex {
+    private static final int NUM_STOPS = 150;
+    private static StreetMapGraph graph;
+    private static CompactGraph compact;
+    private static List<String> names;
+    private static boolean initialized = false;
+
+    @Before
+    public void setUp() throws IOException {
+        if (initialized) {
+            return;
+        }
+        names = new ArrayList<>(List.of(
+                "Pike Place Market", "pike place market", "PIKE PLACE MARKET!", "Pike-Place Market",
+                "Pike Street", "Pike Street", "Pike Street", "Café Allegro", "Cafe Allegro",
+                "Fish & Chips", "Seattle", "Seattle Center", "A", "!!!", "   ",
+                // Pairs whose cleaned names have the same String hash code, so they always probe
+                // past each other however large the table is
+                "Aan", "AC0", "Ac-0", "aan street", "ac0 street", "aanaan", "aanac0", "ac0ac0"));
+        // Enough keys to wrap the probe sequence around the end of the table
+        for (int i = 0; i < NUM_STOPS; i += 1) {
+            names.add("Bus Stop " + i);
+            if (i % 10 == 0) {
+                names.add("bus stop " + i + ".");
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < names.size(); i += 1) {
+            sb.append(OSMFiles.node(2 * i + 1, 47.6 + i * 1e-4, -122.3 - i * 1e-4, names.get(i)));
+            // Unnamed vertices in between are never found
+            sb.append(OSMFiles.node(2 * i + 2, 47.6 - i * 1e-4, -122.3 + i * 1e-4));
+        }
+        String path = OSMFiles.writeXML(OSMFiles.osm(sb.toString()));
+        graph = new StreetMapGraph(path);
+        compact = OSMIngestion.read(path, 1).graph;
+        initialized = true;
+    }
+
+    /** Returns the locations whose cleaned name equals the cleaned NAME, in vertex order. */
+    private static List<Location> scan(String name) {
+        String key = Autocomplete.clean(name);
+        List<Location> result = new ArrayList<>();
+        if (key.isEmpty()) {
+            return result;
+        }
+        for (int v = 0; v < compact.size(); v += 1) {
+            if (compact.name(v) != null && Autocomplete.clean(compact.name(v)).equals(key)) {
+                result.add(new Location(compact.lat(v), compact.lon(v), compact.name(v)));
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testMatchesScan() {
+        Set<String> queries = new LinkedHashSet<>(names);
+        for (String name : names) {
+            queries.add(name.toUpperCase());
+            queries.add(name + "?");
+            queries.add(name.substring(0, name.length() / 2));
+            queries.add(name + " North");
+        }
+        for (String query : queries) {
+            assertEquals("Wrong locations for \"" + query + "\"", scan(query), graph.getLocations(query));
+        }
+    }
+
+    @Test
+    public void testNamesWithTheSameKey() {
+        List<Location> pike = graph.getLocations("Pike Place Market");
+        assertEquals(3, pike.size());
+        assertEquals(pike, graph.getLocations("pike place market"));
+        assertEquals(List.of("Pike-Place Market"),
+                graph.getLocations("pikeplace market").stream().map(Location::name).toList());
+        assertEquals(3, graph.getLocations("PIKE STREET").size());
+        assertEquals(2, graph.getLocations("bus stop 40").size());
+        assertEquals(1, graph.getLocations("bus stop 41").size());
+    }
+
+    @Test
+    public void testCollidingKeys() {
+        assertEquals("aan".hashCode(), "ac0".hashCode());
+        assertEquals("aan street".hashCode(), "ac0 street".hashCode());
+        assertEquals(1, graph.getLocations("aan").size());
+        assertEquals(2, graph.getLocations("ac0").size());
+        assertNotEquals(graph.getLocations("aan"), graph.getLocations("ac0"));
+        assertEquals("ac0 street", graph.getLocations("AC0 Street").get(0).name());
+        // A key missing from the table probes past the keys it collides with to an empty slot
+        assertEquals("aanaan".hashCode(), "ac0aan".hashCode());
+        assertEquals("ac0ac0".hashCode(), "ac0aan".hashCode());
+        assertTrue(graph.getLocations("ac0aan").isEmpty());
+        assertEquals(1, graph.getLocations("aanac0").size());
+    }
+
+    @Test
+    public void testEmptyName() {
+        assertTrue(graph.getLocations("").isEmpty());
+        assertTrue(graph.getLocations("!!!").isEmpty());
+        assertTrue(graph.getLocations("   ").isEmpty());
+    }
+}
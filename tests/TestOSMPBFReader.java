@@ -0,0 +1,382 @@
+package huskymaps.tests;
+
+import huskymaps.CompactGraph;
+import huskymaps.OSMIngestion;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the OSM PBF decoder against the XML reader: the same map data, written both as OSM XML
+ * and as an OSM PBF file with plain and dense nodes spread over several blocks, must load to
+ * the same graph. Also checks that corrupt blobs fail with an IOException.
+ */
+public class TestOSMPBFReader {
+    private static final int NUM_NODES = 60;
+    private static final int NUM_WAYS = 15;
+    private static final int THREADS = 4;
+    /** Coordinates are stored in units of 1e-7 degrees, as OSM does. */
+    private static final int SCALE = 7;
+    private static final String[] HIGHWAYS = {"residential", "primary", "footway", "motorway_link", "service"};
+    private static final String[] NAMES = {"Pike Place Market", "  Café “Ladro” ", "Fish & Chips", "Husky Stadium"};
+
+    private static long[] ids;
+    private static long[] lats;
+    private static long[] lons;
+    private static String[] names;
+    private static List<long[]> ways;
+    private static List<String> wayHighways;
+    private static List<String> wayNames;
+    private static boolean initialized = false;
+
+    @Before
+    public void setUp() {
+        if (initialized) {
+            return;
+        }
+        Random random = new Random(373);
+        ids = new long[NUM_NODES];
+        lats = new long[NUM_NODES];
+        lons = new long[NUM_NODES];
+        names = new String[NUM_NODES];
+        for (int i = 0; i < NUM_NODES; i += 1) {
+            // Ids are not sorted, so that dense id deltas are negative as well as positive
+            ids[i] = 1000 + random.nextInt(1_000_000) * 10L + i;
+            lats[i] = 476_000_000 + random.nextInt(1_000_000);
+            lons[i] = -1_223_000_000 - random.nextInt(1_000_000);
+            names[i] = i % 7 == 0 ? NAMES[(i / 7) % NAMES.length] : null;
+        }
+        ways = new ArrayList<>();
+        wayHighways = new ArrayList<>();
+        wayNames = new ArrayList<>();
+        for (int w = 0; w < NUM_WAYS; w += 1) {
+            long[] refs = new long[2 + random.nextInt(6)];
+            for (int i = 0; i < refs.length; i += 1) {
+                refs[i] = ids[random.nextInt(NUM_NODES)];
+            }
+            if (w == 0) {
+                // A node missing from the file
+                refs[1] = 42;
+            }
+            ways.add(refs);
+            wayHighways.add(HIGHWAYS[w % HIGHWAYS.length]);
+            wayNames.add(w % 3 == 0 ? null : "Street " + w);
+        }
+        initialized = true;
+    }
+
+    @Test
+    public void testMatchesXML() throws IOException {
+        CompactGraph expected = OSMIngestion.read(OSMFiles.writeXML(toXML()), 1).graph;
+        String pbf = OSMFiles.writeBytes(".osm.pbf", toPBF(true));
+        String raw = OSMFiles.writeBytes(".osm.pbf", toPBF(false));
+        assertTrue(expected.edgeCount() > 0);
+        for (String path : new String[]{pbf, raw}) {
+            for (int threads : new int[]{1, THREADS}) {
+                CompactGraph actual = OSMIngestion.read(path, threads).graph;
+                assertEquals("Vertex count differs", expected.size(), actual.size());
+                assertEquals("Edge count differs", expected.edgeCount(), actual.edgeCount());
+                for (int v = 0; v < expected.size(); v += 1) {
+                    assertEquals(expected.id(v), actual.id(v));
+                    assertEquals(expected.lat(v), actual.lat(v), 0);
+                    assertEquals(expected.lon(v), actual.lon(v), 0);
+                    assertEquals(expected.name(v), actual.name(v));
+                    assertEquals(expected.importance(v), actual.importance(v));
+                }
+                for (int e = 0; e < expected.edgeCount(); e += 1) {
+                    assertEquals(expected.edgeName(e), actual.edgeName(e));
+                }
+                assertEquals("Fingerprint differs", expected.fingerprint(), actual.fingerprint());
+            }
+        }
+    }
+
+    @Test
+    public void testTruncatedVarint() throws IOException {
+        // The packed ids end in the middle of a varint
+        Proto dense = new Proto().bytes(1, new byte[]{2, (byte) 0x80})
+                .packed(8, 0).packed(9, 0);
+        assertCorrupt(dense, "Truncated PBF varint");
+    }
+
+    @Test
+    public void testOverlongVarint() throws IOException {
+        byte[] overlong = new byte[11];
+        Arrays.fill(overlong, (byte) 0xFF);
+        overlong[10] = 1;
+        Proto dense = new Proto().bytes(1, overlong).packed(8, 0).packed(9, 0);
+        assertCorrupt(dense, "PBF varint longer than 10 bytes");
+    }
+
+    @Test
+    public void testTruncatedField() throws IOException {
+        // The packed latitudes claim more bytes than the dense nodes hold
+        Proto dense = new Proto().packed(1, 2).key(8, 2).varint(100).varint(0);
+        assertCorrupt(dense, "Truncated PBF length-delimited field");
+    }
+
+    /**
+     * Loads a file whose only data block holds the dense nodes DENSE, written without
+     * compression, and checks that reading it fails with an IOException saying MESSAGE.
+     */
+    private static void assertCorrupt(Proto dense, String message) throws IOException {
+        Proto block = new Proto()
+                .message(1, new Proto().bytes(1, new byte[0]))
+                .message(2, new Proto().message(2, dense));
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(file);
+        writeBlob(out, "OSMHeader", header(), false);
+        writeBlob(out, "OSMData", block.toByteArray(), false);
+        String path = OSMFiles.writeBytes(".osm.pbf", file.toByteArray());
+
+        // The pipeline prints the error and keeps the graph read before it
+        PrintStream err = System.err;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(printed, true, StandardCharsets.UTF_8));
+        CompactGraph graph;
+        try {
+            graph = OSMIngestion.read(path, 1).graph;
+        } finally {
+            System.setErr(err);
+        }
+        String error = printed.toString(StandardCharsets.UTF_8);
+        assertEquals(0, graph.size());
+        assertTrue("Expected an IOException but got: " + error,
+                error.contains("java.io.IOException: " + message));
+        assertFalse(error.contains("IndexOutOfBoundsException"));
+    }
+
+    /** Returns the map data as OSM XML. */
+    private static String toXML() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < NUM_NODES; i += 1) {
+            sb.append("<node id=\"").append(ids[i])
+                    .append("\" lat=\"").append(BigDecimal.valueOf(lats[i], SCALE).toPlainString())
+                    .append("\" lon=\"").append(BigDecimal.valueOf(lons[i], SCALE).toPlainString())
+                    .append("\">");
+            if (names[i] != null) {
+                sb.append("<tag k=\"name\" v=\"").append(escape(names[i])).append("\"/>");
+            }
+            sb.append("</node>\n");
+        }
+        for (int w = 0; w < ways.size(); w += 1) {
+            sb.append("<way id=\"").append(w + 1).append("\">");
+            for (long ref : ways.get(w)) {
+                sb.append("<nd ref=\"").append(ref).append("\"/>");
+            }
+            sb.append("<tag k=\"highway\" v=\"").append(wayHighways.get(w)).append("\"/>");
+            if (wayNames.get(w) != null) {
+                sb.append("<tag k=\"name\" v=\"").append(escape(wayNames.get(w))).append("\"/>");
+            }
+            sb.append("</way>\n");
+        }
+        return OSMFiles.osm(sb.toString());
+    }
+
+    private static String escape(String s) {
+        return s.replace("&", "&amp;").replace("\"", "&quot;").replace("<", "&lt;");
+    }
+
+    /**
+     * Returns the map data as an OSM PBF file. The first third of the nodes are dense, the
+     * second third plain, and the rest dense again in the same block as the ways, each block
+     * with its own string table.
+     */
+    private static byte[] toPBF(boolean compress) throws IOException {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(file);
+        writeBlob(out, "OSMHeader", header(), compress);
+        int third = NUM_NODES / 3;
+
+        StringTable strings = new StringTable();
+        Proto group = new Proto().message(2, denseNodes(0, third, strings));
+        writeBlob(out, "OSMData", block(strings, group), compress);
+
+        strings = new StringTable();
+        group = new Proto();
+        for (int i = third; i < 2 * third; i += 1) {
+            Proto node = new Proto().uint(1, zigzag(ids[i]));
+            if (names[i] != null) {
+                node.packed(2, strings.id("name")).packed(3, strings.id(names[i]));
+            }
+            group.message(1, node.uint(8, zigzag(lats[i])).uint(9, zigzag(lons[i])));
+        }
+        writeBlob(out, "OSMData", block(strings, group), compress);
+
+        strings = new StringTable();
+        group = new Proto().message(2, denseNodes(2 * third, NUM_NODES, strings));
+        Proto wayGroup = new Proto();
+        for (int w = 0; w < ways.size(); w += 1) {
+            List<Long> keys = new ArrayList<>(List.of(strings.id("highway")));
+            List<Long> vals = new ArrayList<>(List.of(strings.id(wayHighways.get(w))));
+            if (wayNames.get(w) != null) {
+                keys.add(strings.id("name"));
+                vals.add(strings.id(wayNames.get(w)));
+            }
+            long[] refs = new long[ways.get(w).length];
+            long previous = 0;
+            for (int i = 0; i < refs.length; i += 1) {
+                refs[i] = zigzag(ways.get(w)[i] - previous);
+                previous = ways.get(w)[i];
+            }
+            wayGroup.message(3, new Proto().uint(1, w + 1)
+                    .packed(2, toArray(keys)).packed(3, toArray(vals)).packed(8, refs));
+        }
+        writeBlob(out, "OSMData", block(strings, group, wayGroup), compress);
+        return file.toByteArray();
+    }
+
+    /** Returns the DenseNodes message for nodes [FROM, TO). */
+    private static Proto denseNodes(int from, int to, StringTable strings) {
+        long[] idDeltas = new long[to - from];
+        long[] latDeltas = new long[to - from];
+        long[] lonDeltas = new long[to - from];
+        List<Long> keysVals = new ArrayList<>();
+        for (int i = from; i < to; i += 1) {
+            long previousId = i == from ? 0 : ids[i - 1];
+            long previousLat = i == from ? 0 : lats[i - 1];
+            long previousLon = i == from ? 0 : lons[i - 1];
+            idDeltas[i - from] = zigzag(ids[i] - previousId);
+            latDeltas[i - from] = zigzag(lats[i] - previousLat);
+            lonDeltas[i - from] = zigzag(lons[i] - previousLon);
+            if (names[i] != null) {
+                keysVals.add(strings.id("name"));
+                keysVals.add(strings.id(names[i]));
+            }
+            keysVals.add(0L);
+        }
+        return new Proto().packed(1, idDeltas).packed(8, latDeltas).packed(9, lonDeltas)
+                .packed(10, toArray(keysVals));
+    }
+
+    private static byte[] header() {
+        return new Proto().bytes(4, ascii("OsmSchema-V0.6")).bytes(4, ascii("DenseNodes")).toByteArray();
+    }
+
+    /** Returns a PrimitiveBlock with the given string table and groups, in units of 100 nanodegrees. */
+    private static byte[] block(StringTable strings, Proto... groups) {
+        Proto block = new Proto().message(1, strings.toProto());
+        for (Proto group : groups) {
+            block.message(2, group);
+        }
+        return block.uint(17, 100).toByteArray();
+    }
+
+    /** Writes a BlobHeader and a Blob holding DATA, zlib-compressed if COMPRESS is set. */
+    private static void writeBlob(DataOutputStream out, String type, byte[] data, boolean compress)
+            throws IOException {
+        Proto blob = new Proto();
+        if (compress) {
+            Deflater deflater = new Deflater();
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+            deflater.end();
+            blob.uint(2, data.length).bytes(3, compressed.toByteArray());
+        } else {
+            blob.bytes(1, data);
+        }
+        byte[] blobBytes = blob.toByteArray();
+        byte[] header = new Proto().bytes(1, ascii(type)).uint(3, blobBytes.length).toByteArray();
+        out.writeInt(header.length);
+        out.write(header);
+        out.write(blobBytes);
+    }
+
+    private static long zigzag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    private static long[] toArray(List<Long> values) {
+        return values.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** The string table of one block; string 0 is empty, as the format requires. */
+    private static class StringTable {
+        private final List<String> strings = new ArrayList<>(List.of(""));
+
+        long id(String s) {
+            int id = strings.indexOf(s);
+            if (id < 0) {
+                id = strings.size();
+                strings.add(s);
+            }
+            return id;
+        }
+
+        Proto toProto() {
+            Proto table = new Proto();
+            for (String s : strings) {
+                table.bytes(1, s.getBytes(StandardCharsets.UTF_8));
+            }
+            return table;
+        }
+    }
+
+    /** Writes protobuf messages in the wire format. */
+    private static class Proto {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Proto varint(long n) {
+            while ((n & ~0x7FL) != 0) {
+                out.write((int) (n & 0x7F) | 0x80);
+                n >>>= 7;
+            }
+            out.write((int) n);
+            return this;
+        }
+
+        Proto key(int field, int wireType) {
+            return varint((long) field << 3 | wireType);
+        }
+
+        Proto uint(int field, long n) {
+            return key(field, 0).varint(n);
+        }
+
+        Proto bytes(int field, byte[] bytes) {
+            key(field, 2).varint(bytes.length);
+            out.write(bytes, 0, bytes.length);
+            return this;
+        }
+
+        Proto message(int field, Proto message) {
+            return bytes(field, message.toByteArray());
+        }
+
+        Proto packed(int field, long... values) {
+            Proto packed = new Proto();
+            for (long value : values) {
+                packed.varint(value);
+            }
+            return message(field, packed);
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package huskymaps.tests;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import huskymaps.CompactGraph;
+import huskymaps.OSMIngestion;
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.SAXParserFactory;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static huskymaps.utils.Constants.BASE_DIR_PATH;
+import static huskymaps.utils.Constants.PLACES_PATH;
+import static huskymaps.utils.Spatial.greatCircleDistance;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks the OSM XML tokenizer against a reference graph built with the JDK's SAX parser under
+ * the rules of the SAX handler it replaced, on tiny.osm.gz and on small inline documents.
+ */
+public class TestOSMXMLReader {
+    private static final String OSM_DB_PATH_TINY = BASE_DIR_PATH + "tiny.osm.gz";
+    private static final int THREADS = 4;
+
+    @Test
+    public void testTinyMatchesSAX() throws Exception {
+        assertMatchesReference(OSM_DB_PATH_TINY);
+    }
+
+    @Test
+    public void testEntities() throws Exception {
+        String path = OSMFiles.writeXML(OSMFiles.osm(
+                "<node id=\"1\" lat=\"47.6\" lon=\"-122.3\">\n"
+                + "<tag k=\"name\" v=\"Fish &amp; Chips &lt;&#77;&#x61;rket&gt; &quot;Q&quot; &apos;A&apos;\"/>\n"
+                + "</node>\n"
+                + "<node id=\"2\" lat=\"47.61\" lon=\"-122.31\">\n"
+                + "<tag k=\"name\" v=\"  Pike\tPlace\nMarket  \"/>\n"
+                + "</node>\n"
+                + "<node id=\"3\" lat=\"47.62\" lon=\"-122.32\">\n"
+                + "<tag k=\"name\" v=\"“Best” Caf&#233;\"/>\n"
+                + "</node>\n"
+                + "<way id=\"1\"><nd ref=\"1\"/><nd ref=\"2\"/><nd ref=\"3\"/>\n"
+                + "<tag k=\"highway\" v=\"residential\"/><tag k=\"name\" v=\"Main &amp; 1st\"/></way>\n"));
+        CompactGraph graph = assertMatchesReference(path);
+        assertEquals("Fish & Chips <Market> \"Q\" 'A'", graph.name(graph.indexOf(1)));
+        assertEquals("Pike Place Market", graph.name(graph.indexOf(2)));
+        assertEquals("\"Best\" Café", graph.name(graph.indexOf(3)));
+        assertEquals("Main & 1st", graph.edgeName(graph.edgeStart(graph.indexOf(1))));
+    }
+
+    @Test
+    public void testAttributeOrderAndQuotes() throws Exception {
+        String path = OSMFiles.writeXML(OSMFiles.osm(
+                "<node lon='-122.31' lat='47.61' id='2' version='3'><tag v='Second' k='name'/></node>\n"
+                + "<node\n  lat=\"47.6\"\tid=\"1\" lon=\"-122.3\" />\n"
+                + "<way id='1'><tag v='tertiary' k='highway'/><nd ref='1'/><nd ref='2'/></way>\n"));
+        CompactGraph graph = assertMatchesReference(path);
+        assertEquals(2, graph.size());
+        assertEquals(2, graph.edgeCount());
+        int second = graph.indexOf(2);
+        assertEquals(47.61, graph.lat(second), 0);
+        assertEquals(-122.31, graph.lon(second), 0);
+        assertEquals("Second", graph.name(second));
+        assertEquals(47.6, graph.lat(graph.indexOf(1)), 0);
+        assertEquals(1, graph.degree(second));
+    }
+
+    @Test
+    public void testMarkupOutsideElements() throws Exception {
+        String path = OSMFiles.writeXML("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<!DOCTYPE osm>\n"
+                + "<osm version=\"0.6\">\n"
+                + "<!-- <node id=\"97\" lat=\"0\" lon=\"0\"/> -->\n"
+                + "<node id=\"1\" lat=\"47.6\" lon=\"-122.3\"/>\n"
+                + "<![CDATA[ a > b <node id=\"98\" lat=\"0\" lon=\"0\"/> ]]>\n"
+                + "<?note <node id=\"99\" lat=\"0\" lon=\"0\"/> ?>\n"
+                + "<node id=\"2\" lat=\"47.61\" lon=\"-122.31\"/>\n"
+                + "<node id=\"3\" lat=\"47.62\" lon=\"-122.32\"/>\n"
+                + "<way id=\"1\"><nd ref=\"1\"/><nd ref=\"2\"/><tag k=\"highway\" v=\"footway\"/></way>\n"
+                + "<way id=\"2\"><nd ref=\"2\"/><nd ref=\"4\"/><nd ref=\"3\"/>"
+                + "<tag k=\"highway\" v=\"primary\"/></way>\n"
+                + "<relation id=\"1\"><member type=\"way\" ref=\"2\" role=\"\"/></relation>\n"
+                + "</osm>\n");
+        CompactGraph graph = assertMatchesReference(path);
+        assertEquals(3, graph.size());
+        assertEquals(-1, graph.indexOf(97));
+        assertEquals(-1, graph.indexOf(98));
+        assertEquals(-1, graph.indexOf(99));
+        // Footways are not navigable, and segments touching the missing node 4 are skipped
+        assertEquals(0, graph.edgeCount());
+        assertNull(graph.name(graph.indexOf(1)));
+    }
+
+    /**
+     * Reads the OSM XML file PATH with one and with several parsing threads and checks both
+     * graphs against the reference, down to the fingerprint.
+     */
+    private static CompactGraph assertMatchesReference(String path) throws Exception {
+        Reference expected = new Reference(path);
+        CompactGraph graph = null;
+        for (int threads : new int[]{1, THREADS}) {
+            graph = OSMIngestion.read(path, threads).graph;
+            assertEquals("Vertex count differs", expected.ids.size(), graph.size());
+            assertEquals("Edge count differs", expected.numEdges, graph.edgeCount());
+            for (int v = 0; v < graph.size(); v += 1) {
+                assertEquals((long) expected.ids.get(v), graph.id(v));
+                assertEquals(expected.lats.get(v), graph.lat(v), 0);
+                assertEquals(expected.lons.get(v), graph.lon(v), 0);
+                assertEquals("Name differs for " + graph.id(v), expected.names.get(v), graph.name(v));
+                assertEquals("Importance differs for " + graph.id(v),
+                        (int) expected.importance.get(v), graph.importance(v));
+                List<Integer> targets = expected.targets.get(v);
+                assertEquals(targets.size(), graph.degree(v));
+                for (int i = 0; i < targets.size(); i += 1) {
+                    int e = graph.edgeStart(v) + i;
+                    assertEquals((int) targets.get(i), graph.target(e));
+                    assertEquals(expected.weight(v, targets.get(i)), graph.weight(e), 0);
+                    assertEquals(expected.edgeNames.get(v).get(i), graph.edgeName(e));
+                }
+            }
+            assertEquals("Fingerprint differs", expected.fingerprint(), graph.fingerprint());
+        }
+        return graph;
+    }
+
+    /** The graph the SAX handler that the tokenizer replaced would have built. */
+    private static class Reference extends DefaultHandler {
+        private static final Set<String> ALLOWED_HIGHWAY_TYPES = Set.of(
+                "motorway", "trunk", "primary", "secondary", "tertiary", "unclassified", "residential",
+                "living_street", "motorway_link", "trunk_link", "primary_link", "secondary_link",
+                "tertiary_link"
+        );
+
+        final List<Long> ids = new ArrayList<>();
+        final List<Double> lats = new ArrayList<>();
+        final List<Double> lons = new ArrayList<>();
+        final List<String> names = new ArrayList<>();
+        final List<Integer> importance = new ArrayList<>();
+        final List<List<Integer>> targets = new ArrayList<>();
+        final List<List<String>> edgeNames = new ArrayList<>();
+        int numEdges;
+
+        private final Map<Long, Integer> index = new HashMap<>();
+        private final Map<String, Integer> places;
+        private String activeState = "";
+        private long nodeId;
+        private double nodeLat;
+        private double nodeLon;
+        private String nodeName;
+        private boolean validWay;
+        private String wayName = "";
+        private final List<Long> nodePath = new ArrayList<>();
+
+        Reference(String path) throws Exception {
+            try (Reader reader = new FileReader(PLACES_PATH)) {
+                places = new Gson().fromJson(reader, new TypeToken<HashMap<String, Integer>>() {}.getType());
+            }
+            try (InputStream in = new GZIPInputStream(new FileInputStream(path))) {
+                SAXParserFactory.newInstance().newSAXParser().parse(in, this);
+            }
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if (qName.equals("node")) {
+                clearStates();
+                activeState = "node";
+                nodeId = Long.parseLong(attributes.getValue("id"));
+                nodeLat = Double.parseDouble(attributes.getValue("lat"));
+                nodeLon = Double.parseDouble(attributes.getValue("lon"));
+            } else if (qName.equals("way")) {
+                clearStates();
+                activeState = "way";
+            } else if (activeState.equals("way") && qName.equals("nd")) {
+                nodePath.add(Long.parseLong(attributes.getValue("ref")));
+            } else if (activeState.equals("way") && qName.equals("tag")) {
+                String k = attributes.getValue("k");
+                String v = attributes.getValue("v");
+                if (k.equals("highway")) {
+                    validWay = ALLOWED_HIGHWAY_TYPES.contains(v);
+                } else if (k.equals("name")) {
+                    wayName = v;
+                }
+            } else if (activeState.equals("node") && qName.equals("tag")
+                    && attributes.getValue("k").equals("name")) {
+                nodeName = normalize(attributes.getValue("v"));
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (qName.equals("way")) {
+                if (validWay) {
+                    for (int i = 1; i < nodePath.size(); i += 1) {
+                        Integer from = index.get(nodePath.get(i - 1));
+                        Integer to = index.get(nodePath.get(i));
+                        if (from != null && to != null) {
+                            addEdge(from, to);
+                            addEdge(to, from);
+                        }
+                    }
+                }
+                clearStates();
+            } else if (qName.equals("node") && activeState.equals("node")) {
+                if (!index.containsKey(nodeId)) {
+                    index.put(nodeId, ids.size());
+                    ids.add(nodeId);
+                    lats.add(nodeLat);
+                    lons.add(nodeLon);
+                    names.add(nodeName == null || nodeName.isEmpty() ? null : nodeName);
+                    importance.add(nodeName == null ? 0 : places.getOrDefault(nodeName, 0));
+                    targets.add(new ArrayList<>());
+                    edgeNames.add(new ArrayList<>());
+                }
+                clearStates();
+            }
+        }
+
+        private void addEdge(int from, int to) {
+            targets.get(from).add(to);
+            edgeNames.get(from).add(wayName.isEmpty() ? null : wayName);
+            numEdges += 1;
+        }
+
+        private void clearStates() {
+            activeState = "";
+            nodeName = null;
+            validWay = false;
+            wayName = "";
+            nodePath.clear();
+        }
+
+        /** Returns the stored weight of the edge from V to W. */
+        double weight(int v, int w) {
+            return (float) greatCircleDistance(lons.get(v), lons.get(w), lats.get(v), lats.get(w));
+        }
+
+        /** Computes {@link CompactGraph#fingerprint} from the reference vertices and edges. */
+        long fingerprint() {
+            long hash = 1125899906842597L;
+            hash = 31 * hash + ids.size();
+            for (long id : ids) {
+                hash = 31 * hash + id;
+            }
+            int offset = 0;
+            hash = 31 * hash + offset;
+            for (List<Integer> vertexTargets : targets) {
+                offset += vertexTargets.size();
+                hash = 31 * hash + offset;
+            }
+            for (int v = 0; v < targets.size(); v += 1) {
+                for (int w : targets.get(v)) {
+                    hash = 31 * hash + w;
+                    hash = 31 * hash + Float.floatToIntBits((float) weight(v, w));
+                }
+            }
+            return hash;
+        }
+
+        private static String normalize(String s) {
+            return s.strip()
+                    .replace('“', '"')
+                    .replace('”', '"')
+                    .replace('‘', '\'')
+                    .replace('’', '\'');
+        }
+    }
+}
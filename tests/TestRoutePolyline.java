@@ -0,0 +1,75 @@
+package huskymaps.tests;
+
+import huskymaps.server.logic.RoutePolyline;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static huskymaps.utils.Constants.LON_PER_TILE;
+import static huskymaps.utils.Constants.TILE_SIZE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Tests clipping and simplification of route polylines. */
+public class TestRoutePolyline {
+    private static final double DELTA = 1e-9;
+
+    private static List<double[]> segments(RoutePolyline polyline, double minLon, double minLat,
+                                           double maxLon, double maxLat) {
+        List<double[]> result = new ArrayList<>();
+        polyline.forEachSegment(minLon, minLat, maxLon, maxLat,
+                (lon0, lat0, lon1, lat1) -> result.add(new double[]{lon0, lat0, lon1, lat1}));
+        return result;
+    }
+
+    @Test
+    public void testClipsToBox() {
+        RoutePolyline line = RoutePolyline.of(new double[]{-2, 2}, new double[]{0, 0});
+        List<double[]> clipped = segments(line, -1, -1, 1, 1);
+        assertEquals(1, clipped.size());
+        assertArrayEquals(new double[]{-1, 0, 1, 0}, clipped.get(0), DELTA);
+
+        RoutePolyline corner = RoutePolyline.of(new double[]{0, 4}, new double[]{4, 0});
+        assertEquals(0, segments(corner, -1, -1, 1, 1).size());
+    }
+
+    @Test
+    public void testSkipsSegmentsOutsideBox() {
+        int n = 1000;
+        double[] lons = new double[n];
+        double[] lats = new double[n];
+        for (int i = 0; i < n; i += 1) {
+            lons[i] = i;
+            lats[i] = i % 2;
+        }
+        RoutePolyline zigzag = RoutePolyline.of(lons, lats);
+        List<double[]> clipped = segments(zigzag, 499.5, -1, 501.5, 2);
+        assertEquals(3, clipped.size());
+        assertEquals(499.5, clipped.get(0)[0], DELTA);
+        assertEquals(501.5, clipped.get(2)[2], DELTA);
+    }
+
+    @Test
+    public void testSimplifiesWithinTolerance() {
+        int depth = 3;
+        double pixel = LON_PER_TILE[depth] / TILE_SIZE;
+        int n = 101;
+        double[] lons = new double[n];
+        double[] lats = new double[n];
+        for (int i = 0; i < n; i += 1) {
+            lons[i] = i * pixel;
+            lats[i] = (50 - Math.abs(i - 50)) * pixel;
+        }
+        lats[25] += 0.1 * pixel;
+        RoutePolyline route = RoutePolyline.of(lons, lats);
+        RoutePolyline simple = route.atDepth(depth);
+        assertEquals(3, simple.size());
+        assertEquals(lons[50], simple.lon(1), DELTA);
+        assertSame(simple, route.atDepth(depth));
+        // The bump is 1.6 pixels four levels deeper, so it is kept there
+        assertTrue(route.atDepth(depth + 4).size() > 3);
+    }
+}
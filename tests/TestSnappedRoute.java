@@ -0,0 +1,199 @@
+package huskymaps.tests;
+
+import astar.WeightedEdge;
+import huskymaps.ContractionHierarchy;
+import huskymaps.EdgeSnap;
+import huskymaps.StreetMapGraph;
+import huskymaps.params.RouteRequest;
+import huskymaps.server.logic.RoutePolyline;
+import huskymaps.server.logic.Router;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static huskymaps.utils.Constants.BASE_DIR_PATH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that routes between points snapped to streets are as short as Dijkstra's algorithm
+ * finds them, and are drawn from and to those points.
+ */
+public class TestSnappedRoute {
+    private static final String OSM_DB_PATH_TINY = BASE_DIR_PATH + "tiny.osm.gz";
+    private static final int NUM_ROUTES = 50;
+    private static final double DELTA = 1e-9;
+    private static StreetMapGraph tinyGraph;
+    private static boolean initialized = false;
+
+    @Before
+    public void setUp() {
+        if (initialized) {
+            return;
+        }
+        tinyGraph = new StreetMapGraph(OSM_DB_PATH_TINY);
+        tinyGraph.buildSegmentIndex();
+        tinyGraph.setContractionHierarchy(ContractionHierarchy.build(tinyGraph));
+        initialized = true;
+    }
+
+    @Test
+    public void testPolylineRunsBetweenSnappedPoints() {
+        Random random = new Random(373);
+        List<Long> vertices = List.copyOf(tinyGraph.vertices());
+        for (int i = 0; i < NUM_ROUTES; i += 1) {
+            long a = vertices.get(random.nextInt(vertices.size()));
+            long b = vertices.get(random.nextInt(vertices.size()));
+            // Offset the clicks from the vertices so that they land partway along streets
+            RouteRequest request = request(tinyGraph.lat(a) + 1e-4, tinyGraph.lon(a) - 1e-4,
+                    tinyGraph.lat(b) - 1e-4, tinyGraph.lon(b) + 1e-4);
+            Router.SnappedPath path = Router.snappedPath(tinyGraph, request);
+            if (path.isEmpty()) {
+                continue;
+            }
+            EdgeSnap start = tinyGraph.closestEdge(request.startLat, request.startLon);
+            EdgeSnap end = tinyGraph.closestEdge(request.endLat, request.endLon);
+            RoutePolyline polyline = RoutePolyline.of(tinyGraph, path);
+            assertEquals(path.withinStreet ? 2 : path.nodes.size() + 2, polyline.size());
+            assertEquals(start.lon, polyline.lon(0), 0);
+            assertEquals(start.lat, polyline.lat(0), 0);
+            assertEquals(end.lon, polyline.lon(polyline.size() - 1), 0);
+            assertEquals(end.lat, polyline.lat(polyline.size() - 1), 0);
+        }
+    }
+
+    @Test
+    public void testMatchesDijkstra() {
+        Random random = new Random(373);
+        List<Long> vertices = List.copyOf(tinyGraph.vertices());
+        for (int i = 0; i < NUM_ROUTES; i += 1) {
+            long a = vertices.get(random.nextInt(vertices.size()));
+            long b = vertices.get(random.nextInt(vertices.size()));
+            RouteRequest request = request(tinyGraph.lat(a) + 2e-4 * random.nextGaussian(),
+                    tinyGraph.lon(a) + 2e-4 * random.nextGaussian(),
+                    tinyGraph.lat(b) + 2e-4 * random.nextGaussian(),
+                    tinyGraph.lon(b) + 2e-4 * random.nextGaussian());
+            EdgeSnap start = tinyGraph.closestEdge(request.startLat, request.startLon);
+            EdgeSnap end = tinyGraph.closestEdge(request.endLat, request.endLon);
+            double expected = dijkstra(start, end);
+            for (Router.Algorithm algorithm : Router.Algorithm.values()) {
+                Router.SnappedPath path = Router.snappedPath(tinyGraph, request, algorithm);
+                String route = algorithm + " route " + start + " -> " + end;
+                assertEquals("Reachability differs for " + route,
+                        expected < Double.POSITIVE_INFINITY, !path.isEmpty());
+                if (!path.isEmpty()) {
+                    assertEquals("Weight differs for " + route, expected, weight(path), DELTA);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSameStreetRouteIsDrawnBetweenClicks() {
+        long u = tinyGraph.vertices().stream()
+                .filter(v -> !tinyGraph.neighbors(v).isEmpty())
+                .findFirst()
+                .orElseThrow();
+        WeightedEdge<Long> edge = tinyGraph.neighbors(u).get(0);
+        long v = edge.to();
+        RouteRequest request = request(
+                interpolate(tinyGraph.lat(u), tinyGraph.lat(v), 0.4),
+                interpolate(tinyGraph.lon(u), tinyGraph.lon(v), 0.4),
+                interpolate(tinyGraph.lat(u), tinyGraph.lat(v), 0.6),
+                interpolate(tinyGraph.lon(u), tinyGraph.lon(v), 0.6));
+        EdgeSnap start = tinyGraph.closestEdge(request.startLat, request.startLon);
+        EdgeSnap end = tinyGraph.closestEdge(request.endLat, request.endLon);
+        assertTrue("Both clicks should snap onto the street " + u + " -> " + v,
+                start.isSameStreet(end));
+
+        Router.SnappedPath path = Router.snappedPath(tinyGraph, request);
+        assertFalse(path.isEmpty());
+        assertTrue(path.withinStreet);
+        RoutePolyline polyline = RoutePolyline.of(tinyGraph, path);
+        assertEquals(2, polyline.size());
+        assertEquals(start.lon, polyline.lon(0), 0);
+        assertEquals(start.lat, polyline.lat(0), 0);
+        assertEquals(end.lon, polyline.lon(1), 0);
+        assertEquals(end.lat, polyline.lat(1), 0);
+    }
+
+    /**
+     * Returns the length of the shortest route from START to END, found by Dijkstra's algorithm
+     * from a virtual vertex at START joined to the ends of its street, or infinity if there is
+     * none.
+     */
+    private static double dijkstra(EdgeSnap start, EdgeSnap end) {
+        Map<Long, Double> distances = new HashMap<>();
+        PriorityQueue<Map.Entry<Long, Double>> fringe = new PriorityQueue<>(Map.Entry.comparingByValue());
+        fringe.add(Map.entry(start.to, partial(1 - start.fraction, start.weight)));
+        fringe.add(Map.entry(start.from, partial(start.fraction, start.reverseWeight)));
+        while (!fringe.isEmpty()) {
+            Map.Entry<Long, Double> closest = fringe.remove();
+            long v = closest.getKey();
+            if (distances.containsKey(v) || closest.getValue() == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            distances.put(v, closest.getValue());
+            for (WeightedEdge<Long> edge : tinyGraph.neighbors(v)) {
+                fringe.add(Map.entry(edge.to(), closest.getValue() + edge.weight()));
+            }
+        }
+        double best = Math.min(
+                distances.getOrDefault(end.from, Double.POSITIVE_INFINITY)
+                        + partial(end.fraction, end.weight),
+                distances.getOrDefault(end.to, Double.POSITIVE_INFINITY)
+                        + partial(1 - end.fraction, end.reverseWeight));
+        return Math.min(best, withinStreetWeight(start, end));
+    }
+
+    /** Returns the length of the route from START to END along their street, or infinity. */
+    private static double withinStreetWeight(EdgeSnap start, EdgeSnap end) {
+        if (!start.isSameStreet(end)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double fraction = end.from == start.from ? end.fraction : 1 - end.fraction;
+        if (fraction >= start.fraction) {
+            return partial(fraction - start.fraction, start.weight);
+        }
+        return partial(start.fraction - fraction, start.reverseWeight);
+    }
+
+    /** Returns the length of PATH from its start point to its end point. */
+    private static double weight(Router.SnappedPath path) {
+        if (path.withinStreet) {
+            return withinStreetWeight(path.start, path.end);
+        }
+        long first = path.nodes.get(0);
+        long last = path.nodes.get(path.nodes.size() - 1);
+        double exit = first == path.start.to
+                ? partial(1 - path.start.fraction, path.start.weight)
+                : partial(path.start.fraction, path.start.reverseWeight);
+        double entry = last == path.end.from
+                ? partial(path.end.fraction, path.end.weight)
+                : partial(1 - path.end.fraction, path.end.reverseWeight);
+        return exit + tinyGraph.pathWeight(path.nodes) + entry;
+    }
+
+    private static double partial(double fraction, double weight) {
+        return fraction == 0 ? 0 : fraction * weight;
+    }
+
+    private static RouteRequest request(double startLat, double startLon, double endLat, double endLon) {
+        return RouteRequest.from(Map.of(
+                "start_lat", startLat,
+                "start_lon", startLon,
+                "end_lat", endLat,
+                "end_lon", endLon
+        ));
+    }
+
+    private static double interpolate(double from, double to, double fraction) {
+        return from + fraction * (to - from);
+    }
+}
@@ -0,0 +1,263 @@
+package huskymaps.tests;
+
+import astar.WeightedEdge;
+import huskymaps.EdgeSnap;
+import huskymaps.StreetMapGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static huskymaps.utils.Constants.BASE_DIR_PATH;
+import static huskymaps.utils.Constants.ROOT_LAT;
+import static huskymaps.utils.Constants.ROOT_LON;
+import static huskymaps.utils.Spatial.greatCircleDistance;
+import static huskymaps.utils.Spatial.projectToX;
+import static huskymaps.utils.Spatial.projectToY;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the spatial queries of the street graph, which are answered by a k-d tree over the
+ * vertices and an R-tree over the streets, against linear scans.
+ */
+public class TestSpatialQueries {
+    private static final String OSM_DB_PATH_TINY = BASE_DIR_PATH + "tiny.osm.gz";
+    private static final int NUM_QUERIES = 500;
+    private static final int GRID_SIZE = 30;
+    private static final double GRID_SPACING = 0.002;
+    private static final double DELTA = 1e-9;
+    private static StreetMapGraph tinyGraph;
+    private static StreetMapGraph gridGraph;
+    private static boolean initialized = false;
+
+    @Before
+    public void setUp() throws IOException {
+        if (initialized) {
+            return;
+        }
+        tinyGraph = new StreetMapGraph(OSM_DB_PATH_TINY);
+        tinyGraph.buildSegmentIndex();
+        gridGraph = new StreetMapGraph(OSMFiles.writeXML(grid()));
+        gridGraph.buildSegmentIndex();
+        initialized = true;
+    }
+
+    /**
+     * Returns a jittered grid of streets centered on the middle of the map, with one diagonal
+     * street, so that the R-tree has several levels and coordinates of both signs.
+     */
+    private static String grid() {
+        Random random = new Random(373);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < GRID_SIZE; i += 1) {
+            for (int j = 0; j < GRID_SIZE; j += 1) {
+                double lat = ROOT_LAT + (i - GRID_SIZE / 2 + 0.3 * random.nextDouble()) * GRID_SPACING;
+                double lon = ROOT_LON + (j - GRID_SIZE / 2 + 0.3 * random.nextDouble()) * GRID_SPACING;
+                sb.append(OSMFiles.node(gridId(i, j), lat, lon));
+            }
+        }
+        long wayId = 1;
+        for (int i = 0; i < GRID_SIZE; i += 1) {
+            long[] row = new long[GRID_SIZE];
+            long[] column = new long[GRID_SIZE];
+            for (int j = 0; j < GRID_SIZE; j += 1) {
+                row[j] = gridId(i, j);
+                column[j] = gridId(j, i);
+            }
+            sb.append(OSMFiles.way(wayId++, row));
+            sb.append(OSMFiles.way(wayId++, column));
+        }
+        long[] diagonal = new long[GRID_SIZE];
+        for (int i = 0; i < GRID_SIZE; i += 1) {
+            diagonal[i] = gridId(i, i);
+        }
+        sb.append(OSMFiles.way(wayId, diagonal));
+        return OSMFiles.osm(sb.toString());
+    }
+
+    private static long gridId(int i, int j) {
+        return 1 + i * GRID_SIZE + j;
+    }
+
+    @Test
+    public void testNearestMatchesScan() {
+        for (double[] query : queries(tinyGraph)) {
+            long actual = tinyGraph.closest(query[0], query[1]);
+            assertEquals(scanDistances(tinyGraph, query)[0], projectedDistance(tinyGraph, actual, query), DELTA);
+        }
+    }
+
+    @Test
+    public void testKNearestMatchesScan() {
+        int[] ks = {1, 2, 5, 17, Integer.MAX_VALUE};
+        for (double[] query : queries(tinyGraph)) {
+            double[] expected = scanDistances(tinyGraph, query);
+            for (int k : ks) {
+                long[] nearest = tinyGraph.kNearest(query[0], query[1], k);
+                double[] actual = new double[nearest.length];
+                for (int i = 0; i < nearest.length; i += 1) {
+                    actual[i] = projectedDistance(tinyGraph, nearest[i], query);
+                }
+                assertArrayEquals(Arrays.copyOf(expected, Math.min(k, expected.length)), actual, DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void testWithinRadiusMatchesScan() {
+        double[] radii = {0, 0.1, 0.5, 2, 10};
+        for (double[] query : queries(tinyGraph)) {
+            for (double miles : radii) {
+                List<Long> expected = new ArrayList<>();
+                for (long v : navigableVertices(tinyGraph)) {
+                    if (greatCircleDistance(query[1], tinyGraph.lon(v), query[0], tinyGraph.lat(v)) <= miles) {
+                        expected.add(v);
+                    }
+                }
+                long[] actual = tinyGraph.withinRadius(query[0], query[1], miles);
+                assertEquals("Wrong number of vertices within " + miles + " miles",
+                        expected.size(), actual.length);
+                double previous = 0;
+                for (long v : actual) {
+                    assertTrue(expected.contains(v));
+                    double distance = greatCircleDistance(query[1], tinyGraph.lon(v), query[0], tinyGraph.lat(v));
+                    assertTrue("Vertices are not sorted by distance", distance >= previous);
+                    previous = distance;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testClosestEdgeMatchesScan() {
+        assertClosestEdgeMatchesScan(tinyGraph);
+        assertClosestEdgeMatchesScan(gridGraph);
+    }
+
+    @Test
+    public void testEmptyGraph() throws IOException {
+        String xml = OSMFiles.osm(OSMFiles.node(1, ROOT_LAT, ROOT_LON));
+        StreetMapGraph empty = new StreetMapGraph(OSMFiles.writeXML(xml));
+        empty.buildSegmentIndex();
+        assertNull(empty.closestEdge(ROOT_LAT, ROOT_LON));
+        assertEquals(0, empty.kNearest(ROOT_LAT, ROOT_LON, 3).length);
+        assertEquals(0, empty.withinRadius(ROOT_LAT, ROOT_LON, 10).length);
+        try {
+            empty.closest(ROOT_LAT, ROOT_LON);
+            fail("Snapping to a graph without streets should fail");
+        } catch (IllegalStateException expected) {
+            // The graph has no vertex to return
+        }
+    }
+
+    @Test
+    public void testOneSegment() throws IOException {
+        String xml = OSMFiles.osm(OSMFiles.node(1, ROOT_LAT, ROOT_LON)
+                + OSMFiles.node(2, ROOT_LAT + 0.01, ROOT_LON + 0.01)
+                + OSMFiles.node(3, ROOT_LAT - 0.05, ROOT_LON)
+                + OSMFiles.way(1, 1, 2));
+        StreetMapGraph one = new StreetMapGraph(OSMFiles.writeXML(xml));
+        one.buildSegmentIndex();
+        assertClosestEdgeMatchesScan(one);
+
+        // Beyond either end, the closest point is the end itself
+        EdgeSnap before = one.closestEdge(ROOT_LAT - 0.05, ROOT_LON);
+        assertEquals(0, before.fraction, 0);
+        assertEquals(1, one.closestEdge(ROOT_LAT + 0.05, ROOT_LON + 0.05).fraction, 0);
+        assertEquals(before.from == 1 ? 2 : 1, before.to);
+        // Node 3 is on no street, so it is never snapped to
+        assertEquals(1, one.closest(ROOT_LAT - 0.05, ROOT_LON));
+        assertEquals(2, one.kNearest(ROOT_LAT - 0.05, ROOT_LON, 3).length);
+    }
+
+    private static void assertClosestEdgeMatchesScan(StreetMapGraph g) {
+        for (double[] query : queries(g)) {
+            double x = projectToX(query[1], query[0]);
+            double y = projectToY(query[1], query[0]);
+            double expected = Double.POSITIVE_INFINITY;
+            for (long u : g.vertices()) {
+                for (WeightedEdge<Long> edge : g.neighbors(u)) {
+                    expected = Math.min(expected, segmentDistance(g, u, edge.to(), x, y));
+                }
+            }
+            EdgeSnap snap = g.closestEdge(query[0], query[1]);
+            assertNotNull(snap);
+            assertEquals(expected, Math.hypot(snap.x - x, snap.y - y), DELTA);
+            assertEquals("The snapped point is not on its street",
+                    segmentDistance(g, snap.from, snap.to, x, y), Math.hypot(snap.x - x, snap.y - y), DELTA);
+            assertTrue(snap.fraction >= 0 && snap.fraction <= 1);
+            assertTrue("The snapped street is not an edge",
+                    g.neighbors(snap.from).stream().anyMatch(edge -> edge.to() == snap.to));
+        }
+    }
+
+    /** Returns NUM_QUERIES random locations in and around the bounding box of G. */
+    private static List<double[]> queries(StreetMapGraph g) {
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        double minLon = Double.POSITIVE_INFINITY;
+        double maxLon = Double.NEGATIVE_INFINITY;
+        for (long v : g.vertices()) {
+            minLat = Math.min(minLat, g.lat(v));
+            maxLat = Math.max(maxLat, g.lat(v));
+            minLon = Math.min(minLon, g.lon(v));
+            maxLon = Math.max(maxLon, g.lon(v));
+        }
+        double latMargin = (maxLat - minLat) / 4;
+        double lonMargin = (maxLon - minLon) / 4;
+        Random random = new Random(373);
+        List<double[]> queries = new ArrayList<>();
+        for (int i = 0; i < NUM_QUERIES; i += 1) {
+            queries.add(new double[]{
+                minLat - latMargin + random.nextDouble() * (maxLat - minLat + 2 * latMargin),
+                minLon - lonMargin + random.nextDouble() * (maxLon - minLon + 2 * lonMargin)
+            });
+        }
+        return queries;
+    }
+
+    /** Returns the vertices with outgoing edges, which are the ones locations snap to. */
+    private static List<Long> navigableVertices(StreetMapGraph g) {
+        List<Long> result = new ArrayList<>();
+        for (long v : g.vertices()) {
+            if (!g.neighbors(v).isEmpty()) {
+                result.add(v);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the projected distances from QUERY to every navigable vertex, in sorted order. */
+    private static double[] scanDistances(StreetMapGraph g, double[] query) {
+        return navigableVertices(g).stream()
+                .mapToDouble(v -> projectedDistance(g, v, query))
+                .sorted()
+                .toArray();
+    }
+
+    private static double projectedDistance(StreetMapGraph g, long v, double[] query) {
+        return Math.hypot(projectToX(g.lon(v), g.lat(v)) - projectToX(query[1], query[0]),
+                projectToY(g.lon(v), g.lat(v)) - projectToY(query[1], query[0]));
+    }
+
+    /** Returns the projected distance from (X, Y) to the segment between U and W. */
+    private static double segmentDistance(StreetMapGraph g, long u, long w, double x, double y) {
+        double x0 = projectToX(g.lon(u), g.lat(u));
+        double y0 = projectToY(g.lon(u), g.lat(u));
+        double dx = projectToX(g.lon(w), g.lat(w)) - x0;
+        double dy = projectToY(g.lon(w), g.lat(w)) - y0;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0
+                : Math.max(0, Math.min(1, ((x - x0) * dx + (y - y0) * dy) / lengthSquared));
+        return Math.hypot(x0 + t * dx - x, y0 + t * dy - y);
+    }
+}
@@ -0,0 +1,96 @@
+package huskymaps.tests;
+
+import huskymaps.server.logic.Rasterer;
+import huskymaps.server.logic.TileCache;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static huskymaps.utils.Constants.TILE_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/** Tests the decoded tile cache with tiles made in memory. */
+public class TestTileCache {
+    private static final long TILE_BYTES = TILE_SIZE * TILE_SIZE * 3;
+
+    private static BufferedImage blank(Rasterer.Tile tile) {
+        return new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_3BYTE_BGR);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        TileCache cache = new TileCache(2 * TILE_BYTES, TestTileCache::blank);
+        Rasterer.Tile a = new Rasterer.Tile(1, 0, 0);
+        Rasterer.Tile b = new Rasterer.Tile(1, 1, 0);
+        Rasterer.Tile c = new Rasterer.Tile(1, 2, 0);
+        BufferedImage imageA = cache.get(a);
+        cache.get(b);
+        assertSame(imageA, cache.get(a));
+        cache.get(c);
+
+        assertEquals(2, cache.size());
+        assertEquals(2 * TILE_BYTES, cache.sizeBytes());
+        assertEquals(1, cache.hits());
+        assertEquals(3, cache.misses());
+        assertEquals(1, cache.evictions());
+        assertSame(imageA, cache.get(a));
+        cache.get(b);
+        assertEquals(4, cache.misses());
+    }
+
+    @Test
+    public void testFailedLoadsAreNotCached() {
+        TileCache cache = new TileCache(TILE_BYTES, tile -> null);
+        Rasterer.Tile a = new Rasterer.Tile(0, 0, 0);
+        assertNull(cache.get(a));
+        assertNull(cache.get(a));
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.misses());
+    }
+
+    @Test
+    public void testConcurrentMissesLoadOnce() throws Exception {
+        int numThreads = 8;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        TileCache cache = new TileCache(TILE_BYTES, tile -> {
+            loads.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return blank(tile);
+        });
+        Rasterer.Tile a = new Rasterer.Tile(3, 4, 5);
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<BufferedImage>> results = new ArrayList<>();
+            for (int i = 0; i < numThreads; i += 1) {
+                results.add(pool.submit(() -> cache.get(a)));
+            }
+            while (cache.misses() < numThreads) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            BufferedImage first = results.get(0).get();
+            assertNotNull(first);
+            for (Future<BufferedImage> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+    }
+}
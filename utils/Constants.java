@@ -1,10 +1,9 @@
 package huskymaps.utils;
 
 import huskymaps.StreetMapGraph;
+import huskymaps.server.logic.RouteStore;
 
 import java.awt.*;
-import java.util.LinkedList;
-import java.util.List;
 
 /** A class holding all the constant values used throughout the project */
 public class Constants {
@@ -66,6 +65,13 @@ public class Constants {
      */
     public static final double K0 = 1.0;
 
+    /**
+     * Degrees of latitude added to the map's extent before taking the cosine that scales the
+     * equirectangular heuristic. Great circles bow towards the pole between their ends, by far
+     * less than this across a city, and the heuristic must not overestimate along them.
+     */
+    public static final double EQUIRECTANGULAR_LAT_MARGIN = 0.1;
+
     /** Error tolerance for latitudes and longitudes. */
     public static final double EPSILON = 0.000001;
     public static final int DECIMAL_PLACES = 5;
@@ -79,31 +85,94 @@ public class Constants {
     public static final String OSM_DB_PATH = BASE_DIR_PATH + "seattle-small.osm.gz";
     public static final String PLACES_PATH = BASE_DIR_PATH + "places.json";
 
+    /**
+     * The contraction hierarchy for OSM_DB_PATH, built offline by running
+     * huskymaps.ContractionHierarchy. Routing falls back to A* if it is missing.
+     */
+    public static final String CH_PATH = BASE_DIR_PATH + "seattle-small.ch";
+
+    /**
+     * The ALT landmark distances for OSM_DB_PATH, computed offline by running
+     * huskymaps.Landmarks. A* uses the great-circle heuristic alone if they are missing.
+     */
+    public static final String LANDMARKS_PATH = BASE_DIR_PATH + "seattle-small.landmarks";
+    public static final int NUM_LANDMARKS = 16;
+
     /** The tile images are in the IMG_ROOT folder. */
     public static final String IMG_ROOT = BASE_DIR_PATH + "tiles/";
     public static final int MIN_ZOOM_LEVEL = 10;
     public static final int[] MIN_X_TILE_AT_DEPTH = {163, 326, 652, 1304, 2608, 5216, 10432, 20864};
     public static final int[] MIN_Y_TILE_AT_DEPTH = {357, 714, 1428, 2856, 5712, 11424, 22848, 45696};
 
+    /** Most bytes of decoded tile pixels to keep in memory, about 680 tiles. */
+    public static final long TILE_CACHE_BYTES = 128L * 1024 * 1024;
+    /** How long browsers may reuse a tile served by /tiles without revalidating it. */
+    public static final int TILE_MAX_AGE_SECONDS = 7 * 24 * 60 * 60;
+    /** Most bytes of Base64-encoded raster responses to keep in memory. */
+    public static final long RENDERED_CACHE_BYTES = 64L * 1024 * 1024;
+
+    /** Location names returned for an autocomplete prefix, unless the request sets k. */
+    public static final int AUTOCOMPLETE_MAX_RESULTS = 10;
+    /** Most location names a request may ask for with k. */
+    public static final int AUTOCOMPLETE_RESULT_LIMIT = 100;
+    /** Longest a fuzzy search may spend looking for matches before ranking what it found. */
+    public static final long FUZZY_SEARCH_BUDGET_NANOS = 10_000_000;
+
+    /** Most sources, and most targets, a /matrix request may list. */
+    public static final int MATRIX_MAX_LOCATIONS = 100;
+    /**
+     * Most point-to-point searches that run at once, across all request threads. Each keeps its
+     * search state between searches, so this also bounds the memory that state retains.
+     */
+    public static final int SEARCH_STATES = Runtime.getRuntime().availableProcessors();
+    /** Threads shared by all distance matrix computations. */
+    public static final int MATRIX_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Whether the server snaps route endpoints to the closest point on the closest street,
+     * rather than to the closest intersection.
+     */
+    public static final boolean SNAP_ROUTES_TO_STREETS = true;
+
+    /** Most routes a /route/batch request may list. */
+    public static final int ROUTE_BATCH_MAX_REQUESTS = 10_000;
+    /** Threads shared by all batch route requests. */
+    public static final int ROUTE_BATCH_THREADS = Runtime.getRuntime().availableProcessors();
+
     /** Route stroke information. */
     public static final Color ROUTE_STROKE_COLOR = new Color(108, 181, 230);
     public static final float ROUTE_STROKE_WIDTH_PX = 5.0f;
+    /** Route points closer than this many pixels to the simplified route are not drawn. */
+    public static final double ROUTE_SIMPLIFY_TOLERANCE_PX = 0.5;
 
     /** Graph singleton instance. */
     public static StreetMapGraph SEMANTIC_STREET_GRAPH;
 
-    /**
-     * This is used to maintain a single List of route so that the same instance(object) is accessed
-     * from everywhere in the code. Enum is a cleaner way to achieve such a singleton pattern.
-     */
-    public static List<Long> ROUTE_LIST = new LinkedList<>();
+    /** Name of the cookie holding the token that identifies a client's route. */
+    public static final String ROUTE_TOKEN_COOKIE = "route_token";
+    /** How long a client's route is kept after its last use. */
+    public static final long ROUTE_TTL_MILLIS = 60 * 60 * 1000;
+
+    /** The current route of every client, keyed by the token in its ROUTE_TOKEN_COOKIE. */
+    public static final RouteStore ROUTES = new RouteStore(ROUTE_TTL_MILLIS);
 
     /** HTTP failed response. */
     public static final int HALT_RESPONSE = 500;
 
+    /** HTTP response for a request whose parameters are out of range. */
+    public static final int BAD_REQUEST = 400;
+
+    /** HTTP response for a tile or other resource that does not exist. */
+    public static final int NOT_FOUND = 404;
+
     /** Flag for deploying the app to the web. */
     public static final boolean HEROKU_DEPLOYMENT = false;
 
     /** Default port for serving the application locally. */
     public static final int PORT = 8080;
+
+    /** Jetty request thread pool bounds and how long an idle thread is kept. */
+    public static final int SERVER_MAX_THREADS = 256;
+    public static final int SERVER_MIN_THREADS = 8;
+    public static final int SERVER_IDLE_TIMEOUT_MILLIS = 60 * 1000;
 }
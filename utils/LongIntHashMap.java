@@ -0,0 +1,99 @@
+package huskymaps.utils;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from primitive longs to primitive ints. Used to translate OSM ids
+ * into dense vertex indices without boxing a Long key and allocating a map entry per vertex.
+ * Values must be non-negative; -1 is reserved to mean "absent".
+ */
+public class LongIntHashMap {
+    private static final int ABSENT = -1;
+    private static final double MAX_LOAD = 0.5;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    public LongIntHashMap() {
+        this(16);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, ABSENT);
+    }
+
+    /** Returns the value associated with KEY, or -1 if KEY is not in this map. */
+    public int get(long key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); values[i] != ABSENT; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return ABSENT;
+    }
+
+    /** Returns true if KEY is in this map. */
+    public boolean containsKey(long key) {
+        return get(key) != ABSENT;
+    }
+
+    /** Associates the non-negative VALUE with KEY, replacing any previous value. */
+    public void put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Values must be non-negative: " + value);
+        }
+        if (size + 1 > keys.length * MAX_LOAD) {
+            resize();
+        }
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (values[i] != ABSENT) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size += 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(values, ABSENT);
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j += 1) {
+            if (oldValues[j] != ABSENT) {
+                int i = slot(oldKeys[j], mask);
+                while (values[i] != ABSENT) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    /** Spreads the key bits (MurmurHash3 finalizer) so sequential OSM ids don't cluster. */
+    private static int slot(long key, int mask) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+}